@@ -26,6 +26,7 @@ package qunar.tc.qmq;
  *
  * @see qunar.tc.qmq.consumer.idempotent.JdbcIdempotentChecker
  * @see qunar.tc.qmq.consumer.idempotent.TransactionalJdbcIdempotentChecker
+ * @see qunar.tc.qmq.consumer.idempotent.JdbcBatchIdempotentChecker
  * <p/>
  * 如果不能满足需求，最好从
  * @see qunar.tc.qmq.consumer.idempotent.AbstractIdempotentChecker
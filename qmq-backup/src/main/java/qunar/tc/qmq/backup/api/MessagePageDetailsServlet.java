@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.backup.api;
+
+import qunar.tc.qmq.backup.base.BackupMessage;
+import qunar.tc.qmq.backup.base.BackupQuery;
+import qunar.tc.qmq.backup.service.MessageService;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 按页查询消息详情
+ */
+public class MessagePageDetailsServlet extends AbstractGetServlet {
+
+    public MessagePageDetailsServlet(MessageService messageService) {
+        super(messageService);
+    }
+
+    @Override
+    protected void query(HttpServletRequest req, HttpServletResponse resp, BackupQuery query) {
+        final AsyncContext context = req.startAsync();
+        final CompletableFuture<List<BackupMessage>> future = messageService.findMessageDetails(query);
+        future.exceptionally(throwable -> Collections.emptyList()).thenAccept(messages -> {
+            response(resp, serializer.serialize(messages));
+            context.complete();
+        });
+    }
+}
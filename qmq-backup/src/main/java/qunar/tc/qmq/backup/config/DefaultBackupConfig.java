@@ -32,6 +32,10 @@ public class DefaultBackupConfig implements BackupConfig {
     public static final String DEFAULT_DELAY_DB_DIC_TABLE = "qmq_delay_dic";
     public static final String DEFAULT_STORE_FACTORY_TYPE = "hbase";
     public static final int DEFAULT_ROCKS_DB_TTL = 7200;
+    public static final String DEFAULT_MESSAGE_INDEX_STORE_TYPE = "hbase";
+    public static final int DEFAULT_MESSAGE_INDEX_ROCKS_DB_TTL = 7 * 24 * 3600;
+    public static final int DEFAULT_BACKUP_PARTITIONS = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_BACKUP_PARTITION_QUEUE_SIZE = 10000;
 
     public static final String HBASE_MESSAGE_INDEX_TABLE_CONFIG_KEY = "hbase.message.table";
     public static final String HBASE_DELAY_MESSAGE_INDEX_TABLE_CONFIG_KEY = "hbase.delay.message.table";
@@ -48,6 +52,11 @@ public class DefaultBackupConfig implements BackupConfig {
     public static final String STORE_FACTORY_TYPE_CONFIG_KEY = "store.type";
     public static final String ROCKS_DB_PATH_CONFIG_KEY = "rocks.db.path";
     public static final String ROCKS_DB_TTL_CONFIG_KEY = "rocks.db.ttl";
+    public static final String MESSAGE_INDEX_STORE_TYPE_CONFIG_KEY = "message.index.store.type";
+    public static final String MESSAGE_INDEX_ROCKS_DB_PATH_CONFIG_KEY = "message.index.rocks.db.path";
+    public static final String MESSAGE_INDEX_ROCKS_DB_TTL_CONFIG_KEY = "message.index.rocks.db.ttl";
+    public static final String BACKUP_PARTITIONS_CONFIG_KEY = "backup.partitions";
+    public static final String BACKUP_PARTITION_QUEUE_SIZE_CONFIG_KEY = "backup.partition.queue.size";
     public static final String ACQUIRE_BACKUP_META_URL = "acquire.server.meta.url";
 
     private volatile String brokerGroup;
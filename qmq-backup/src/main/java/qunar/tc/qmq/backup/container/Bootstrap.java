@@ -22,6 +22,7 @@ import org.eclipse.jetty.servlet.ServletHolder;
 import qunar.tc.qmq.backup.api.DeadMessageApiServlet;
 import qunar.tc.qmq.backup.api.MessageApiServlet;
 import qunar.tc.qmq.backup.api.MessageDetailsServlet;
+import qunar.tc.qmq.backup.api.MessagePageDetailsServlet;
 import qunar.tc.qmq.backup.api.MessageRecordsServlet;
 import qunar.tc.qmq.backup.service.MessageService;
 import qunar.tc.qmq.backup.startup.ServerWrapper;
@@ -52,6 +53,9 @@ public class Bootstrap {
         MessageDetailsServlet messageDetailsServlet = new MessageDetailsServlet(messageService);
         addServlet(context, messageDetailsServlet, "/api/message/detail");
 
+        MessagePageDetailsServlet messagePageDetailsServlet = new MessagePageDetailsServlet(messageService);
+        addServlet(context, messagePageDetailsServlet, "/api/message/details");
+
         MessageRecordsServlet messageRecordsServlet = new MessageRecordsServlet(messageService);
         addServlet(context, messageRecordsServlet, "/api/message/records");
 
@@ -18,6 +18,7 @@ package qunar.tc.qmq.backup.service;
 
 import qunar.tc.qmq.backup.base.*;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -32,5 +33,10 @@ public interface MessageService {
 
     CompletableFuture<BackupMessage> findMessage(BackupQuery query);
 
+    /**
+     * 查一页消息并带上消息内容，各broker group并发拉取
+     */
+    CompletableFuture<List<BackupMessage>> findMessageDetails(BackupQuery query);
+
     CompletableFuture<RecordQueryResult> findRecords(RecordQuery query);
 }
@@ -40,7 +40,8 @@ import java.util.function.Consumer;
 public abstract class AbstractBatchBackup<T> implements BatchBackup<T> {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractBatchBackup.class);
 
-    private static final long MAX_STORE_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+    private static final long DEFAULT_BATCH_LINGER_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final long FORCE_STORE_CHECK_INTERVAL_MS = 500;
 
     protected static final String[] TYPE_ARRAY = new String[]{"type"};
     protected static final String[] INDEX_TYPE = new String[]{"messageIndex"};
@@ -57,7 +58,10 @@ public abstract class AbstractBatchBackup<T> implements BatchBackup<T> {
 
     private final ReentrantLock batchGuard = new ReentrantLock();
     private List<T> batch = new ArrayList<>();
-    private volatile long latestStoreTime = -1;
+    // 当前batch中第一条数据加入的时间
+    private long batchStartTime = -1;
+    // 最近一次add带的回调，linger强制写入的batch也要回调，否则调用方的checkpoint会停住
+    private Consumer<T> lastFi;
 
     AbstractBatchBackup(String backupName, BackupConfig config) {
         this.config = config.getDynamicConfig();
@@ -70,24 +74,25 @@ public abstract class AbstractBatchBackup<T> implements BatchBackup<T> {
 
     @Override
     public void start() {
-        forceStoreExecutor.scheduleAtFixedRate(this::tryForceStore, 10, 10, TimeUnit.SECONDS);
+        forceStoreExecutor.scheduleAtFixedRate(this::tryForceStore, FORCE_STORE_CHECK_INTERVAL_MS, FORCE_STORE_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
     }
 
     private void tryForceStore() {
         try {
-            final long interval = System.currentTimeMillis() - latestStoreTime;
-            if (interval < MAX_STORE_INTERVAL) {
-                return;
-            }
-
+            final long linger = config.getLong("backup.batch.linger.ms", DEFAULT_BATCH_LINGER_MS);
             List<T> batch;
+            Consumer<T> fi;
             batchGuard.lock();
             try {
+                if (batchStartTime < 0 || System.currentTimeMillis() - batchStartTime < linger) {
+                    return;
+                }
                 batch = getMinBatchOrNull(1);
+                fi = lastFi;
             } finally {
                 batchGuard.unlock();
             }
-            storeBatch(batch, null);
+            storeBatch(batch, fi);
         } catch (Throwable e) {
             LOGGER.warn("force store batch for {} failed.", backupName, e);
         }
@@ -95,13 +100,19 @@ public abstract class AbstractBatchBackup<T> implements BatchBackup<T> {
 
     @Override
     public void add(T t, Consumer<T> fi) {
-        storeBatch(tryCreateBatch(t), fi);
+        storeBatch(tryCreateBatch(t, fi), fi);
     }
 
-    private List<T> tryCreateBatch(final T t) {
+    private List<T> tryCreateBatch(final T t, final Consumer<T> fi) {
         batchGuard.lock();
         try {
+            if (batch.isEmpty()) {
+                batchStartTime = System.currentTimeMillis();
+            }
             batch.add(t);
+            if (fi != null) {
+                lastFi = fi;
+            }
             return getMinBatchOrNull(getBatchSize());
         } finally {
             batchGuard.unlock();
@@ -115,6 +126,7 @@ public abstract class AbstractBatchBackup<T> implements BatchBackup<T> {
 
         final List<T> tmp = batch;
         batch = new ArrayList<>(getBatchSize());
+        batchStartTime = -1;
         return tmp;
     }
 
@@ -125,7 +137,6 @@ public abstract class AbstractBatchBackup<T> implements BatchBackup<T> {
 
         try {
             store(batch, fi);
-            latestStoreTime = System.currentTimeMillis();
         } catch (Exception e) {
             storeExceptionCounter.inc();
             LOGGER.error("{} store backup error", backupName, e);
@@ -135,6 +146,7 @@ public abstract class AbstractBatchBackup<T> implements BatchBackup<T> {
     @Override
     public void close() {
         try {
+            forceStoreExecutor.shutdown();
             forceStoreExecutor.awaitTermination(5, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             LOGGER.error("Shutdown {} forceStoreExecutor interrupted.", backupName, e);
@@ -64,15 +64,11 @@ public class DeadMessageBatchBackup extends AbstractBatchBackup<MessageQueryInde
     @Override
     protected void doStop() {
         try {
+            executorService.shutdown();
             executorService.awaitTermination(5, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             LOGGER.error("dead message backup close interrupted.", e);
         }
-        try {
-            if (deadMessageStore != null) deadMessageStore.close();
-        } catch (Exception e) {
-            LOGGER.error("close {} failed.", deadMessageStore);
-        }
     }
 
     @Override
@@ -134,7 +130,7 @@ public class DeadMessageBatchBackup extends AbstractBatchBackup<MessageQueryInde
             }
 
             deadMessageStore.batchSave(recordKeys, recordValues);
-            if (func != null) func.accept(tailIndex);
+            if (func != null) func.accept(tailIndex != null ? tailIndex : indexes.get(indexes.size() - 1));
         } catch (Throwable e) {
             LOGGER.error("put backup dead message fail.", e);
             Throwables.propagate(e);
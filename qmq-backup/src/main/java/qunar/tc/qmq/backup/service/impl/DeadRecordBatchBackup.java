@@ -67,15 +67,11 @@ public class DeadRecordBatchBackup extends AbstractBatchBackup<MessageQueryIndex
     @Override
     protected void doStop() {
         try {
+            executorService.shutdown();
             executorService.awaitTermination(5, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             LOGGER.error("close dead record backup interrupted.", e);
         }
-        try {
-            if (recordStore != null) recordStore.close();
-        } catch (Exception e) {
-            LOGGER.error("close {} failed.", recordStore);
-        }
     }
 
     @Override
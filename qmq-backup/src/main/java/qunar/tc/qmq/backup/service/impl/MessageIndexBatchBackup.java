@@ -94,7 +94,8 @@ public class MessageIndexBatchBackup extends AbstractBatchBackup<MessageQueryInd
             }
         }
         indexStore.batchSave(keys, values);
-        if (fi != null) fi.accept(tailIndex);
+        // 整批都生成key失败时也要回调，这批数据已经处理过了，不能让checkpoint停在这里
+        if (fi != null) fi.accept(tailIndex != null ? tailIndex : indices.get(size - 1));
     }
 
     private void retry(MessageQueryIndex failMessage, Consumer<MessageQueryIndex> fi) {
@@ -106,6 +107,8 @@ public class MessageIndexBatchBackup extends AbstractBatchBackup<MessageQueryInd
         } else {
             monitorStoreDiscard(failMessage.getSubject());
             LOGGER.warn("message_index backup store discard. subject={}, messageId={}", failMessage.getSubject(), failMessage.getMessageId());
+            // 放弃重试的数据也算处理完了
+            if (fi != null) fi.accept(failMessage);
         }
     }
 
@@ -127,11 +130,7 @@ public class MessageIndexBatchBackup extends AbstractBatchBackup<MessageQueryInd
 
     @Override
     protected void doStop() {
-        try {
-            if (indexStore != null) indexStore.close();
-        } catch (Exception e) {
-            LOGGER.error("close {} failed.", indexStore);
-        }
+        // store由所有分区共用，由创建者统一关闭
     }
 
     @Override
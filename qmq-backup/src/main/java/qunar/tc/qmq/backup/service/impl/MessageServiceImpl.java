@@ -21,7 +21,6 @@ import com.google.common.collect.Lists;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import org.asynchttpclient.AsyncHttpClient;
 import org.asynchttpclient.BoundRequestBuilder;
-import org.asynchttpclient.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import qunar.tc.qmq.backup.base.*;
@@ -37,13 +36,17 @@ import qunar.tc.qmq.common.Disposable;
 import qunar.tc.qmq.concurrent.NamedThreadFactory;
 import qunar.tc.qmq.configuration.DynamicConfig;
 import qunar.tc.qmq.protocol.QMQSerializer;
+import qunar.tc.qmq.utils.CompressionUtils;
+import qunar.tc.qmq.utils.Flags;
 import qunar.tc.qmq.utils.PayloadHolderUtils;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.*;
 
@@ -121,45 +124,58 @@ public class MessageServiceImpl implements MessageService, Disposable {
 
     @Override
     public CompletableFuture<BackupMessage> findMessage(BackupQuery query) {
-        final CompletableFuture<BackupMessage> future = new CompletableFuture<>();
-        try {
-            queryExecutorService.execute(() -> {
-                try {
-                    final String subject = query.getSubject();
-                    final String brokerGroup = query.getBrokerGroup();
-                    final long sequence = query.getSequence();
-                    final BackupMessageMeta meta = new BackupMessageMeta(sequence, brokerGroup, "");
-                    final List<BackupMessage> messages = retrieveMessageWithMeta(brokerGroup, subject, Lists.newArrayList(meta));
-                    BackupMessage message = null;
-                    if (!messages.isEmpty()) {
-                        message = messages.get(0);
+        final String subject = query.getSubject();
+        final String brokerGroup = query.getBrokerGroup();
+        final long sequence = query.getSequence();
+        final BackupMessageMeta meta = new BackupMessageMeta(sequence, brokerGroup, "");
+        return retrieveMessageWithMeta(brokerGroup, subject, Lists.newArrayList(meta)).thenApply(messages -> messages.isEmpty() ? null : messages.get(0));
+    }
+
+    @Override
+    public CompletableFuture<List<BackupMessage>> findMessageDetails(BackupQuery query) {
+        return findMessages(query).thenCompose(result -> {
+            final String subject = query.getSubject();
+            final Map<String, List<BackupMessageMeta>> metasByGroup = new HashMap<>();
+            for (MessageQueryResult.MessageMeta meta : result.getList()) {
+                metasByGroup.computeIfAbsent(meta.getBrokerGroup(), key -> new ArrayList<>())
+                        .add(new BackupMessageMeta(meta.getSequence(), meta.getBrokerGroup(), meta.getMessageId()));
+            }
+
+            // 各个broker group同时拉取
+            final List<CompletableFuture<List<BackupMessage>>> futures = new ArrayList<>(metasByGroup.size());
+            for (Map.Entry<String, List<BackupMessageMeta>> entry : metasByGroup.entrySet()) {
+                futures.add(retrieveMessageWithMeta(entry.getKey(), subject, entry.getValue()).exceptionally(e -> Collections.emptyList()));
+            }
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(ignore -> {
+                final Map<String, BackupMessage> messages = new HashMap<>();
+                for (CompletableFuture<List<BackupMessage>> future : futures) {
+                    for (BackupMessage message : future.join()) {
+                        messages.put(message.getBrokerGroup() + ":" + message.getSequence(), message);
                     }
-                    future.complete(message);
-                } catch (Exception e) {
-                    LOG.error("Failed to find message details. {} ", query, e);
-                    future.completeExceptionally(e);
                 }
+
+                // 按索引的顺序返回
+                final List<BackupMessage> details = Lists.newArrayListWithCapacity(messages.size());
+                for (MessageQueryResult.MessageMeta meta : result.getList()) {
+                    final BackupMessage message = messages.get(meta.getBrokerGroup() + ":" + meta.getSequence());
+                    if (message != null) details.add(message);
+                }
+                return details;
             });
-        } catch (RejectedExecutionException e) {
-            LOG.error("Find message reject error.", e);
-            future.completeExceptionally(e);
-        }
-        return future;
+        });
     }
 
-    private List<BackupMessage> retrieveMessageWithMeta(String brokerGroup, String subject, List<BackupMessageMeta> metas) {
+    private CompletableFuture<List<BackupMessage>> retrieveMessageWithMeta(String brokerGroup, String subject, List<BackupMessageMeta> metas) {
         LOG.info("retrieve message from {}", brokerGroup);
         final String backupAddress = metaSupplier.resolveServerAddress(brokerGroup);
-        if (Strings.isNullOrEmpty(backupAddress)) return Collections.emptyList();
+        if (Strings.isNullOrEmpty(backupAddress)) return CompletableFuture.completedFuture(Collections.emptyList());
         String url = MESSAGE_QUERY_PROTOCOL + backupAddress + MESSAGE_QUERY_URL;
 
-        try {
-            BoundRequestBuilder boundRequestBuilder = ASYNC_HTTP_CLIENT.prepareGet(url);
-            boundRequestBuilder.addQueryParam("backupQuery", serializer.serialize(getQuery(subject, metas)));
-
-            final Response response = boundRequestBuilder.execute().get();
+        BoundRequestBuilder boundRequestBuilder = ASYNC_HTTP_CLIENT.prepareGet(url);
+        boundRequestBuilder.addQueryParam("backupQuery", serializer.serialize(getQuery(subject, metas)));
+        return boundRequestBuilder.execute().toCompletableFuture().thenApply(response -> {
             if (response.getStatusCode() != HttpResponseStatus.OK.code()) {
-                return Collections.emptyList();
+                return Collections.<BackupMessage>emptyList();
             }
 
             List<BackupMessage> messages = Lists.newArrayList();
@@ -173,12 +189,10 @@ public class MessageServiceImpl implements MessageService, Disposable {
                     messages.add(message);
                 }
             }
-
             return messages;
-        } catch (InterruptedException | ExecutionException e) {
-            LOG.error("retrieve message with meta failed.", e);
-            throw new RuntimeException("retrieve message failed.");
-        }
+        }).whenComplete((messages, e) -> {
+            if (e != null) LOG.error("retrieve message with meta failed. brokerGroup: {}", brokerGroup, e);
+        });
     }
 
     private BackupMessage decodeBackupMessage(final ByteBuffer message, final long messageSeq) {
@@ -198,7 +212,7 @@ public class MessageServiceImpl implements MessageService, Disposable {
         final byte[] bodyBs = PayloadHolderUtils.readBytes(message);
         HashMap<String, Object> attributes = null;
         try {
-            attributes = getAttributes(bodyBs, createTime);
+            attributes = getAttributes(flag, bodyBs, createTime);
         } catch (Exception e) {
             LOG.error("retrieve message attributes failed.", e);
         }
@@ -210,9 +224,9 @@ public class MessageServiceImpl implements MessageService, Disposable {
         return backupMessage;
     }
 
-    private static HashMap<String, Object> getAttributes(final byte[] bodyBs, final long createTime) {
+    private static HashMap<String, Object> getAttributes(final byte flag, final byte[] bodyBs, final long createTime) {
         HashMap<String, Object> attributes;
-        attributes = QMQSerializer.deserializeMap(bodyBs);
+        attributes = QMQSerializer.deserializeMap(Flags.isCompressed(flag) ? CompressionUtils.decompress(bodyBs) : bodyBs);
         attributes.put(BaseMessage.keys.qmq_createTime.name(), createTime);
         return attributes;
     }
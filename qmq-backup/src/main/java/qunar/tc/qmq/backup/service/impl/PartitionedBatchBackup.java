@@ -0,0 +1,221 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.backup.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.backup.config.BackupConfig;
+import qunar.tc.qmq.backup.service.BatchBackup;
+import qunar.tc.qmq.concurrent.NamedThreadFactory;
+import qunar.tc.qmq.configuration.DynamicConfig;
+import qunar.tc.qmq.metrics.Metrics;
+import qunar.tc.qmq.metrics.QmqMeter;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import static qunar.tc.qmq.backup.config.DefaultBackupConfig.*;
+
+/**
+ * 按subject哈希把备份分到多个分区并行写入
+ * <p>
+ * 调用方线程只做分发，每个分区有自己的有界队列、写入线程和BatchBackup实例，队列满了会阻塞调用方；
+ * 带回调的数据按分发顺序登记，只有某条之前的数据全部写完才回调，所以checkpoint不会越过还没写完的数据
+ */
+public class PartitionedBatchBackup<T> implements BatchBackup<T> {
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionedBatchBackup.class);
+
+    private static final String[] NAME_PARTITION_ARRAY = new String[]{"name", "partition"};
+    private static final String[] NAME_ARRAY = new String[]{"name"};
+
+    private final String name;
+    private final Function<T, String> subjectOf;
+    private final Partition[] partitions;
+
+    private final AtomicLong dispatchSequence = new AtomicLong(0);
+    private final ConcurrentSkipListMap<Long, Pending<T>> pending = new ConcurrentSkipListMap<>();
+    private final ReentrantLock checkpointGuard = new ReentrantLock();
+    private final QmqMeter dispatchMeter;
+
+    private volatile boolean running = true;
+
+    public PartitionedBatchBackup(String name, BackupConfig config, Function<T, String> subjectOf, IntFunction<BatchBackup<T>> backupFactory) {
+        final DynamicConfig dynamicConfig = config.getDynamicConfig();
+        final int partitionNum = Math.max(1, dynamicConfig.getInt(BACKUP_PARTITIONS_CONFIG_KEY, DEFAULT_BACKUP_PARTITIONS));
+        final int queueSize = Math.max(1, dynamicConfig.getInt(BACKUP_PARTITION_QUEUE_SIZE_CONFIG_KEY, DEFAULT_BACKUP_PARTITION_QUEUE_SIZE));
+
+        this.name = name;
+        this.subjectOf = subjectOf;
+        this.partitions = new PartitionedBatchBackup.Partition[partitionNum];
+        final ThreadFactory threadFactory = new NamedThreadFactory(name + "-partition");
+        for (int i = 0; i < partitionNum; i++) {
+            partitions[i] = new Partition(i, backupFactory.apply(i), queueSize, threadFactory);
+        }
+
+        this.dispatchMeter = Metrics.meter("backup_dispatch_qps", NAME_ARRAY, new String[]{name});
+        Metrics.gauge("backup_pending_checkpoint", NAME_ARRAY, new String[]{name}, () -> (double) pending.size());
+    }
+
+    @Override
+    public void start() {
+        for (Partition partition : partitions) {
+            partition.start();
+        }
+    }
+
+    @Override
+    public void add(T t, Consumer<T> fi) {
+        final Pending<T> p = new Pending<>(t, fi);
+        if (fi != null) {
+            pending.put(dispatchSequence.incrementAndGet(), p);
+        }
+
+        final Partition partition = partitions[(subjectOf.apply(t).hashCode() & 0x7fffffff) % partitions.length];
+        try {
+            partition.queue.put(p);
+            dispatchMeter.mark();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("{} dispatch interrupted.", name);
+        }
+    }
+
+    private void advanceCheckpoint() {
+        checkpointGuard.lock();
+        try {
+            Pending<T> last = null;
+            Map.Entry<Long, Pending<T>> first;
+            while ((first = pending.firstEntry()) != null && first.getValue().done) {
+                pending.pollFirstEntry();
+                last = first.getValue();
+            }
+            if (last != null) {
+                last.fi.accept(last.item);
+            }
+        } finally {
+            checkpointGuard.unlock();
+        }
+    }
+
+    /**
+     * 先等所有分区把队列里的数据交给backup，再逐个关闭backup；分区共用的store由创建者关闭
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Partition partition : partitions) {
+            partition.awaitDrained();
+        }
+        for (Partition partition : partitions) {
+            partition.backup.close();
+        }
+    }
+
+    private static class Pending<T> {
+        private final T item;
+        private final Consumer<T> fi;
+        private volatile boolean done = false;
+
+        private Pending(T item, Consumer<T> fi) {
+            this.item = item;
+            this.fi = fi;
+        }
+    }
+
+    private class Partition implements Runnable {
+        private final BatchBackup<T> backup;
+        private final BlockingQueue<Pending<T>> queue;
+        private final Thread thread;
+        // 已经交给backup、还没有回调的数据，按分发顺序排列
+        private final Queue<Pending<T>> inflight = new ConcurrentLinkedQueue<>();
+        private final Consumer<T> stored = this::onStored;
+
+        private Partition(int index, BatchBackup<T> backup, int queueSize, ThreadFactory threadFactory) {
+            this.backup = backup;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            this.thread = threadFactory.newThread(this);
+            Metrics.gauge("backup_partition_queue_size", NAME_PARTITION_ARRAY, new String[]{name, String.valueOf(index)}, () -> (double) queue.size());
+        }
+
+        private void start() {
+            backup.start();
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                try {
+                    final Pending<T> p = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (p == null) continue;
+
+                    if (p.fi == null) {
+                        backup.add(p.item, null);
+                    } else {
+                        inflight.add(p);
+                        backup.add(p.item, stored);
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                } catch (Throwable e) {
+                    LOG.error("{} partition backup failed.", name, e);
+                }
+            }
+        }
+
+        /**
+         * backup回调的是一批里最后的一条，它之前分到这个分区的数据也都处理完了
+         */
+        private void onStored(T tail) {
+            if (tail == null || !isInflight(tail)) return;
+
+            Pending<T> p;
+            while ((p = inflight.poll()) != null) {
+                p.done = true;
+                if (p.item == tail) break;
+            }
+            advanceCheckpoint();
+        }
+
+        // 重试的数据可能已经被前面的回调标记过了，不在inflight里就不能往下标记，否则会越过还没写完的数据
+        private boolean isInflight(T item) {
+            for (Pending<T> p : inflight) {
+                if (p.item == item) return true;
+            }
+            return false;
+        }
+
+        private void awaitDrained() {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                LOG.error("Shutdown {} partition interrupted.", name, e);
+            }
+        }
+    }
+}
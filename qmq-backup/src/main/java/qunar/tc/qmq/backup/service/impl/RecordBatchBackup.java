@@ -34,7 +34,6 @@ import qunar.tc.qmq.store.action.PullAction;
 import qunar.tc.qmq.store.action.RangeAckAction;
 import qunar.tc.qmq.utils.RetrySubjectUtils;
 
-import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
@@ -69,16 +68,7 @@ public class RecordBatchBackup extends AbstractBatchBackup<ActionRecord> {
 
     @Override
     protected void doStop() {
-        try {
-            if (rocksDBStore != null) rocksDBStore.close();
-        } catch (IOException e) {
-            LOGGER.error("close {} failed.", rocksDBStore);
-        }
-        try {
-            if (recordStore != null) recordStore.close();
-        } catch (Exception e) {
-            LOGGER.error("close {} failed.", recordStore);
-        }
+        // store由所有分区共用，由创建者统一关闭
     }
 
     @Override
@@ -48,6 +48,7 @@ import qunar.tc.qmq.backup.service.impl.IndexEventBusListener;
 import qunar.tc.qmq.backup.service.impl.IndexFileStore;
 import qunar.tc.qmq.backup.service.impl.MessageIndexBatchBackup;
 import qunar.tc.qmq.backup.service.impl.MessageServiceImpl;
+import qunar.tc.qmq.backup.service.impl.PartitionedBatchBackup;
 import qunar.tc.qmq.backup.service.impl.RecordBatchBackup;
 import qunar.tc.qmq.backup.store.DicStore;
 import qunar.tc.qmq.backup.store.KvStore;
@@ -92,6 +93,7 @@ public class ServerWrapper implements Disposable {
     private RecordStore recordStore;
     private MessageStore indexStore;
     private MessageStore deadMessageStore;
+    private RocksDBStore rocksDBStore;
 
     private MessageService messageService;
 
@@ -148,8 +150,9 @@ public class ServerWrapper implements Disposable {
         masterSlaveSyncManager.registerProcessor(dispatcher.getSyncType(), new BackupMessageLogSyncProcessor(dispatcher));
 
         // action
-        final RocksDBStore rocksDBStore = new RocksDBStoreImpl(config);
-        final BatchBackup<ActionRecord> recordBackup = new RecordBatchBackup(this.config, keyGenerator, rocksDBStore, recordStore);
+        this.rocksDBStore = new RocksDBStoreImpl(config);
+        final BatchBackup<ActionRecord> recordBackup = new PartitionedBatchBackup<>("actionBackup", this.config, record -> record.getAction().subject()
+                , i -> new RecordBatchBackup(this.config, keyGenerator, rocksDBStore, recordStore));
         backupManager.registerBatchBackup(recordBackup);
         final SyncLogIterator<Action, ByteBuf> actionIterator = new ActionSyncLogIterator();
         BackupActionLogSyncProcessor actionLogSyncProcessor = new BackupActionLogSyncProcessor(checkpointManager, config, actionIterator, recordBackup);
@@ -169,7 +172,24 @@ public class ServerWrapper implements Disposable {
         backupManager.start();
         iterateService.start();
         masterSlaveSyncManager.startSync();
-        addResourcesInOrder(scheduleFlushManager, backupManager, masterSlaveSyncManager);
+        // 倒序关闭，store在所有backup都关闭之后才关闭
+        addResourcesInOrder(this::closeStores, scheduleFlushManager, backupManager, masterSlaveSyncManager);
+    }
+
+    private void closeStores() {
+        closeQuietly(indexStore);
+        closeQuietly(recordStore);
+        closeQuietly(deadMessageStore);
+        closeQuietly(rocksDBStore);
+    }
+
+    private static void closeQuietly(AutoCloseable store) {
+        if (store == null) return;
+        try {
+            store.close();
+        } catch (Exception e) {
+            LOG.error("close {} failed.", store, e);
+        }
     }
 
     public MessageService getMessageService() {
@@ -187,11 +207,14 @@ public class ServerWrapper implements Disposable {
     }
 
     private FixedExecOrderEventBus.Listener<MessageQueryIndex> getConstructIndexListener(final BackupKeyGenerator keyGenerator, Consumer<MessageQueryIndex> consumer) {
-        final BatchBackup<MessageQueryIndex> deadRecordBackup = new DeadRecordBatchBackup(recordStore, keyGenerator, config);
+        final BatchBackup<MessageQueryIndex> deadRecordBackup = new PartitionedBatchBackup<>("deadRecordBackup", config, MessageQueryIndex::getSubject
+                , i -> new DeadRecordBatchBackup(recordStore, keyGenerator, config));
         backupManager.registerBatchBackup(deadRecordBackup);
-        final BatchBackup<MessageQueryIndex> deadMessageBackup = new DeadMessageBatchBackup(deadMessageStore, keyGenerator, config);
+        final BatchBackup<MessageQueryIndex> deadMessageBackup = new PartitionedBatchBackup<>("deadMessageBackup", config, MessageQueryIndex::getSubject
+                , i -> new DeadMessageBatchBackup(deadMessageStore, keyGenerator, config));
         backupManager.registerBatchBackup(deadMessageBackup);
-        final BatchBackup<MessageQueryIndex> indexBackup = new MessageIndexBatchBackup(config, indexStore, keyGenerator);
+        final BatchBackup<MessageQueryIndex> indexBackup = new PartitionedBatchBackup<>("messageIndexBackup", config, MessageQueryIndex::getSubject
+                , i -> new MessageIndexBatchBackup(config, indexStore, keyGenerator));
         backupManager.registerBatchBackup(indexBackup);
         return new IndexEventBusListener(deadMessageBackup, deadRecordBackup, indexBackup, consumer);
     }
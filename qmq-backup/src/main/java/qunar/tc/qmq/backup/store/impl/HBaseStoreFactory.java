@@ -48,6 +48,7 @@ public class HBaseStoreFactory implements KvStore.StoreFactory {
     private final String recordTable;
     private final String deadTable;
 
+    private final DynamicConfig config;
     private final DicService dicService;
     private final BackupKeyGenerator keyGenerator;
 
@@ -62,6 +63,7 @@ public class HBaseStoreFactory implements KvStore.StoreFactory {
         this.recordTable = config.getString(HBASE_RECORD_TABLE_CONFIG_KEY, DEFAULT_HBASE_RECORD_TABLE);
         this.deadTable = config.getString(HBASE_DEAD_MESSAGE_CONFIG_KEY, DEFAULT_HBASE_DEAD_TABLE);
 
+        this.config = config;
         this.dicService = dicService;
         this.keyGenerator = keyGenerator;
     }
@@ -78,7 +80,14 @@ public class HBaseStoreFactory implements KvStore.StoreFactory {
     @Override
     public MessageStore createMessageIndexStore() {
         byte[] table = CharsetUtils.toUTF8Bytes(this.table);
-        return new HBaseIndexStore(table, B_FAMILY, B_MESSAGE_QUALIFIERS, client, dicService);
+        final HBaseIndexStore hbaseIndexStore = new HBaseIndexStore(table, B_FAMILY, B_MESSAGE_QUALIFIERS, client, dicService);
+        final String indexStoreType = config.getString(MESSAGE_INDEX_STORE_TYPE_CONFIG_KEY, DEFAULT_MESSAGE_INDEX_STORE_TYPE);
+        if (!"rocksdb".equals(indexStoreType)) return hbaseIndexStore;
+
+        // 本地索引负责查询，HBase继续全量写入，供消费轨迹和超出本地保留期的查询使用
+        final String path = config.getString(MESSAGE_INDEX_ROCKS_DB_PATH_CONFIG_KEY);
+        final int ttl = config.getInt(MESSAGE_INDEX_ROCKS_DB_TTL_CONFIG_KEY, DEFAULT_MESSAGE_INDEX_ROCKS_DB_TTL);
+        return new RocksDBMessageIndexStore(path, ttl, dicService, hbaseIndexStore);
     }
 
     @Override
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.backup.store.impl;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.primitives.UnsignedBytes;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.TtlDB;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.backup.base.BackupMessageMeta;
+import qunar.tc.qmq.backup.base.BackupQuery;
+import qunar.tc.qmq.backup.base.MessageQueryResult;
+import qunar.tc.qmq.backup.service.DicService;
+import qunar.tc.qmq.backup.store.MessageStore;
+import qunar.tc.qmq.backup.util.BackupMessageKeyRangeBuilder;
+import qunar.tc.qmq.backup.util.KeyTools;
+import qunar.tc.qmq.metrics.Metrics;
+import qunar.tc.qmq.utils.CharsetUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static qunar.tc.qmq.backup.service.BackupKeyGenerator.CREATE_TIME_LENGTH;
+import static qunar.tc.qmq.backup.service.BackupKeyGenerator.MESSAGE_ID_LENGTH;
+import static qunar.tc.qmq.backup.service.BackupKeyGenerator.MESSAGE_SUBJECT_LENGTH;
+import static qunar.tc.qmq.backup.util.HBaseValueDecoder.getMessageMeta;
+
+/**
+ * 本地RocksDB消息索引，和HBase索引表使用同样的row key和value格式
+ * <p>
+ * 消息按subject + 倒序时间 + messageId排序，按(subject, 小时)做前缀bloom，查询直接按范围迭代，不再需要正则过滤；
+ * messageId单独建一个二级索引，按messageId查询是一次点查。
+ * 本地只保留最近一段时间的索引，更早的查询交给mirror(一般是HBase索引表)
+ */
+public class RocksDBMessageIndexStore implements MessageStore {
+    private static final Logger LOG = LoggerFactory.getLogger(RocksDBMessageIndexStore.class);
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    private static final byte[] MESSAGE_ID_COLUMN_FAMILY = CharsetUtils.toUTF8Bytes("message_id");
+    // 记录本地索引第一次创建的时间，本地没有这之前的数据
+    private static final String START_TIME_FILE = "index_start_time";
+
+    // subject + 倒序时间里的yyMMddHH，即按小时分桶
+    private static final int BUCKET_PREFIX_LENGTH = MESSAGE_SUBJECT_LENGTH + 8;
+    private static final int MESSAGE_KEY_LENGTH = MESSAGE_SUBJECT_LENGTH + CREATE_TIME_LENGTH + MESSAGE_ID_LENGTH;
+    private static final Comparator<byte[]> KEY_COMPARATOR = UnsignedBytes.lexicographicalComparator();
+
+    private final DicService dicService;
+    private final MessageStore mirror;
+    private final long retentionMillis;
+    private final long startTime;
+
+    private final DBOptions options;
+    private final List<ColumnFamilyOptions> columnFamilyOptions;
+    private final List<BloomFilter> filters;
+    private final TtlDB db;
+    private final ColumnFamilyHandle messages;
+    private final ColumnFamilyHandle messageIds;
+    private final List<ColumnFamilyHandle> handles = new ArrayList<>();
+
+    private volatile boolean isClosed = false;
+
+    /**
+     * @param mirror 同时写入的另一个索引，本地过期的数据从这里查，可以为null
+     */
+    public RocksDBMessageIndexStore(String path, int ttlSeconds, DicService dicService, MessageStore mirror) {
+        this.dicService = dicService;
+        this.mirror = mirror;
+        this.retentionMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+
+        File file = new File(path);
+        if (!file.exists() || !file.isDirectory()) {
+            if (!file.mkdirs()) {
+                throw new RuntimeException("Failed to create RocksDB dir.");
+            }
+        }
+
+        this.startTime = loadStartTime(file);
+
+        this.filters = Arrays.asList(new BloomFilter(10, false), new BloomFilter(10, false));
+        final ColumnFamilyOptions messageOptions = new ColumnFamilyOptions()
+                .useFixedLengthPrefixExtractor(BUCKET_PREFIX_LENGTH)
+                .setMemtablePrefixBloomSizeRatio(0.1)
+                .setTableFormatConfig(new BlockBasedTableConfig().setFilter(filters.get(0)));
+        final ColumnFamilyOptions messageIdOptions = new ColumnFamilyOptions()
+                .setTableFormatConfig(new BlockBasedTableConfig().setFilter(filters.get(1)));
+        this.columnFamilyOptions = Arrays.asList(messageOptions, messageIdOptions);
+        final List<ColumnFamilyDescriptor> descriptors = Arrays.asList(
+                new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, messageOptions),
+                new ColumnFamilyDescriptor(MESSAGE_ID_COLUMN_FAMILY, messageIdOptions));
+
+        this.options = new DBOptions()
+                .setCreateIfMissing(true)
+                .setCreateMissingColumnFamilies(true);
+        try {
+            this.db = TtlDB.open(options, path, descriptors, handles, Arrays.asList(ttlSeconds, ttlSeconds), false);
+            this.messages = handles.get(0);
+            this.messageIds = handles.get(1);
+            LOG.info("open message index rocks db success, path:{}, ttl:{}", path, ttlSeconds);
+        } catch (Exception e) {
+            LOG.error("open message index rocks db error, path:{}, ttl:{}", path, ttlSeconds, e);
+            closeOptions();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static long loadStartTime(final File dir) {
+        final File file = new File(dir, START_TIME_FILE);
+        try {
+            if (file.exists()) {
+                return Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim());
+            }
+            final long now = System.currentTimeMillis();
+            Files.write(file.toPath(), String.valueOf(now).getBytes(StandardCharsets.UTF_8));
+            return now;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load message index start time. file: " + file.getAbsolutePath(), e);
+        }
+    }
+
+    @Override
+    public void batchSave(byte[][] keys, byte[][][] values) {
+        try (WriteBatch batch = new WriteBatch(); WriteOptions options = new WriteOptions()) {
+            for (int i = 0; i < keys.length; ++i) {
+                final byte[] key = keys[i];
+                // 重试消息的key只有消费轨迹会用到，留给mirror
+                if (key == null || key.length != MESSAGE_KEY_LENGTH) continue;
+
+                batch.put(messages, key, values[i][0]);
+                batch.put(messageIds, messageIdKey(key), key);
+            }
+            db.write(options, batch);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        if (mirror != null) {
+            mirror.batchSave(keys, values);
+        }
+    }
+
+    private static byte[] messageIdKey(byte[] messageKey) {
+        final byte[] key = new byte[MESSAGE_SUBJECT_LENGTH + MESSAGE_ID_LENGTH];
+        System.arraycopy(messageKey, 0, key, 0, MESSAGE_SUBJECT_LENGTH);
+        System.arraycopy(messageKey, MESSAGE_SUBJECT_LENGTH + CREATE_TIME_LENGTH, key, MESSAGE_SUBJECT_LENGTH, MESSAGE_ID_LENGTH);
+        return key;
+    }
+
+    @Override
+    public MessageQueryResult findMessages(BackupQuery query) {
+        if (query == null || Strings.isNullOrEmpty(query.getSubject()) || query.isDelay()) {
+            return AbstractHBaseMessageStore.EMPTY_RESULT;
+        }
+        makeUp(query);
+
+        final String subjectId = dicService.name2Id(query.getSubject());
+        // 本地索引创建之前的数据不会补写进来，也要到mirror里查
+        final Date retentionBegin = new Date(Math.max(startTime, System.currentTimeMillis() - retentionMillis));
+        final boolean beyondRetention = query.getMsgCreateTimeBegin().before(retentionBegin);
+        // key里的时间是倒序的，本地保留范围的结束就是更早的时间
+        final String localEnd = BackupMessageKeyRangeBuilder.buildEndKey(subjectId, beyondRetention ? retentionBegin : query.getMsgCreateTimeBegin());
+
+        final MessageQueryResult result;
+        if (Strings.isNullOrEmpty(query.getMessageId())) {
+            final String startKey = BackupMessageKeyRangeBuilder.buildStartKey(query.getStart(), subjectId, query.getMsgCreateTimeEnd());
+            result = scan(query.getSubject(), startKey, localEnd, Math.max(1, query.getLen()));
+        } else {
+            final String startKey = BackupMessageKeyRangeBuilder.buildStartKey(null, subjectId, query.getMsgCreateTimeEnd());
+            result = findByMessageId(query.getSubject(), subjectId, query.getMessageId(), startKey, localEnd);
+        }
+
+        if (mirror == null || !beyondRetention || result.getNext() != null || result.getList().size() >= Math.max(1, query.getLen())) {
+            return result;
+        }
+        return continueInMirror(query, result, localEnd);
+    }
+
+    private void makeUp(final BackupQuery query) {
+        if (query.getMsgCreateTimeEnd() == null) {
+            query.setMsgCreateTimeEnd(new Date());
+        }
+        if (query.getMsgCreateTimeBegin() == null) {
+            query.setMsgCreateTimeBegin(new Date(query.getMsgCreateTimeEnd().getTime() - TimeUnit.DAYS.toMillis(30)));
+        }
+        if (!Strings.isNullOrEmpty(query.getMessageId())) {
+            query.setLen(1);
+        }
+    }
+
+    /**
+     * 本地没有查满，剩下的部分从本地保留范围的边界开始到mirror里查
+     */
+    private MessageQueryResult continueInMirror(final BackupQuery query, final MessageQueryResult local, final String localEnd) {
+        final String start = query.getStart();
+        query.setStart(Strings.isNullOrEmpty(start) || start.compareTo(localEnd) < 0 ? localEnd : start);
+        query.setLen(Math.max(1, query.getLen()) - local.getList().size());
+        final MessageQueryResult remote = mirror.findMessages(query);
+
+        final List<MessageQueryResult.MessageMeta> list = Lists.newArrayList(local.getList());
+        list.addAll(remote.getList());
+        final MessageQueryResult result = new MessageQueryResult();
+        result.setList(list);
+        result.setNext(remote.getNext());
+        return result;
+    }
+
+    private MessageQueryResult scan(final String subject, final String startKey, final String endKey, final int maxResults) {
+        final MessageQueryResult result = new MessageQueryResult();
+        final byte[] end = CharsetUtils.toUTF8Bytes(endKey);
+        final List<MessageQueryResult.MessageMeta> list = Lists.newArrayListWithCapacity(Math.min(maxResults, 1024));
+
+        // 桶内用前缀迭代器，可以用bloom过滤掉不包含这个桶的文件；一个桶迭代完再用全序迭代器找下一个有数据的桶
+        try (ReadOptions bucketOptions = new ReadOptions().setPrefixSameAsStart(true);
+             ReadOptions totalOrderOptions = new ReadOptions().setTotalOrderSeek(true);
+             RocksIterator bucketIterator = db.newIterator(messages, bucketOptions);
+             RocksIterator locator = db.newIterator(messages, totalOrderOptions)) {
+            byte[] seekKey = CharsetUtils.toUTF8Bytes(startKey);
+            while (KEY_COMPARATOR.compare(seekKey, end) < 0) {
+                for (bucketIterator.seek(seekKey); bucketIterator.isValid(); bucketIterator.next()) {
+                    final byte[] key = bucketIterator.key();
+                    if (KEY_COMPARATOR.compare(key, end) >= 0) {
+                        result.setList(list);
+                        return result;
+                    }
+                    if (key.length != MESSAGE_KEY_LENGTH) continue;
+                    if (list.size() == maxResults) {
+                        result.setNext(CharsetUtils.toUTF8String(key));
+                        result.setList(list);
+                        return result;
+                    }
+
+                    final BackupMessageMeta meta = getMessageMeta(bucketIterator.value());
+                    if (meta == null) {
+                        Metrics.counter("message.content.missing").inc();
+                        continue;
+                    }
+                    list.add(toMessageMeta(subject, meta));
+                }
+
+                locator.seek(nextBucket(seekKey));
+                if (!locator.isValid()) break;
+                seekKey = locator.key();
+            }
+        } catch (Exception e) {
+            LOG.error("Failed to scan messages from rocks db. subject: {}", subject, e);
+        }
+        result.setList(list);
+        return result;
+    }
+
+    private MessageQueryResult findByMessageId(final String subject, final String subjectId, final String messageId, final String startKey, final String endKey) {
+        final MessageQueryResult result = new MessageQueryResult();
+        try {
+            final byte[] idKey = CharsetUtils.toUTF8Bytes(subjectId + KeyTools.generateMD5Key(messageId));
+            final byte[] key = db.get(messageIds, idKey);
+            if (key == null) return result;
+
+            final String keyString = CharsetUtils.toUTF8String(key);
+            if (keyString.compareTo(startKey) < 0 || keyString.compareTo(endKey) >= 0) return result;
+
+            final BackupMessageMeta meta = getMessageMeta(db.get(messages, key));
+            if (meta != null) {
+                result.setList(Lists.newArrayList(toMessageMeta(subject, meta)));
+            }
+        } catch (Exception e) {
+            LOG.error("Failed to get message from rocks db. subject: {}, messageId: {}", subject, messageId, e);
+        }
+        return result;
+    }
+
+    private static byte[] nextBucket(byte[] key) {
+        final byte[] next = Arrays.copyOf(key, BUCKET_PREFIX_LENGTH);
+        for (int i = next.length - 1; i >= 0; --i) {
+            if (++next[i] != 0) break;
+        }
+        return next;
+    }
+
+    private static MessageQueryResult.MessageMeta toMessageMeta(final String subject, final BackupMessageMeta meta) {
+        return new MessageQueryResult.MessageMeta(subject, meta.getMessageId(), meta.getSequence(), meta.getCreateTime(), meta.getBrokerGroup());
+    }
+
+    private void closeOptions() {
+        options.close();
+        for (ColumnFamilyOptions option : columnFamilyOptions) {
+            option.close();
+        }
+        for (BloomFilter filter : filters) {
+            filter.close();
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (isClosed) return;
+        isClosed = true;
+        for (ColumnFamilyHandle handle : handles) {
+            handle.close();
+        }
+        db.close();
+        closeOptions();
+        if (mirror != null) {
+            mirror.close();
+        }
+    }
+}
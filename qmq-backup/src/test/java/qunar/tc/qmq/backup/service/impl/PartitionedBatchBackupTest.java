@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.backup.service.impl;
+
+import org.junit.Test;
+import qunar.tc.qmq.backup.config.BackupConfig;
+import qunar.tc.qmq.configuration.DynamicConfig;
+import qunar.tc.qmq.configuration.Listener;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static qunar.tc.qmq.backup.config.DefaultBackupConfig.BACKUP_PARTITIONS_CONFIG_KEY;
+
+public class PartitionedBatchBackupTest {
+
+    @Test
+    public void testCheckpointAfterLinger() throws Exception {
+        final Map<String, String> props = new HashMap<>();
+        props.put(BACKUP_PARTITIONS_CONFIG_KEY, "2");
+        props.put("backup.batch.linger.ms", "100");
+        final BackupConfig config = new TestBackupConfig(new MapDynamicConfig(props));
+
+        final PartitionedBatchBackup<String> backup = new PartitionedBatchBackup<>("test", config, item -> "subject", i -> new NoopBatchBackup(config));
+        backup.start();
+        try {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final AtomicReference<String> checkpoint = new AtomicReference<>();
+            final Consumer<String> fi = item -> {
+                checkpoint.set(item);
+                latch.countDown();
+            };
+
+            // 不够一个batch，只能靠linger写入
+            for (int i = 0; i < 5; i++) {
+                backup.add("message-" + i, fi);
+            }
+
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals("message-4", checkpoint.get());
+        } finally {
+            backup.close();
+        }
+    }
+
+    private static class NoopBatchBackup extends AbstractBatchBackup<String> {
+        NoopBatchBackup(BackupConfig config) {
+            super("noop", config);
+        }
+
+        @Override
+        protected void doStop() {
+        }
+
+        @Override
+        protected void store(List<String> batch, Consumer<String> fi) {
+            if (fi != null) fi.accept(batch.get(batch.size() - 1));
+        }
+
+        @Override
+        protected int getBatchSize() {
+            return 10;
+        }
+    }
+
+    private static class TestBackupConfig implements BackupConfig {
+        private final DynamicConfig config;
+        private String brokerGroup = "test";
+
+        private TestBackupConfig(DynamicConfig config) {
+            this.config = config;
+        }
+
+        @Override
+        public String getBrokerGroup() {
+            return brokerGroup;
+        }
+
+        @Override
+        public void setBrokerGroup(String name) {
+            this.brokerGroup = name;
+        }
+
+        @Override
+        public DynamicConfig getDynamicConfig() {
+            return config;
+        }
+    }
+
+    private static class MapDynamicConfig implements DynamicConfig {
+        private final Map<String, String> props;
+
+        private MapDynamicConfig(Map<String, String> props) {
+            this.props = props;
+        }
+
+        @Override
+        public void addListener(Listener listener) {
+        }
+
+        @Override
+        public String getString(String name) {
+            return props.get(name);
+        }
+
+        @Override
+        public String getString(String name, String defaultValue) {
+            return props.containsKey(name) ? props.get(name) : defaultValue;
+        }
+
+        @Override
+        public int getInt(String name) {
+            return Integer.parseInt(props.get(name));
+        }
+
+        @Override
+        public int getInt(String name, int defaultValue) {
+            return props.containsKey(name) ? getInt(name) : defaultValue;
+        }
+
+        @Override
+        public long getLong(String name) {
+            return Long.parseLong(props.get(name));
+        }
+
+        @Override
+        public long getLong(String name, long defaultValue) {
+            return props.containsKey(name) ? getLong(name) : defaultValue;
+        }
+
+        @Override
+        public double getDouble(String name) {
+            return Double.parseDouble(props.get(name));
+        }
+
+        @Override
+        public double getDouble(String name, double defaultValue) {
+            return props.containsKey(name) ? getDouble(name) : defaultValue;
+        }
+
+        @Override
+        public boolean getBoolean(String name, boolean defaultValue) {
+            return props.containsKey(name) ? Boolean.parseBoolean(props.get(name)) : defaultValue;
+        }
+
+        @Override
+        public boolean exist(String name) {
+            return props.containsKey(name);
+        }
+
+        @Override
+        public Map<String, String> asMap() {
+            return props;
+        }
+    }
+}
@@ -46,6 +46,7 @@ public class PullSubjectsConfig {
     private final AtomicIntegerConfig ackNosendLimit;
     private final AtomicIntegerConfig maxRetryNum;
     private final AtomicIntegerConfig refreshQueueCountIntervalConfig;
+    private final AtomicIntegerConfig prefetchBytesConfig;
 
     private PullSubjectsConfig() {
         pullBatchSizeConfig = new AtomicIntegerConfig(50, 1, 10000);
@@ -54,6 +55,7 @@ public class PullSubjectsConfig {
         ackNosendLimit = new AtomicIntegerConfig(100, Integer.MIN_VALUE, Integer.MAX_VALUE);
         maxRetryNum = new AtomicIntegerConfig(32, 0, Integer.MAX_VALUE);
         refreshQueueCountIntervalConfig = new AtomicIntegerConfig(5000, 1000, 600000);
+        prefetchBytesConfig = new AtomicIntegerConfig(4 * 1024 * 1024, 64 * 1024, Integer.MAX_VALUE);
 
         configMap = new HashMap<>();
         configMap.put(ConfigType.PULL_BATCHSIZE, pullBatchSizeConfig);
@@ -62,6 +64,7 @@ public class PullSubjectsConfig {
         configMap.put(ConfigType.ACK_NOSEND_LIMIT, ackNosendLimit);
         configMap.put(ConfigType.MAX_RETRY_NUM, maxRetryNum);
         configMap.put(ConfigType.QUEUE_COUNT_INTERVAL, refreshQueueCountIntervalConfig);
+        configMap.put(ConfigType.PREFETCH_BYTES, prefetchBytesConfig);
         loadConfig();
     }
 
@@ -140,6 +143,10 @@ public class PullSubjectsConfig {
         return refreshQueueCountIntervalConfig.get(subject);
     }
 
+    public AtomicReference<Integer> getPrefetchBytes(String subject) {
+        return prefetchBytesConfig.get(subject);
+    }
+
     private enum ConfigType {
         PULL_BATCHSIZE("_pullBatchSize"),
         PULL_TIMEOUT("_pullTimeout"),
@@ -147,7 +154,8 @@ public class PullSubjectsConfig {
         ACK_TIMEOUT("_ackTimeout"),
         ACK_NOSEND_LIMIT("_ackNosendLimit"),
         MAX_RETRY_NUM("_maxRetryNum"),
-        QUEUE_COUNT_INTERVAL("_refreshQCInterval");
+        QUEUE_COUNT_INTERVAL("_refreshQCInterval"),
+        PREFETCH_BYTES("_prefetchBytes");
 
         private final String suffix;
 
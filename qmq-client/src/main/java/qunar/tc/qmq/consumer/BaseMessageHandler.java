@@ -22,6 +22,7 @@ import qunar.tc.qmq.*;
 import qunar.tc.qmq.base.BaseMessage;
 import qunar.tc.qmq.consumer.handler.IdempotentCheckerFilter;
 import qunar.tc.qmq.consumer.handler.QTraceFilter;
+import qunar.tc.qmq.consumer.idempotent.BatchIdempotentChecker;
 import qunar.tc.qmq.tracing.TraceUtil;
 
 import java.util.ArrayList;
@@ -41,6 +42,7 @@ public class BaseMessageHandler {
     protected final MessageListener listener;
     private final List<Filter> filters;
     private final Filter qtraceFilter;
+    private final BatchIdempotentChecker batchIdempotentChecker;
 
     public BaseMessageHandler(Executor executor, MessageListener listener) {
         this.executor = executor;
@@ -48,6 +50,22 @@ public class BaseMessageHandler {
         this.filters = new ArrayList<>();
         buildFilterChain(listener);
         this.qtraceFilter = new QTraceFilter();
+        this.batchIdempotentChecker = batchIdempotentChecker(listener);
+    }
+
+    private static BatchIdempotentChecker batchIdempotentChecker(MessageListener listener) {
+        if (!(listener instanceof IdempotentAttachable)) return null;
+        IdempotentChecker checker = IdempotentAttachable.class.cast(listener).getIdempotentChecker();
+        return checker instanceof BatchIdempotentChecker ? (BatchIdempotentChecker) checker : null;
+    }
+
+    protected void prepareIdempotent(List<? extends Message> messages) {
+        if (batchIdempotentChecker == null) return;
+        try {
+            batchIdempotentChecker.prepare(messages);
+        } catch (Throwable e) {
+            LOGGER.warn("batch idempotent check failed", e);
+        }
     }
 
     private void buildFilterChain(MessageListener listener) {
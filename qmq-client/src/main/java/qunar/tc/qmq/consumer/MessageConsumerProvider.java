@@ -173,6 +173,15 @@ public class MessageConsumerProvider implements MessageConsumer {
         this.destroyWaitInSeconds = destroyWaitInSeconds;
     }
 
+    /**
+     * 所有订阅拉到本地但还没有消费完的消息最多占用的内存，默认是堆的1/10
+     *
+     * @param bytes 字节数
+     */
+    public void setPrefetchMemoryLimit(long bytes) {
+        this.pullRegister.setPrefetchMemoryLimit(bytes);
+    }
+
     public void setAutoOnline(boolean autoOnline){
         this.autoOnline = autoOnline;
     }
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package qunar.tc.qmq.consumer.idempotent;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量幂等检查
+ * <p/>
+ * 一批消息在投递到处理线程池之前一次性查出已经处理过的key，前面挡一层最近处理过的key的进程内缓存，
+ * 重复消息大部分不需要逐条访问存储。存储可以是数据库，也可以是redis等，只需要实现claimed/claim/release
+ * <p/>
+ * 批量阶段只查询不占用，key在消息真正开始处理时才逐条占用，还在线程池或本地buffer里排队的消息
+ * 在关闭或者丢弃时不会留下占用了却没有消费的key
+ */
+public abstract class AbstractBatchIdempotentChecker extends AbstractIdempotentChecker implements BatchIdempotentChecker {
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractBatchIdempotentChecker.class);
+
+    private static final int DEFAULT_CACHE_SIZE = 100000;
+    private static final int MAX_PREPARED = 100000;
+
+    private final RecentlyProcessedKeys recentlyProcessed;
+
+    // 预先查到的已经处理过的key，消费时取走
+    private final Cache<String, Boolean> processed = CacheBuilder.newBuilder()
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    public AbstractBatchIdempotentChecker(KeyExtractor extractor) {
+        this(extractor, DEFAULT_CACHE_SIZE);
+    }
+
+    public AbstractBatchIdempotentChecker(KeyExtractor extractor, int cacheSize) {
+        super(extractor);
+        this.recentlyProcessed = new RecentlyProcessedKeys(cacheSize);
+    }
+
+    @Override
+    public void prepare(List<? extends Message> messages) {
+        if (processed.size() >= MAX_PREPARED) return;
+
+        final List<String> keys = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            final String key = keyOf(message);
+            if (recentlyProcessed.contains(key)) continue;
+            keys.add(key);
+        }
+        if (keys.isEmpty()) return;
+
+        final Set<String> claimed;
+        try {
+            claimed = claimed(keys);
+        } catch (Exception e) {
+            LOG.warn("batch idempotent check failed, fallback to check one by one. size: {}", keys.size(), e);
+            return;
+        }
+
+        for (String key : claimed) {
+            processed.put(key, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    protected final boolean doIsProcessed(Message message) throws Exception {
+        final String key = keyOf(message);
+        if (processed.asMap().remove(key) != null) return true;
+
+        if (recentlyProcessed.contains(key)) return true;
+        return !claim(key);
+    }
+
+    @Override
+    protected final void markFailed(Message message) {
+        final String key = keyOf(message);
+        recentlyProcessed.remove(key);
+        release(key);
+    }
+
+    @Override
+    protected final void markProcessed(Message message) {
+        recentlyProcessed.add(keyOf(message));
+    }
+
+    /**
+     * 占用单个key
+     *
+     * @return true 占用成功(之前没有处理过)
+     */
+    protected abstract boolean claim(String key) throws Exception;
+
+    /**
+     * 查询一批key中已经被占用的，只查询不占用
+     */
+    protected abstract Set<String> claimed(List<String> keys) throws Exception;
+
+    /**
+     * 消费失败释放key，以便重试
+     */
+    protected abstract void release(String key);
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package qunar.tc.qmq.consumer.idempotent;
+
+import qunar.tc.qmq.Message;
+
+import java.util.List;
+
+/**
+ * 支持对一批拉到的消息一次性做幂等检查，消息投递到处理线程池之前调用
+ */
+public interface BatchIdempotentChecker {
+
+    /**
+     * 预先查出这一批消息中已经处理过的，随后的isProcessed对这些消息直接返回，其余的在处理时再逐条占用
+     * 失败时不抛出异常，退回逐条检查
+     */
+    void prepare(List<? extends Message> messages);
+}
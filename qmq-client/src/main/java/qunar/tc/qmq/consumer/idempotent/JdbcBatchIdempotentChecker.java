@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package qunar.tc.qmq.consumer.idempotent;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 使用数据库作为幂等检查的存储，一批消息用一条select查出已经处理过的key，其余的在处理时逐条insert ignore占用
+ */
+public class JdbcBatchIdempotentChecker extends AbstractBatchIdempotentChecker {
+
+    private static final String INSERT_TEMP = "INSERT IGNORE INTO %s(k) VALUES(?)";
+    private static final String DELETE_TEMP = "DELETE FROM %s WHERE k=?";
+    private static final String GARBAGE_TEMP = "DELETE FROM %s WHERE update_at<?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String tableName;
+
+    private final String INSERT_SQL;
+    private final String DELETE_SQL;
+    private final String GARBAGE_SQL;
+
+    public JdbcBatchIdempotentChecker(DataSource dataSource, String tableName) {
+        this(dataSource, tableName, DEFAULT_EXTRACTOR);
+    }
+
+    public JdbcBatchIdempotentChecker(DataSource dataSource, String tableName, KeyExtractor extractor) {
+        super(extractor);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.tableName = tableName;
+        this.INSERT_SQL = String.format(INSERT_TEMP, tableName);
+        this.DELETE_SQL = String.format(DELETE_TEMP, tableName);
+        this.GARBAGE_SQL = String.format(GARBAGE_TEMP, tableName);
+    }
+
+    @Override
+    protected boolean claim(String key) {
+        return jdbcTemplate.update(INSERT_SQL, key) == 1;
+    }
+
+    @Override
+    protected Set<String> claimed(final List<String> keys) {
+        final StringBuilder sql = new StringBuilder("SELECT k FROM ").append(tableName).append(" WHERE k IN (");
+        appendPlaceholders(sql, keys.size(), "?");
+        sql.append(')');
+
+        return jdbcTemplate.query(sql.toString(), keys.toArray(), new ResultSetExtractor<Set<String>>() {
+            @Override
+            public Set<String> extractData(ResultSet rs) throws SQLException {
+                final Set<String> existed = new HashSet<>();
+                while (rs.next()) {
+                    existed.add(rs.getString(1));
+                }
+                return existed;
+            }
+        });
+    }
+
+    private static void appendPlaceholders(StringBuilder sql, int size, String placeholder) {
+        for (int i = 0; i < size; ++i) {
+            if (i > 0) sql.append(',');
+            sql.append(placeholder);
+        }
+    }
+
+    @Override
+    protected void release(String key) {
+        jdbcTemplate.update(DELETE_SQL, key);
+    }
+
+    @Override
+    public void garbageCollect(Date before) {
+        this.jdbcTemplate.update(GARBAGE_SQL, before);
+    }
+}
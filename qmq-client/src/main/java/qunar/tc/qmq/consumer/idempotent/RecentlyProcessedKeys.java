@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package qunar.tc.qmq.consumer.idempotent;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 最近处理过的幂等key，进程内有界缓存
+ * <p/>
+ * 按写入顺序淘汰，前面挡两代布隆过滤器，绝大部分不重复的key不需要进入锁
+ */
+class RecentlyProcessedKeys {
+    private static final double FPP = 0.01;
+
+    private final int capacity;
+    private final LinkedHashMap<String, Boolean> keys;
+
+    private volatile BloomFilter<CharSequence> current;
+    private volatile BloomFilter<CharSequence> previous;
+    private int inserted;
+
+    RecentlyProcessedKeys(final int capacity) {
+        this.capacity = capacity;
+        this.keys = new LinkedHashMap<String, Boolean>(capacity, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > RecentlyProcessedKeys.this.capacity;
+            }
+        };
+        this.current = newFilter();
+        this.previous = newFilter();
+    }
+
+    private BloomFilter<CharSequence> newFilter() {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), capacity, FPP);
+    }
+
+    boolean contains(String key) {
+        if (!current.mightContain(key) && !previous.mightContain(key)) return false;
+
+        synchronized (keys) {
+            return keys.containsKey(key);
+        }
+    }
+
+    void add(String key) {
+        synchronized (keys) {
+            if (keys.put(key, Boolean.TRUE) != null) return;
+
+            current.put(key);
+            // 当前这一代写满以后轮换，两代合起来总能覆盖LinkedHashMap里的key
+            if (++inserted >= capacity) {
+                previous = current;
+                current = newFilter();
+                inserted = 0;
+            }
+        }
+    }
+
+    void remove(String key) {
+        synchronized (keys) {
+            keys.remove(key);
+        }
+    }
+}
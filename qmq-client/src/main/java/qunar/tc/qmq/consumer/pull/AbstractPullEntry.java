@@ -27,6 +27,7 @@ import qunar.tc.qmq.config.PullSubjectsConfig;
 import qunar.tc.qmq.metrics.Metrics;
 import qunar.tc.qmq.metrics.QmqCounter;
 import qunar.tc.qmq.protocol.CommandCode;
+import qunar.tc.qmq.protocol.consumer.PullHint;
 import qunar.tc.qmq.utils.RetrySubjectUtils;
 
 import java.util.Collections;
@@ -76,6 +77,7 @@ abstract class AbstractPullEntry {
         final PullParam pullParam = buildPullParam(consumeParam, group, ackSendInfo, pullSize, pullTimeout);
         try {
             PullResult pullResult = pullService.pull(pullParam);
+            onPullHint(group, pullResult.getHint());
             List<PulledMessage> pulledMessages = handlePullResult(pullParam, pullResult, ackHook);
             group.markSuccess();
             recordPullSize(group, pulledMessages, pullSize);
@@ -93,6 +95,12 @@ abstract class AbstractPullEntry {
         return Collections.emptyList();
     }
 
+    /**
+     * broker返回的下一次拉取建议，老版本的broker不会返回
+     */
+    protected void onPullHint(BrokerGroupInfo group, PullHint hint) {
+    }
+
     private void markFailed(BrokerGroupInfo group) {
         pullFailCounter.inc();
         group.markFailed();
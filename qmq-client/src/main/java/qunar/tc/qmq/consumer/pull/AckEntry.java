@@ -38,7 +38,6 @@ class AckEntry {
 
     private final AtomicBoolean completing = new AtomicBoolean(false);
     private volatile boolean done = false;
-    private volatile AckEntry next;
 
     AckEntry(AckSendQueue ackSendQueue, long pullOffset, DelayMessageService delayMessageService) {
         this.ackSendQueue = ackSendQueue;
@@ -46,14 +45,6 @@ class AckEntry {
         this.delayMessageService = delayMessageService;
     }
 
-    void setNext(AckEntry next) {
-        this.next = next;
-    }
-
-    AckEntry next() {
-        return next;
-    }
-
     long pullOffset() {
         return pullOffset;
     }
@@ -35,6 +35,7 @@ class AckHelper {
 
     static void ack(PulledMessage message, Throwable throwable) {
         BaseMessageHandler.printError(message, throwable);
+        message.releasePrefetch();
         final AckEntry ackEntry = message.ackEntry();
         if (throwable == null) {
             ackEntry.ack();
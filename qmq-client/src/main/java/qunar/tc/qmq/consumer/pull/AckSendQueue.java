@@ -34,7 +34,6 @@ import qunar.tc.qmq.metrics.QmqMeter;
 import qunar.tc.qmq.utils.RetrySubjectUtils;
 
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -51,7 +50,6 @@ class AckSendQueue implements TimerTask {
     private static final Logger LOGGER = LoggerFactory.getLogger(AckSendQueue.class);
     private static final long DEFAULT_PULL_OFFSET = -1;
     private static final int ACK_INTERVAL_SECONDS = 10;
-    private static final long ACK_TRY_SEND_TIMEOUT_MILLIS = 1000;
 
     private static final int DESTROY_CHECK_WAIT_MILLIS = 50;
 
@@ -78,8 +76,7 @@ class AckSendQueue implements TimerTask {
     private QmqCounter sendFailCount;
     private QmqCounter deadQueueCount;
 
-    private final LinkedBlockingQueue<AckSendEntry> sendEntryQueue = new LinkedBlockingQueue<>();
-    private final ReentrantLock sendLock = new ReentrantLock();
+    private final AckWindow window = new AckWindow();
     private final AtomicBoolean inSending = new AtomicBoolean(false);
 
     private final BrokerService brokerService;
@@ -88,10 +85,6 @@ class AckSendQueue implements TimerTask {
 
     private final RateLimiter ackSendFailLogLimit = RateLimiter.create(0.5);
 
-    private volatile AckEntry head = null;
-    private volatile AckEntry tail = null;
-    private volatile AckEntry beginScanPosition = null;
-
     private volatile long lastAppendOffset = -1;
     private volatile long lastSendOkOffset = -1;
 
@@ -120,18 +113,24 @@ class AckSendQueue implements TimerTask {
                 appendErrorCount.inc();
             }
 
-            if (head == null) {
-                beginScanPosition = head = batch.get(0);
-                minPullOffset.set(head.pullOffset());
+            if (lastAppendOffset == -1) {
+                final long first = batch.get(0).pullOffset();
+                window.init(first);
+                minPullOffset.set(first);
+                lastAppendOffset = first - 1;
             }
 
-            if (tail != null) {
-                tail.setNext(batch.get(0));
+            for (AckEntry entry : batch) {
+                final long offset = entry.pullOffset();
+                if (offset <= lastAppendOffset) continue;
+                // 中间跳过的offset不会有消息，直接当做已完成，和原来按区间ack的行为一致
+                for (long skip = lastAppendOffset + 1; skip < offset; ++skip) {
+                    window.complete(skip);
+                }
+                lastAppendOffset = offset;
             }
 
-            tail = batch.get(batch.size() - 1);
-            lastAppendOffset = tail.pullOffset();
-            maxPullOffset.set(tail.pullOffset());
+            maxPullOffset.set(lastAppendOffset);
             toSendNum.getAndAdd(batch.size());
         } finally {
             updateLock.unlock();
@@ -152,97 +151,55 @@ class AckSendQueue implements TimerTask {
     void ackCompleted(AckEntry current) {
         if (current == null) return;
 
-        updateLock.lock();
-        try {
-            if (beginScanPosition == null || beginScanPosition.pullOffset() != current.pullOffset()) {
-                return;
-            }
-
-            AckEntry end = scanCompleted(current);
-            beginScanPosition = end.next();
-            if (allowSendAck(end)) {
-                final AckSendEntry sendEntry = new AckSendEntry(head, end, isBroadcast);
-                head = beginScanPosition;
-                if (head == null) {
-                    tail = null;
-                }
-                sendEntryQueue.offer(sendEntry);
-            } else {
-                return;
-            }
-        } finally {
-            updateLock.unlock();
+        window.complete(current.pullOffset());
+        if (needSendAck()) {
+            sendAck();
         }
-        sendAck();
-    }
-
-    private boolean allowSendAck(AckEntry needAck) {
-        return needAck.next() == null || needAck.pullOffset() - head.pullOffset() >= pullBatchSize.get() - 1;
     }
 
-    private AckEntry scanCompleted(AckEntry begin) {
-        AckEntry needAck = begin;
-        while (needAck.next() != null && needAck.next().isDone()) {
-            needAck = needAck.next();
-        }
-        return needAck;
+    /**
+     * 攒够一个批次，或者已经拉到的消息全部完成了才发送ack
+     */
+    private boolean needSendAck() {
+        final long begin = minPullOffset.get();
+        final long last = window.watermark() - 1;
+        if (begin < 0 || last < begin) return false;
+        return last >= lastAppendOffset || last - begin + 1 >= pullBatchSize.get();
     }
 
-    boolean trySendAck(long timeout) {
-        if (!tryLock(timeout)) return false;
-
-        try {
-            if (head == null || !head.isDone()) {
-                return sendAck();
+    /**
+     * 同一时刻只有一个ack请求在途，把[上次发送成功的offset + 1, 水位 - 1]合并成一个区间发送
+     */
+    private boolean sendAck() {
+        while (inSending.compareAndSet(false, true)) {
+            final long begin = minPullOffset.get();
+            final long last = window.watermark() - 1;
+            if (begin >= 0 && last >= begin) {
+                doSendAck(new AckSendEntry(begin, last, isBroadcast));
+                return true;
             }
 
-            AckEntry end = scanCompleted(head);
-
-            final AckSendEntry sendEntry = new AckSendEntry(head, end, isBroadcast);
-            head = beginScanPosition = end.next();
-
-            if (head == null) {
-                tail = null;
-            }
-            sendEntryQueue.offer(sendEntry);
-        } finally {
-            updateLock.unlock();
-        }
-        return sendAck();
-    }
-
-    private boolean tryLock(long timeout) {
-        try {
-            if (!updateLock.tryLock(timeout, TimeUnit.MILLISECONDS)) {
-                return false;
-            }
-        } catch (InterruptedException e) {
-            return false;
+            inSending.set(false);
+            // 释放期间其他线程可能推进了水位但没有抢到发送权
+            if (window.watermark() - 1 < minPullOffset.get()) break;
         }
-        return true;
+        return false;
     }
 
-    private boolean sendAck() {
-        AckSendEntry sendEntry;
-
-        if (inSending.get()) return false;
-        sendLock.lock();
-        try {
-            if (inSending.get() || sendEntryQueue.isEmpty()) return false;
-            sendEntry = sendEntryQueue.peek();
-            if (sendEntry != null) {
-                inSending.set(true);
-            } else {
-                sendEntryQueue.poll();
-                LOGGER.error("sendEntry is null");
+    /**
+     * 关闭前把已经完成的部分ack出去，有在途的ack请求时最多等待timeout毫秒
+     */
+    boolean trySendAck(long timeout) {
+        final long deadline = System.currentTimeMillis() + timeout;
+        while (inSending.get() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(DESTROY_CHECK_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 return false;
             }
-        } finally {
-            sendLock.unlock();
         }
-
-        doSendAck(sendEntry);
-        return true;
+        return sendAck();
     }
 
     private void doSendAck(final AckSendEntry sendEntry) {
@@ -266,18 +223,12 @@ class AckSendQueue implements TimerTask {
                 final int sendNum = (int) (sendEntry.getPullOffsetLast() - sendEntry.getPullOffsetBegin()) + 1;
                 toSendNum.getAndAdd(-sendNum);
                 sendNumQps.mark(sendNum);
-
-                AckSendEntry head = sendEntryQueue.peek();
-                if (head == null || head.getPullOffsetBegin() != sendEntry.getPullOffsetBegin()) {
-                    LOGGER.error("ack send error: {}, {}", sendEntry, head);
-                    sendErrorCount.inc();
-                } else {
-                    LOGGER.debug("AckSendRet ok [{}, {}]", sendEntry.getPullOffsetBegin(), sendEntry.getPullOffsetLast());
-                    sendEntryQueue.poll();
-                }
+                LOGGER.debug("AckSendRet ok [{}, {}]", sendEntry.getPullOffsetBegin(), sendEntry.getPullOffsetLast());
 
                 inSending.set(false);
-                AckSendQueue.this.sendAck();
+                if (needSendAck()) {
+                    AckSendQueue.this.sendAck();
+                }
             }
 
             @Override
@@ -360,7 +311,7 @@ class AckSendQueue implements TimerTask {
     @Override
     public void run(Timeout timeout) {
         try {
-            if (!trySendAck(ACK_TRY_SEND_TIMEOUT_MILLIS)) {
+            if (!sendAck()) {
                 final BrokerGroupInfo brokerGroup = getBrokerGroup();
                 if (brokerGroup == null) {
                     LOGGER.debug("lost broker group: {}. subject={}, consumeGroup={}", brokerGroupName, subject, group);
@@ -80,8 +80,9 @@ class AckService {
         final List<AckEntry> ackEntries = new ArrayList<>(pulledMessages.size());
         final AckSendQueue sendQueue = getOrCreateSendQueue(pullResult.getBrokerGroup(), pullParam.getSubject(), pullParam.getGroup(), pullParam.isBroadcast());
 
+        // 按平均大小估算每条消息占用的内存
+        final int messageBytes = pulledMessages.isEmpty() ? 0 : pullResult.getBytes() / pulledMessages.size();
         long prevPullOffset = 0;
-        AckEntry preAckEntry = null;
 
         for (BaseMessage message : pulledMessages) {
             final long pullOffset = getOffset(message);
@@ -93,12 +94,8 @@ class AckService {
             prevPullOffset = pullOffset;
             AckEntry ackEntry = new AckEntry(sendQueue, pullOffset, delayMessageService);
             ackEntries.add(ackEntry);
-            if (preAckEntry != null) {
-                preAckEntry.setNext(ackEntry);
-            }
-            preAckEntry = ackEntry;
 
-            PulledMessage pulledMessage = new PulledMessage(message, ackEntry, ackHook);
+            PulledMessage pulledMessage = new PulledMessage(message, ackEntry, ackHook, messageBytes);
             if (filter.filter(pulledMessage)) {
                 result.add(pulledMessage);
             } else {
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.consumer.pull;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按pull offset索引的位图环，记录已经完成的消息，并维护连续完成的前缀(水位)
+ * <p/>
+ * 完成一条消息只需要CAS置位，水位同一时刻只由一个线程推进；
+ * 超出环容量的offset暂存在overflow里，由推进水位的线程放回环中
+ */
+class AckWindow {
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray bits;
+
+    // 第一个还没有完成的offset，之前的全部完成
+    private final AtomicLong watermark = new AtomicLong(-1);
+    private final AtomicBoolean advancing = new AtomicBoolean(false);
+    private final ConcurrentSkipListSet<Long> overflow = new ConcurrentSkipListSet<>();
+
+    AckWindow() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    AckWindow(int capacity) {
+        if (Integer.bitCount(capacity) != 1 || capacity < 64) {
+            throw new IllegalArgumentException("capacity must be power of 2 and >= 64");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.bits = new AtomicLongArray(capacity >> 6);
+    }
+
+    /**
+     * 只能由追加消息的线程在第一次追加时调用
+     */
+    void init(long firstOffset) {
+        watermark.compareAndSet(-1, firstOffset);
+    }
+
+    long watermark() {
+        return watermark.get();
+    }
+
+    /**
+     * @return true 水位发生了推进
+     */
+    boolean complete(long offset) {
+        final long current = watermark.get();
+        if (current < 0 || offset < current) return false;
+
+        if (offset - current >= capacity) {
+            overflow.add(offset);
+        } else {
+            set(offset);
+        }
+        return advance();
+    }
+
+    private boolean advance() {
+        boolean advanced = false;
+        while (advancing.compareAndSet(false, true)) {
+            try {
+                long current = watermark.get();
+                while (true) {
+                    if (isSet(current)) {
+                        // 先清位再发布新的水位，新水位之后才可能有offset复用这个槽位
+                        clear(current);
+                        watermark.set(++current);
+                        advanced = true;
+                    } else if (!drainOverflow(current)) {
+                        break;
+                    }
+                }
+            } finally {
+                advancing.set(false);
+            }
+
+            // 释放推进权期间其他线程可能完成了水位处的offset或者放入了overflow
+            if (!hasPending()) break;
+        }
+        return advanced;
+    }
+
+    // 只在持有推进权时调用
+    private boolean drainOverflow(long current) {
+        boolean drained = false;
+        Long first;
+        while ((first = overflow.ceiling(Long.MIN_VALUE)) != null && first - current < capacity) {
+            overflow.remove(first);
+            set(first);
+            drained = true;
+        }
+        return drained;
+    }
+
+    private boolean hasPending() {
+        final long current = watermark.get();
+        if (isSet(current)) return true;
+
+        final Long first = overflow.ceiling(Long.MIN_VALUE);
+        return first != null && first - current < capacity;
+    }
+
+    private boolean isSet(long offset) {
+        final int index = (int) (offset & mask);
+        return (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    private void set(long offset) {
+        final int index = (int) (offset & mask);
+        final int word = index >>> 6;
+        final long bit = 1L << index;
+        while (true) {
+            final long value = bits.get(word);
+            if ((value & bit) != 0 || bits.compareAndSet(word, value, value | bit)) return;
+        }
+    }
+
+    private void clear(long offset) {
+        final int index = (int) (offset & mask);
+        final int word = index >>> 6;
+        final long bit = 1L << index;
+        while (true) {
+            final long value = bits.get(word);
+            if ((value & bit) == 0 || bits.compareAndSet(word, value, value & ~bit)) return;
+        }
+    }
+}
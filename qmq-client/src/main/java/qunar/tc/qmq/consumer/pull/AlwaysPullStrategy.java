@@ -16,7 +16,7 @@
 
 package qunar.tc.qmq.consumer.pull;
 
-class AlwaysPullStrategy implements PullStrategy {
+class AlwaysPullStrategy extends HintedPullStrategy {
     @Override
     public boolean needPull() {
         return true;
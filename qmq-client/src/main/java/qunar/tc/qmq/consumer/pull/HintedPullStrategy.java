@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package qunar.tc.qmq.consumer.pull;
+
+import qunar.tc.qmq.broker.BrokerGroupInfo;
+import qunar.tc.qmq.protocol.consumer.PullHint;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 按broker返回的建议调整每个broker group的拉取参数
+ * <p>
+ * batch size只在配置值到配置值的MAX_BATCH_FACTOR倍之间放大，实际拉多少还受预取字节预算限制；
+ * 长轮询等待时间只会比配置值长，broker上一有新消息就会立即返回，所以空闲的subject等得越久空轮询越少
+ */
+abstract class HintedPullStrategy implements PullStrategy {
+    private static final int MAX_BATCH_FACTOR = 4;
+    private static final int MAX_BATCH_SIZE = 10000;
+    private static final int MAX_WAIT_MILLIS = 30000;
+
+    private final ConcurrentMap<String, PullHint> hints = new ConcurrentHashMap<>();
+
+    @Override
+    public void hint(BrokerGroupInfo group, PullHint hint) {
+        if (group == null) return;
+
+        if (hint == null) {
+            hints.remove(group.getGroupName());
+        } else {
+            hints.put(group.getGroupName(), hint);
+        }
+    }
+
+    @Override
+    public int pullBatchSize(BrokerGroupInfo group, int configured) {
+        final PullHint hint = group == null ? null : hints.get(group.getGroupName());
+        if (hint == null || configured <= 0) return configured;
+
+        final int max = (int) Math.min(MAX_BATCH_SIZE, (long) configured * MAX_BATCH_FACTOR);
+        return Math.max(configured, Math.min(max, hint.getBatchSize()));
+    }
+
+    @Override
+    public int pullTimeout(BrokerGroupInfo group, int configured) {
+        final PullHint hint = group == null ? null : hints.get(group.getGroupName());
+        // 配置成不等待的不调整
+        if (hint == null || configured <= 0) return configured;
+
+        return Math.max(configured, Math.min(MAX_WAIT_MILLIS, hint.getWaitMillis()));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.consumer.pull;
+
+import com.google.common.base.Supplier;
+import qunar.tc.qmq.config.PullSubjectsConfig;
+import qunar.tc.qmq.metrics.Metrics;
+import qunar.tc.qmq.utils.RetrySubjectUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static qunar.tc.qmq.metrics.MetricsConstants.SUBJECT_GROUP_ARRAY;
+
+/**
+ * 按字节预算和消费速度决定每次拉取多少消息
+ * <p/>
+ * 拉到本地还没消费完的消息不超过订阅自己的字节预算，所有订阅加起来不超过PrefetchMemory的上限；
+ * 监听器处理不过来的时候，每次只拉够一个周期能消费完的消息
+ */
+class PrefetchController {
+    private static final int DEFAULT_MESSAGE_BYTES = 1024;
+    private static final long RATE_WINDOW_MILLIS = 1000;
+    private static final double RATE_SMOOTHING = 0.3;
+    private static final double PREFETCH_AHEAD_SECONDS = 1.0;
+
+    private final PrefetchMemory memory;
+    private final AtomicReference<Integer> prefetchBytes;
+
+    private final AtomicLong inflightBytes = new AtomicLong(0);
+    private final AtomicInteger inflightMessages = new AtomicInteger(0);
+    private final AtomicLong consumedMessages = new AtomicLong(0);
+
+    // 以下只在拉取线程里读写
+    private long avgMessageBytes = DEFAULT_MESSAGE_BYTES;
+    private double consumeRate = 0;
+    private long lastRateTime = System.currentTimeMillis();
+
+    PrefetchController(String subject, String group, PrefetchMemory memory) {
+        this.memory = memory;
+        this.prefetchBytes = PullSubjectsConfig.get().getPrefetchBytes(RetrySubjectUtils.getRealSubject(subject));
+
+        Metrics.gauge("qmq_pull_prefetch_bytes", SUBJECT_GROUP_ARRAY, new String[]{subject, group}, new Supplier<Double>() {
+            @Override
+            public Double get() {
+                return (double) inflightBytes.get();
+            }
+        });
+    }
+
+    boolean canPrefetch() {
+        return inflightBytes.get() < prefetchBytes.get() && memory.remaining() > 0;
+    }
+
+    int pullSize(int maxBatchSize) {
+        updateConsumeRate();
+
+        final long room = Math.min(prefetchBytes.get() - inflightBytes.get(), memory.remaining());
+        long size = Math.min(maxBatchSize, Math.max(1, room / avgMessageBytes));
+        if (consumeRate > 0 && inflightMessages.get() > 0) {
+            size = Math.min(size, Math.max(1, (long) Math.ceil(consumeRate * PREFETCH_AHEAD_SECONDS)));
+        }
+        return (int) size;
+    }
+
+    void pulled(List<PulledMessage> messages) {
+        if (messages.isEmpty()) return;
+
+        long bytes = 0;
+        for (PulledMessage message : messages) {
+            message.setPrefetchController(this);
+            bytes += message.bytes();
+        }
+        inflightBytes.addAndGet(bytes);
+        inflightMessages.addAndGet(messages.size());
+        memory.acquire(bytes);
+        avgMessageBytes = Math.max(1, (avgMessageBytes + bytes / messages.size()) / 2);
+    }
+
+    void consumed(PulledMessage message) {
+        final int bytes = message.bytes();
+        inflightBytes.addAndGet(-bytes);
+        inflightMessages.decrementAndGet();
+        memory.release(bytes);
+        consumedMessages.incrementAndGet();
+    }
+
+    private void updateConsumeRate() {
+        final long now = System.currentTimeMillis();
+        final long elapsed = now - lastRateTime;
+        if (elapsed < RATE_WINDOW_MILLIS) return;
+
+        final double current = consumedMessages.getAndSet(0) * 1000.0 / elapsed;
+        consumeRate = consumeRate == 0 ? current : consumeRate * (1 - RATE_SMOOTHING) + current * RATE_SMOOTHING;
+        lastRateTime = now;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.consumer.pull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 所有订阅共享的预取内存上限，统计已经拉到本地但还没有消费完的消息字节数
+ */
+class PrefetchMemory {
+    // 默认最多占用堆的1/10
+    private static final long DEFAULT_LIMIT = Runtime.getRuntime().maxMemory() / 10;
+
+    private final AtomicLong used = new AtomicLong(0);
+    private volatile long limit = DEFAULT_LIMIT;
+
+    void setLimit(long limit) {
+        if (limit <= 0) return;
+        this.limit = limit;
+    }
+
+    long remaining() {
+        return Math.max(0, limit - used.get());
+    }
+
+    long used() {
+        return used.get();
+    }
+
+    void acquire(long bytes) {
+        used.addAndGet(bytes);
+    }
+
+    void release(long bytes) {
+        used.addAndGet(-bytes);
+    }
+}
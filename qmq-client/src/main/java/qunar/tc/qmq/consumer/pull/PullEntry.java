@@ -27,6 +27,7 @@ import qunar.tc.qmq.common.SwitchWaiter;
 import qunar.tc.qmq.config.PullSubjectsConfig;
 import qunar.tc.qmq.metrics.Metrics;
 import qunar.tc.qmq.metrics.QmqCounter;
+import qunar.tc.qmq.protocol.consumer.PullHint;
 import qunar.tc.qmq.utils.RetrySubjectUtils;
 
 import java.util.HashSet;
@@ -60,6 +61,7 @@ class PullEntry extends AbstractPullEntry implements Runnable {
     private static final long PAUSETIME_OF_CLEAN_LAST_MESSAGE = 200;
     private static final long PAUSETIME_OF_NOAVAILABLE_BROKER = 100;
     private static final long PAUSETIME_OF_NOMESSAGE = 500;
+    private static final long PAUSETIME_OF_PREFETCH_FULL = 20;
 
     private final PushConsumer pushConsumer;
     private final AtomicReference<Integer> pullBatchSize;
@@ -74,6 +76,7 @@ class PullEntry extends AbstractPullEntry implements Runnable {
     private final QmqCounter pauseCounter;
     private final String logType;
     private final PullStrategy pullStrategy;
+    private final PrefetchController prefetchController;
 
     private PullEntry() {
         super("", "", null, null, null);
@@ -83,9 +86,10 @@ class PullEntry extends AbstractPullEntry implements Runnable {
         pauseCounter = null;
         logType = "PullEntry=";
         pullStrategy = null;
+        prefetchController = null;
     }
 
-    PullEntry(PushConsumer pushConsumer, PullService pullService, AckService ackService, BrokerService brokerService, PullStrategy pullStrategy) {
+    PullEntry(PushConsumer pushConsumer, PullService pullService, AckService ackService, BrokerService brokerService, PullStrategy pullStrategy, PrefetchMemory prefetchMemory) {
         super(pushConsumer.subject(), pushConsumer.group(), pullService, ackService, brokerService);
         String subject = pushConsumer.subject();
         String group = pushConsumer.group();
@@ -95,6 +99,7 @@ class PullEntry extends AbstractPullEntry implements Runnable {
         this.pullTimeout = PullSubjectsConfig.get().getPullTimeout(realSubject);
         this.ackNosendLimit = PullSubjectsConfig.get().getAckNosendLimit(realSubject);
         this.pullStrategy = pullStrategy;
+        this.prefetchController = new PrefetchController(subject, group, prefetchMemory);
 
         String[] values = new String[]{subject, group};
         this.pullRunCounter = Metrics.counter("qmq_pull_run_count", SUBJECT_GROUP_ARRAY, values);
@@ -149,6 +154,11 @@ class PullEntry extends AbstractPullEntry implements Runnable {
             return false;
         }
 
+        if (!prefetchController.canPrefetch()) {
+            pause("prefetch full", PAUSETIME_OF_PREFETCH_FULL);
+            return false;
+        }
+
         if (!pullStrategy.needPull()) {
             pause("wait consumer", PAUSETIME_OF_NOMESSAGE);
             return false;
@@ -199,11 +209,19 @@ class PullEntry extends AbstractPullEntry implements Runnable {
     }
 
     private void doPull(DoPullParam param) {
-        List<PulledMessage> messages = pull(pushConsumer.consumeParam(), param.broker, pullBatchSize.get(), pullTimeout.get(), pushConsumer);
+        final int pullSize = prefetchController.pullSize(pullStrategy.pullBatchSize(param.broker, pullBatchSize.get()));
+        final int timeout = pullStrategy.pullTimeout(param.broker, pullTimeout.get());
+        List<PulledMessage> messages = pull(pushConsumer.consumeParam(), param.broker, pullSize, timeout, pushConsumer);
         pullStrategy.record(messages.size() > 0);
+        prefetchController.pulled(messages);
         pushConsumer.push(messages);
     }
 
+    @Override
+    protected void onPullHint(BrokerGroupInfo group, PullHint hint) {
+        pullStrategy.hint(group, hint);
+    }
+
     private void pause(String log, long timeMillis) {
         final String subject = pushConsumer.subject();
         final String group = pushConsumer.group();
@@ -58,6 +58,7 @@ public class PullRegister implements ConsumerRegister, ConsumerStateChangedListe
     private final BrokerService brokerService;
     private final PullService pullService;
     private final AckService ackService;
+    private final PrefetchMemory prefetchMemory = new PrefetchMemory();
 
     private String clientId;
     private String metaServer;
@@ -124,7 +125,7 @@ public class PullRegister implements ConsumerRegister, ConsumerStateChangedListe
 
     private PullEntry createAndSubmitPullEntry(String subject, String group, RegistParam param, PullStrategy pullStrategy) {
         PushConsumerImpl pushConsumer = new PushConsumerImpl(subject, group, param);
-        PullEntry pullEntry = new PullEntry(pushConsumer, pullService, ackService, brokerService, pullStrategy);
+        PullEntry pullEntry = new PullEntry(pushConsumer, pullService, ackService, brokerService, pullStrategy, prefetchMemory);
         pullEntryMap.put(MapKeyBuilder.buildSubscribeKey(subject, group), pullEntry);
         pullExecutor.submit(pullEntry);
         return pullEntry;
@@ -252,4 +253,8 @@ public class PullRegister implements ConsumerRegister, ConsumerStateChangedListe
     public void setDestroyWaitInSeconds(int destroyWaitInSeconds) {
         this.destroyWaitInSeconds = destroyWaitInSeconds;
     }
+
+    public void setPrefetchMemoryLimit(long bytes) {
+        this.prefetchMemory.setLimit(bytes);
+    }
 }
@@ -18,6 +18,7 @@ package qunar.tc.qmq.consumer.pull;
 
 import qunar.tc.qmq.base.BaseMessage;
 import qunar.tc.qmq.broker.BrokerGroupInfo;
+import qunar.tc.qmq.protocol.consumer.PullHint;
 
 import java.util.List;
 
@@ -28,11 +29,15 @@ class PullResult {
     private final short responseCode;
     private final List<BaseMessage> messages;
     private final BrokerGroupInfo brokerGroup;
+    private final int bytes;
+    private final PullHint hint;
 
-    public PullResult(short responseCode, List<BaseMessage> messages, BrokerGroupInfo brokerGroup) {
+    public PullResult(short responseCode, List<BaseMessage> messages, BrokerGroupInfo brokerGroup, int bytes, PullHint hint) {
         this.responseCode = responseCode;
         this.messages = messages;
         this.brokerGroup = brokerGroup;
+        this.bytes = bytes;
+        this.hint = hint;
     }
 
     public short getResponseCode() {
@@ -46,4 +51,12 @@ class PullResult {
     public BrokerGroupInfo getBrokerGroup() {
         return brokerGroup;
     }
+
+    public int getBytes() {
+        return bytes;
+    }
+
+    public PullHint getHint() {
+        return hint;
+    }
 }
@@ -25,14 +25,20 @@ import qunar.tc.qmq.base.BaseMessage;
 import qunar.tc.qmq.broker.BrokerGroupInfo;
 import qunar.tc.qmq.config.PullSubjectsConfig;
 import qunar.tc.qmq.consumer.pull.exception.PullException;
+import qunar.tc.qmq.metrics.MetricFamily;
 import qunar.tc.qmq.metrics.Metrics;
+import qunar.tc.qmq.metrics.QmqCounter;
+import qunar.tc.qmq.metrics.QmqTimer;
 import qunar.tc.qmq.netty.client.NettyClient;
 import qunar.tc.qmq.netty.client.ResponseFuture;
 import qunar.tc.qmq.protocol.CommandCode;
 import qunar.tc.qmq.protocol.Datagram;
+import qunar.tc.qmq.protocol.RemotingHeader;
+import qunar.tc.qmq.protocol.consumer.PullHint;
 import qunar.tc.qmq.protocol.consumer.PullRequest;
 import qunar.tc.qmq.protocol.consumer.PullRequestPayloadHolder;
 import qunar.tc.qmq.util.RemotingBuilder;
+import qunar.tc.qmq.utils.CompressionUtils;
 import qunar.tc.qmq.utils.Flags;
 import qunar.tc.qmq.utils.PayloadHolderUtils;
 import qunar.tc.qmq.utils.RetrySubjectUtils;
@@ -54,6 +60,11 @@ import static qunar.tc.qmq.metrics.MetricsConstants.SUBJECT_GROUP_ARRAY;
 class PullService {
     private static final Logger LOGGER = LoggerFactory.getLogger(PullService.class);
 
+    private static final MetricFamily<QmqTimer> PULL_TIMER = Metrics.timerFamily("qmq_pull_timer", SUBJECT_GROUP_ARRAY);
+    private static final MetricFamily<QmqCounter> PULL_ERROR_COUNTER = Metrics.counterFamily("qmq_pull_error", SUBJECT_GROUP_ARRAY);
+    private static final MetricFamily<QmqCounter> PULL_COUNTER = Metrics.counterFamily("qmq_pull_count", SUBJECT_GROUP_ARRAY);
+    private static final MetricFamily<QmqCounter> DESERIALIZE_FAIL_COUNTER = Metrics.counterFamily("qmq_pull_deserialize_fail_count", SUBJECT_ARRAY);
+
     private final NettyClient client = NettyClient.getClient();
 
     PullResult pull(final PullParam pullParam) throws ExecutionException, InterruptedException {
@@ -65,6 +76,7 @@ class PullService {
     private void pull(final PullParam pullParam, final PullCallback callback) {
         final PullRequest request = buildPullRequest(pullParam);
         Datagram datagram = RemotingBuilder.buildRequestDatagram(CommandCode.PULL_MESSAGE, new PullRequestPayloadHolder(request));
+        datagram.getHeader().setVersion(RemotingHeader.VERSION_10);
         long networkTripTimeout = pullParam.getRequestTimeoutMillis();
         long pullProcessTimeout = pullParam.getTimeoutMillis();
         long responseTimeout = pullProcessTimeout < 0 ? networkTripTimeout : (networkTripTimeout + pullProcessTimeout);
@@ -93,7 +105,7 @@ class PullService {
     }
 
     public interface PullCallback {
-        void onCompleted(short responseCode, List<BaseMessage> messages);
+        void onCompleted(short responseCode, List<BaseMessage> messages, int bytes, PullHint hint);
 
         void onException(Exception ex);
     }
@@ -146,11 +158,13 @@ class PullService {
         private void handleResponse(final Datagram response) {
             final short responseCode = response.getHeader().getCode();
             if (responseCode == CommandCode.NO_MESSAGE) {
-                callback.onCompleted(responseCode, Collections.<BaseMessage>emptyList());
+                callback.onCompleted(responseCode, Collections.<BaseMessage>emptyList(), 0, readHint(response.getBody()));
             } else if (responseCode != CommandCode.SUCCESS) {
                 monitorPullError(request.getSubject(), request.getGroup());
-                callback.onCompleted(responseCode, Collections.<BaseMessage>emptyList());
+                callback.onCompleted(responseCode, Collections.<BaseMessage>emptyList(), 0, null);
             } else {
+                final int bytes = response.getBody().readableBytes();
+                final PullHint hint = readHint(response.getBody());
                 List<BaseMessage> messages = deserializeBaseMessage(response.getBody());
                 if (messages == null) {
                     messages = Collections.emptyList();
@@ -162,16 +176,24 @@ class PullService {
                         message.setMaxRetryNum(PullSubjectsConfig.get().getMaxRetryNum(realSubject).get());
                     }
                 }
-                callback.onCompleted(responseCode, messages);
+                callback.onCompleted(responseCode, messages, bytes, hint);
             }
         }
 
+        /**
+         * 响应开头是pull log offset和hint两个long，不移动readerIndex
+         */
+        private PullHint readHint(ByteBuf input) {
+            if (input == null || input.readableBytes() < 16) return null;
+            return PullHint.decode(input.getLong(input.readerIndex() + 8));
+        }
+
         private List<BaseMessage> deserializeBaseMessage(ByteBuf input) {
             if (input.readableBytes() == 0) return Collections.emptyList();
             List<BaseMessage> result = Lists.newArrayList();
 
             long pullLogOffset = input.readLong();
-            //ignore consumer offset
+            //pull hint, read before
             input.readLong();
 
             while (input.isReadable()) {
@@ -183,10 +205,9 @@ class PullService {
                 readTags(input, message, flag);
                 int bodyLen = input.readInt();
                 ByteBuf body = input.readSlice(bodyLen);
-                HashMap<String, Object> attrs = deserializeMapWrapper(subject, messageId, body);
                 message.setMessageId(messageId);
                 message.setSubject(subject);
-                message.setAttrs(attrs);
+                setAttrs(message, flag, body);
                 message.setProperty(BaseMessage.keys.qmq_pullOffset, pullLogOffset);
                 result.add(message);
 
@@ -205,27 +226,22 @@ class PullService {
             }
         }
 
-        private HashMap<String, Object> deserializeMapWrapper(String subject, String messageId, ByteBuf body) {
+        private void setAttrs(BaseMessage message, byte flag, ByteBuf body) {
             try {
-                return deserializeMap(body);
+                byte[] data = new byte[body.readableBytes()];
+                body.readBytes(data);
+                if (Flags.isCompressed(flag)) {
+                    data = CompressionUtils.decompress(data);
+                }
+                message.setLazyAttrs(data);
             } catch (Exception e) {
-                LOGGER.error("deserialize message failed subject:{} messageId: {}", subject, messageId);
-                Metrics.counter("qmq_pull_deserialize_fail_count", SUBJECT_ARRAY, new String[]{subject}).inc();
+                LOGGER.error("deserialize message failed subject:{} messageId: {}", message.getSubject(), message.getMessageId());
+                DESERIALIZE_FAIL_COUNTER.of(message.getSubject()).inc();
                 HashMap<String, Object> result = new HashMap<>();
                 result.put(BaseMessage.keys.qmq_corruptData.name(), "true");
                 result.put(BaseMessage.keys.qmq_createTime.name(), new Date().getTime());
-                return result;
-            }
-        }
-
-        private HashMap<String, Object> deserializeMap(ByteBuf body) {
-            HashMap<String, Object> map = new HashMap<>();
-            while (body.isReadable(4)) {
-                String key = PayloadHolderUtils.readString(body);
-                String value = PayloadHolderUtils.readString(body);
-                map.put(key, value);
+                message.setAttrs(result);
             }
-            return map;
         }
     }
 
@@ -237,8 +253,8 @@ class PullService {
         }
 
         @Override
-        public void onCompleted(short responseCode, List<BaseMessage> messages) {
-            super.set(new PullResult(responseCode, messages, brokerGroup));
+        public void onCompleted(short responseCode, List<BaseMessage> messages, int bytes, PullHint hint) {
+            super.set(new PullResult(responseCode, messages, brokerGroup, bytes, hint));
         }
 
         @Override
@@ -248,14 +264,14 @@ class PullService {
     }
 
     private static void monitorPullTime(String subject, String group, long time) {
-        Metrics.timer("qmq_pull_timer", SUBJECT_GROUP_ARRAY, new String[]{subject, group}).update(time, TimeUnit.MILLISECONDS);
+        PULL_TIMER.of(subject, group).update(time, TimeUnit.MILLISECONDS);
     }
 
     private static void monitorPullError(String subject, String group) {
-        Metrics.counter("qmq_pull_error", SUBJECT_GROUP_ARRAY, new String[]{subject, group}).inc();
+        PULL_ERROR_COUNTER.of(subject, group).inc();
     }
 
     private static void monitorPullCount(String subject, String group, int pullSize) {
-        Metrics.counter("qmq_pull_count", SUBJECT_GROUP_ARRAY, new String[]{subject, group}).inc(pullSize);
+        PULL_COUNTER.of(subject, group).inc(pullSize);
     }
 }
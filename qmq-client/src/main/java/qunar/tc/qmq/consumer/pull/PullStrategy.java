@@ -16,8 +16,20 @@
 
 package qunar.tc.qmq.consumer.pull;
 
+import qunar.tc.qmq.broker.BrokerGroupInfo;
+import qunar.tc.qmq.protocol.consumer.PullHint;
+
 interface PullStrategy {
     boolean needPull();
 
     void record(boolean status);
+
+    /**
+     * 记录broker返回的拉取建议
+     */
+    void hint(BrokerGroupInfo group, PullHint hint);
+
+    int pullBatchSize(BrokerGroupInfo group, int configured);
+
+    int pullTimeout(BrokerGroupInfo group, int configured);
 }
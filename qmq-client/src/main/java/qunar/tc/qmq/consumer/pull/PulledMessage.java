@@ -28,11 +28,34 @@ class PulledMessage extends ConsumeMessage {
     private transient final AckEntry ackEntry;
     private transient final AckHook ackHook;
     private transient final AtomicBoolean hasAcked = new AtomicBoolean(false);
+    private transient final int bytes;
+    private transient volatile PrefetchController prefetchController;
+    private transient final AtomicBoolean prefetchReleased = new AtomicBoolean(false);
 
     PulledMessage(BaseMessage message, AckEntry ackEntry, AckHook ackHook) {
+        this(message, ackEntry, ackHook, 0);
+    }
+
+    PulledMessage(BaseMessage message, AckEntry ackEntry, AckHook ackHook, int bytes) {
         super(message);
         this.ackEntry = ackEntry;
         this.ackHook = ackHook;
+        this.bytes = bytes;
+    }
+
+    int bytes() {
+        return bytes;
+    }
+
+    void setPrefetchController(PrefetchController prefetchController) {
+        this.prefetchController = prefetchController;
+    }
+
+    void releasePrefetch() {
+        final PrefetchController controller = prefetchController;
+        if (controller != null && prefetchReleased.compareAndSet(false, true)) {
+            controller.consumed(this);
+        }
     }
 
     AckEntry ackEntry() {
@@ -93,6 +93,7 @@ class PushConsumerImpl extends BaseMessageHandler implements PushConsumer {
 
     @Override
     public void push(List<PulledMessage> messages) {
+        prepareIdempotent(messages);
         for (int i = 0; i < messages.size(); i++) {
             final PulledMessage message = messages.get(i);
             if (!push(message)) {
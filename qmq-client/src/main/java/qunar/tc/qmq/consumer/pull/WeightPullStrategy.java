@@ -18,7 +18,7 @@ package qunar.tc.qmq.consumer.pull;
 
 import java.util.concurrent.ThreadLocalRandom;
 
-class WeightPullStrategy implements PullStrategy {
+class WeightPullStrategy extends HintedPullStrategy {
     private static final int MIN_WEIGHT = 1;
     private static final int MAX_WEIGHT = 32;
 
@@ -33,6 +33,7 @@ public class ConfigCenter {
     private int sendBatch = 30;
     private long sendTimeoutMillis = 5000;
     private int sendTryCount = 10;
+    private int compressThreshold = -1;
 
     private boolean syncSend = false;
 
@@ -76,6 +77,14 @@ public class ConfigCenter {
         this.sendTryCount = sendTryCount;
     }
 
+    public int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    public void setCompressThreshold(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+    }
+
     public boolean isSyncSend() {
         return syncSend;
     }
@@ -197,6 +197,15 @@ public class MessageProducerProvider implements MessageProducer {
         configs.setSendTimeoutMillis(timeoutMillis);
     }
 
+    /**
+     * 消息body(所有属性)超过该字节数时压缩后发送，broker不解压直接存储和投递，由消费者解压，默认不压缩
+     *
+     * @param compressThreshold 压缩阈值，小于等于0表示不压缩
+     */
+    public void setCompressThreshold(int compressThreshold) {
+        configs.setCompressThreshold(compressThreshold);
+    }
+
     public void setClientIdProvider(ClientIdProvider clientIdProvider) {
         this.clientIdProvider = clientIdProvider;
     }
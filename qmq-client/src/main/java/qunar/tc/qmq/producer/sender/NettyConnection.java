@@ -31,6 +31,7 @@ import qunar.tc.qmq.metrics.Metrics;
 import qunar.tc.qmq.metrics.QmqCounter;
 import qunar.tc.qmq.metrics.QmqTimer;
 import qunar.tc.qmq.netty.exception.*;
+import qunar.tc.qmq.producer.ConfigCenter;
 import qunar.tc.qmq.protocol.*;
 import qunar.tc.qmq.protocol.producer.MessageProducerCode;
 import qunar.tc.qmq.protocol.producer.SendResult;
@@ -51,6 +52,8 @@ import static qunar.tc.qmq.metrics.MetricsConstants.SUBJECT_ARRAY;
  * @author zhenyu.nie created on 2017 2017/7/5 15:08
  */
 class NettyConnection implements Connection {
+    private static final ConfigCenter CONFIG = ConfigCenter.getInstance();
+
     private final String subject;
     private final ClientType clientType;
     private final NettyProducerClient producerClient;
@@ -60,6 +63,8 @@ class NettyConnection implements Connection {
 
     private final BrokerLoadBalance brokerLoadBalance = PollBrokerLoadBalance.getInstance();
 
+    private static final QmqCounter SEND_MESSAGE_ERROR_METRICS = Metrics.counter("qmq_client_send_msg_error");
+
     private final QmqCounter sendMessageCountMetrics;
     private final QmqTimer sendMessageTimerMetrics;
 
@@ -168,11 +173,11 @@ class NettyConnection implements Connection {
             return result;
         } catch (ClientSendException | RemoteTimeoutException e) {
             target.markFailed();
-            Metrics.counter("qmq_client_send_msg_error").inc(messages.size());
+            SEND_MESSAGE_ERROR_METRICS.inc(messages.size());
             throw e;
         } catch (Exception e) {
             target.markFailed();
-            Metrics.counter("qmq_client_send_msg_error").inc(messages.size());
+            SEND_MESSAGE_ERROR_METRICS.inc(messages.size());
             throw new RuntimeException(e);
         }
     }
@@ -182,7 +187,7 @@ class NettyConnection implements Connection {
         for (ProduceMessage message : messages) {
             baseMessages.add((BaseMessage) message.getBase());
         }
-        return RemotingBuilder.buildRequestDatagram(CommandCode.SEND_MESSAGE, new MessagesPayloadHolder(baseMessages));
+        return RemotingBuilder.buildRequestDatagram(CommandCode.SEND_MESSAGE, new MessagesPayloadHolder(baseMessages, CONFIG.getCompressThreshold()));
     }
 
     @Override
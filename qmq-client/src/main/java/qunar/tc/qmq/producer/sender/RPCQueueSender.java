@@ -19,7 +19,7 @@ import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import qunar.tc.qmq.ProduceMessage;
-import qunar.tc.qmq.batch.BatchExecutor;
+import qunar.tc.qmq.batch.LingerBatchExecutor;
 import qunar.tc.qmq.batch.Processor;
 import qunar.tc.qmq.metrics.Metrics;
 import qunar.tc.qmq.metrics.QmqTimer;
@@ -43,7 +43,7 @@ class RPCQueueSender implements QueueSender, SendErrorHandler, Processor<Produce
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RPCQueueSender.class);
 
-    private final BatchExecutor<ProduceMessage> executor;
+    private final LingerBatchExecutor<ProduceMessage> executor;
 
     private final RouterManager routerManager;
 
@@ -53,7 +53,7 @@ class RPCQueueSender implements QueueSender, SendErrorHandler, Processor<Produce
         this.routerManager = routerManager;
         this.timer = Metrics.timer("qmq_client_send_task_timer");
 
-        this.executor = new BatchExecutor<ProduceMessage>(name, sendBatch, this);
+        this.executor = new LingerBatchExecutor<>(name, sendBatch, this);
         this.executor.setQueueSize(maxQueueSize);
         this.executor.setThreads(sendThreads);
         this.executor.init();
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package qunar.tc.qmq.producer.tx;
+
+import qunar.tc.qmq.ProduceMessage;
+
+import java.util.List;
+
+/**
+ * 支持在事务提交前一次性批量写入本事务所有消息的store
+ */
+public interface BatchMessageStore {
+
+    /**
+     * 批量写入消息，之后对这些消息调用insertNew时直接返回已经生成的id
+     */
+    void prepareBatch(List<ProduceMessage> messages);
+
+    /**
+     * 清理当前线程上未被insertNew取走的批量写入结果
+     */
+    void clearBatch();
+}
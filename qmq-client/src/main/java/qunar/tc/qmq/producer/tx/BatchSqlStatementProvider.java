@@ -0,0 +1,27 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package qunar.tc.qmq.producer.tx;
+
+/**
+ * 支持按id批量删除的sql提供者，未实现此接口时按单条删除sql做jdbc batch
+ */
+public interface BatchSqlStatementProvider extends SqlStatementProvider {
+
+    /**
+     * @param size in条件中id的个数
+     */
+    String getBatchDeleteSql(int size);
+}
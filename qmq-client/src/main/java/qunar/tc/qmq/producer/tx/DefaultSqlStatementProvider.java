@@ -22,17 +22,19 @@ import com.google.common.base.Strings;
  * Created by zhaohui.yu
  * 1/5/19
  */
-public class DefaultSqlStatementProvider implements SqlStatementProvider {
+public class DefaultSqlStatementProvider implements BatchSqlStatementProvider {
 
     private static final String DEFAULT_TABLE_NAME = "qmq_produce.qmq_msg_queue";
 
     private static final String INSERT = "INSERT INTO %s(content,create_time) VALUES(?,?)";
     private static final String BLOCK = "UPDATE %s SET status=-100,error=error+1,update_time=? WHERE id=?";
     private static final String DELETE = "DELETE FROM %s WHERE id=?";
+    private static final String BATCH_DELETE = "DELETE FROM %s WHERE id IN (";
 
     private final String insertSql;
     private final String blockSql;
     private final String deleteSql;
+    private final String batchDeletePrefix;
 
     public DefaultSqlStatementProvider() {
         this(null);
@@ -44,6 +46,7 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
         this.insertSql = String.format(INSERT, tableName);
         this.blockSql = String.format(BLOCK, tableName);
         this.deleteSql = String.format(DELETE, tableName);
+        this.batchDeletePrefix = String.format(BATCH_DELETE, tableName);
     }
 
     @Override
@@ -60,4 +63,15 @@ public class DefaultSqlStatementProvider implements SqlStatementProvider {
     public String getDeleteSql() {
         return deleteSql;
     }
+
+    @Override
+    public String getBatchDeleteSql(int size) {
+        StringBuilder sql = new StringBuilder(batchDeletePrefix.length() + size * 2 + 1);
+        sql.append(batchDeletePrefix);
+        for (int i = 0; i < size; ++i) {
+            if (i > 0) sql.append(',');
+            sql.append('?');
+        }
+        return sql.append(')').toString();
+    }
 }
@@ -59,7 +59,24 @@ class DefaultTransactionListener implements TransactionListener {
 
     @Override
     public void beforeCommit() {
-        List<ProduceMessage> list = get();
+        TransactionMessageHolder current = holder.get();
+        if (current == null) return;
+
+        List<ProduceMessage> list = current.get();
+        MessageStore store = current.getStore();
+        if (list.size() > 1 && store instanceof BatchMessageStore) {
+            BatchMessageStore batchStore = (BatchMessageStore) store;
+            try {
+                batchStore.prepareBatch(list);
+                for (ProduceMessage msg : list) {
+                    msg.save();
+                }
+            } finally {
+                batchStore.clearBatch();
+            }
+            return;
+        }
+
         for (ProduceMessage msg : list) {
             msg.save();
         }
@@ -101,12 +118,6 @@ class DefaultTransactionListener implements TransactionListener {
         holder.set(resource.get().pop());
     }
 
-    private List<ProduceMessage> get() {
-        TransactionMessageHolder current = holder.get();
-        if (current == null) return Collections.emptyList();
-        return current.get();
-    }
-
     private List<ProduceMessage> remove() {
         TransactionMessageHolder current = holder.get();
         holder.remove();
@@ -37,6 +37,10 @@ class TransactionMessageHolder {
         return queue;
     }
 
+    MessageStore getStore() {
+        return store;
+    }
+
     private final MessageStore store;
     private List<ProduceMessage> queue = Collections.emptyList();
 
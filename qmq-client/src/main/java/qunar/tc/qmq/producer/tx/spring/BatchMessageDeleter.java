@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package qunar.tc.qmq.producer.tx.spring;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import qunar.tc.qmq.ProduceMessage;
+import qunar.tc.qmq.concurrent.NamedThreadFactory;
+import qunar.tc.qmq.metrics.Metrics;
+import qunar.tc.qmq.metrics.QmqCounter;
+import qunar.tc.qmq.producer.tx.BatchSqlStatementProvider;
+import qunar.tc.qmq.producer.tx.SqlStatementProvider;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发送成功的消息异步删除，按数据源路由分组后合并成 DELETE ... WHERE id IN (...)
+ * <p>
+ * 删除失败时消息会留在表中，由补偿任务重发，与原来同步删除失败的处理一致。
+ */
+class BatchMessageDeleter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchMessageDeleter.class);
+
+    private static final int MAX_QUEUE_SIZE = 10000;
+    private static final int MAX_BATCH_SIZE = 200;
+
+    private final JdbcTemplate platform;
+    private final RouterSelector routerSelector;
+    private final SqlStatementProvider sqlStatementProvider;
+    private final BlockingQueue<ProduceMessage> queue;
+    private final QmqCounter deleteFailedCounter;
+
+    BatchMessageDeleter(JdbcTemplate platform, RouterSelector routerSelector, SqlStatementProvider sqlStatementProvider) {
+        this.platform = platform;
+        this.routerSelector = routerSelector;
+        this.sqlStatementProvider = sqlStatementProvider;
+        this.queue = new LinkedBlockingQueue<>(MAX_QUEUE_SIZE);
+        this.deleteFailedCounter = Metrics.counter("qmq_client_tx_msg_delete_failed");
+
+        Thread thread = new NamedThreadFactory("qmq-tx-msg-deleter", true).newThread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        });
+        thread.start();
+    }
+
+    /**
+     * @return false 队列已满，调用方应该同步删除
+     */
+    boolean offer(ProduceMessage message) {
+        return queue.offer(message);
+    }
+
+    private void loop() {
+        List<ProduceMessage> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                ProduceMessage first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                delete(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable e) {
+                LOGGER.error("delete finished transaction messages failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void delete(List<ProduceMessage> batch) {
+        Map<Object, List<Object>> idsByRoute = new HashMap<>();
+        for (ProduceMessage message : batch) {
+            List<Object> ids = idsByRoute.get(message.getRouteKey());
+            if (ids == null) {
+                ids = new ArrayList<>();
+                idsByRoute.put(message.getRouteKey(), ids);
+            }
+            ids.add(message.getSequence());
+        }
+
+        for (Map.Entry<Object, List<Object>> entry : idsByRoute.entrySet()) {
+            Object routeKey = entry.getKey();
+            List<Object> ids = entry.getValue();
+            routerSelector.setRouteKey(routeKey, platform.getDataSource());
+            try {
+                doDelete(ids);
+            } catch (Exception e) {
+                deleteFailedCounter.inc(ids.size());
+                LOGGER.error("delete finished transaction messages failed. ids: {}", ids, e);
+            } finally {
+                routerSelector.clearRoute(routeKey, platform.getDataSource());
+            }
+        }
+    }
+
+    private void doDelete(List<Object> ids) {
+        if (ids.size() == 1) {
+            platform.update(sqlStatementProvider.getDeleteSql(), ids.get(0));
+            return;
+        }
+
+        if (sqlStatementProvider instanceof BatchSqlStatementProvider) {
+            String sql = ((BatchSqlStatementProvider) sqlStatementProvider).getBatchDeleteSql(ids.size());
+            platform.update(sql, ids.toArray());
+            return;
+        }
+
+        List<Object[]> args = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            args.add(new Object[]{id});
+        }
+        platform.batchUpdate(sqlStatementProvider.getDeleteSql(), args);
+    }
+}
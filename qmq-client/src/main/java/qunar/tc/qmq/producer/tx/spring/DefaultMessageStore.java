@@ -19,6 +19,7 @@ package qunar.tc.qmq.producer.tx.spring;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.LongSerializationPolicy;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
 import org.springframework.jdbc.core.SqlParameter;
@@ -26,20 +27,30 @@ import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import qunar.tc.qmq.MessageStore;
 import qunar.tc.qmq.ProduceMessage;
+import qunar.tc.qmq.base.BaseMessage;
+import qunar.tc.qmq.base.MessageContentCodec;
+import qunar.tc.qmq.producer.tx.BatchMessageStore;
 import qunar.tc.qmq.producer.tx.DefaultSqlStatementProvider;
 import qunar.tc.qmq.producer.tx.SqlStatementProvider;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author miao.yang susing@gmail.com
  * @date 2013-1-9
  */
-public class DefaultMessageStore implements MessageStore {
+public class DefaultMessageStore implements MessageStore, BatchMessageStore {
     private final JdbcTemplate platform;
 
     private final PreparedStatementCreatorFactory insertStatementFactory;
@@ -50,6 +61,14 @@ public class DefaultMessageStore implements MessageStore {
 
     private SqlStatementProvider sqlStatementProvider;
 
+    private final BatchMessageDeleter deleter;
+
+    // 事务提交前批量写入生成的id，随后save时按消息取走
+    private final ThreadLocal<Map<ProduceMessage, Long>> preparedIds = new ThreadLocal<>();
+
+    // 需要补偿任务(watchdog)先升级到能识别紧凑编码的版本后才能开启
+    private volatile boolean binaryContentEnable = false;
+
     DefaultMessageStore(DataSource datasource) {
         this(datasource, new NoopRouterSelector(), new DefaultSqlStatementProvider());
     }
@@ -68,19 +87,92 @@ public class DefaultMessageStore implements MessageStore {
         this.insertStatementFactory = createFactory();
         this.gson = new GsonBuilder().setLongSerializationPolicy(LongSerializationPolicy.STRING).create();
         this.routerSelector = routerSelector;
+        this.deleter = new BatchMessageDeleter(platform, routerSelector, sqlStatementProvider);
+    }
+
+    public void setBinaryContentEnable(boolean binaryContentEnable) {
+        this.binaryContentEnable = binaryContentEnable;
     }
 
     @Override
     public long insertNew(ProduceMessage message) {
+        Map<ProduceMessage, Long> prepared = preparedIds.get();
+        if (prepared != null) {
+            Long id = prepared.remove(message);
+            if (id != null) {
+                message.setRouteKey(routerSelector.getRouteKey(platform.getDataSource()));
+                return id;
+            }
+        }
+
         KeyHolder holder = new GeneratedKeyHolder();
-        String json = this.gson.toJson(message.getBase());
-        platform.update(this.insertStatementFactory.newPreparedStatementCreator(new Object[]{json, new Timestamp(System.currentTimeMillis())}), holder);
+        String content = encode(message);
+        platform.update(this.insertStatementFactory.newPreparedStatementCreator(new Object[]{content, new Timestamp(System.currentTimeMillis())}), holder);
         message.setRouteKey(routerSelector.getRouteKey(platform.getDataSource()));
         return holder.getKey().longValue();
     }
 
+    @Override
+    public void prepareBatch(final List<ProduceMessage> messages) {
+        final String[] contents = new String[messages.size()];
+        for (int i = 0; i < contents.length; ++i) {
+            contents[i] = encode(messages.get(i));
+        }
+
+        long[] ids = platform.execute(new ConnectionCallback<long[]>() {
+            @Override
+            public long[] doInConnection(Connection connection) throws SQLException {
+                return batchInsert(connection, contents);
+            }
+        });
+
+        Map<ProduceMessage, Long> prepared = new IdentityHashMap<>(messages.size());
+        for (int i = 0; i < ids.length; ++i) {
+            prepared.put(messages.get(i), ids[i]);
+        }
+        preparedIds.set(prepared);
+    }
+
+    private long[] batchInsert(Connection connection, String[] contents) throws SQLException {
+        final Timestamp now = new Timestamp(System.currentTimeMillis());
+        try (PreparedStatement statement = connection.prepareStatement(sqlStatementProvider.getInsertSql(), Statement.RETURN_GENERATED_KEYS)) {
+            for (String content : contents) {
+                statement.setString(1, content);
+                statement.setTimestamp(2, now);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+
+            final long[] ids = new long[contents.length];
+            int count = 0;
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                while (count < ids.length && keys.next()) {
+                    ids[count++] = keys.getLong(1);
+                }
+            }
+            if (count != ids.length) {
+                throw new SQLException("batch insert messages returned " + count + " generated keys, expected " + ids.length);
+            }
+            return ids;
+        }
+    }
+
+    @Override
+    public void clearBatch() {
+        preparedIds.remove();
+    }
+
+    private String encode(ProduceMessage message) {
+        if (binaryContentEnable && message.getBase() instanceof BaseMessage) {
+            return MessageContentCodec.encode((BaseMessage) message.getBase());
+        }
+        return this.gson.toJson(message.getBase());
+    }
+
     @Override
     public void finish(ProduceMessage message) {
+        if (deleter.offer(message)) return;
+
         routerSelector.setRouteKey(message.getRouteKey(), platform.getDataSource());
         try {
             platform.update(sqlStatementProvider.getDeleteSql(), message.getSequence());
@@ -34,7 +34,7 @@ public class SpringTransactionProvider implements TransactionProvider, Transacti
     private static final RuntimeException E =
             new RuntimeException("当前开启了事务，但是事务管理器的transactionSynchronization设置为SYNCHRONIZATION_NEVER，与QMQ事务机制不兼容");
 
-    private final MessageStore store;
+    private final DefaultMessageStore store;
 
     private TransactionListener transactionListener;
 
@@ -54,6 +54,13 @@ public class SpringTransactionProvider implements TransactionProvider, Transacti
         this.store = new DefaultMessageStore(bizDataSource, routerSelector, sqlStatementProvider);
     }
 
+    /**
+     * 事务消息表content使用紧凑编码代替json，需要先升级补偿任务(watchdog)
+     */
+    public void setBinaryContentEnable(boolean binaryContentEnable) {
+        store.setBinaryContentEnable(binaryContentEnable);
+    }
+
     @Override
     public void suspend() {
         if (transactionListener != null) transactionListener.suspend();
@@ -21,6 +21,8 @@ import com.google.common.collect.Sets;
 import qunar.tc.qmq.Message;
 import qunar.tc.qmq.utils.RetrySubjectUtils;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -68,7 +70,11 @@ public class BaseMessage implements Message, Serializable {
             keyNames.add(key.name());
     }
 
-    HashMap<String, Object> attrs = new HashMap<>();
+    // 延迟解码的消息在materialize时会整体替换成新的map，volatile保证并发读的线程看到完整的map
+    volatile HashMap<String, Object> attrs = new HashMap<>();
+
+    // 拉取到的消息属性延迟解码，attrs中的值优先
+    private transient volatile LazyAttributes lazyAttrs;
 
     public BaseMessage() {
     }
@@ -91,15 +97,53 @@ public class BaseMessage implements Message, Serializable {
         this(message.getMessageId(), message.getSubject());
         this.tags.addAll(message.getTags());
         this.attrs = new HashMap<>(message.attrs);
+        this.lazyAttrs = message.lazyAttrs;
     }
 
     public Map<String, Object> getAttrs() {
+        materialize();
         return Collections.unmodifiableMap(attrs);
     }
 
     @Deprecated
     public void setAttrs(HashMap<String, Object> attrs) {
         this.attrs = attrs;
+        this.lazyAttrs = null;
+    }
+
+    /**
+     * 消费端使用，属性只在读取时才解码，避免为每条消息的所有属性创建字符串
+     *
+     * @param data 生产者序列化的属性(body)
+     * @throws IllegalArgumentException 数据损坏
+     */
+    public void setLazyAttrs(byte[] data) {
+        this.attrs = new HashMap<>();
+        this.lazyAttrs = new LazyAttributes(data);
+    }
+
+    // 单个属性的读取不会materialize，但可能与getAttrs()的materialize并发：
+    // 先读lazyAttrs，读到null时materialize已经把完整的map发布到attrs；读到非null时attrs里没有的从lazy里取
+    private Object getAttr(String name) {
+        LazyAttributes lazy = this.lazyAttrs;
+        Object value = attrs.get(name);
+        if (value != null || lazy == null) return value;
+        return lazy.get(name);
+    }
+
+    // 不修改已经发布的map，解码到副本里再整体替换；必须先写attrs再清lazyAttrs
+    private void materialize() {
+        LazyAttributes lazy = this.lazyAttrs;
+        if (lazy == null) return;
+        HashMap<String, Object> materialized = new HashMap<>(attrs);
+        lazy.materialize(materialized);
+        this.attrs = materialized;
+        this.lazyAttrs = null;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        materialize();
+        out.defaultWriteObject();
     }
 
     @Override
@@ -229,12 +273,12 @@ public class BaseMessage implements Message, Serializable {
 
     @Override
     public String getStringProperty(String name) {
-        return valueOfString(attrs.get(name));
+        return valueOfString(getAttr(name));
     }
 
     @Override
     public boolean getBooleanProperty(String name) {
-        Object v = attrs.get(name);
+        Object v = getAttr(name);
         if (v == null)
             return false;
         return Boolean.valueOf(v.toString());
@@ -242,7 +286,7 @@ public class BaseMessage implements Message, Serializable {
 
     @Override
     public Date getDateProperty(String name) {
-        Object o = attrs.get(name);
+        Object o = getAttr(name);
         if (o == null)
             return null;
         Long v = Long.valueOf(o.toString());
@@ -251,7 +295,7 @@ public class BaseMessage implements Message, Serializable {
 
     @Override
     public int getIntProperty(String name) {
-        Object o = attrs.get(name);
+        Object o = getAttr(name);
         if (o == null)
             return 0;
         return Integer.valueOf(o.toString());
@@ -259,7 +303,7 @@ public class BaseMessage implements Message, Serializable {
 
     @Override
     public long getLongProperty(String name) {
-        Object o = attrs.get(name);
+        Object o = getAttr(name);
         if (o == null)
             return 0;
         return Long.valueOf(o.toString());
@@ -267,7 +311,7 @@ public class BaseMessage implements Message, Serializable {
 
     @Override
     public float getFloatProperty(String name) {
-        Object o = attrs.get(name);
+        Object o = getAttr(name);
         if (o == null)
             return 0;
         return Float.valueOf(o.toString());
@@ -275,7 +319,7 @@ public class BaseMessage implements Message, Serializable {
 
     @Override
     public double getDoubleProperty(String name) {
-        Object o = attrs.get(name);
+        Object o = getAttr(name);
         if (o == null)
             return 0;
         return Double.valueOf(o.toString());
@@ -291,7 +335,7 @@ public class BaseMessage implements Message, Serializable {
     }
 
     public Object getProperty(keys key) {
-        return attrs.get(key.name());
+        return getAttr(key.name());
     }
 
     public String getStringProperty(keys key) {
@@ -299,6 +343,7 @@ public class BaseMessage implements Message, Serializable {
     }
 
     public void removeProperty(keys key) {
+        materialize();
         attrs.remove(key.name());
     }
 
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.base;
+
+import qunar.tc.qmq.utils.CharsetUtils;
+
+import java.util.Map;
+
+/**
+ * 拉取到的消息属性的只读视图，构造时只建立key的偏移表，value在第一次读取时才解码
+ * <p>
+ * 格式与生产者写入的body一致: [key length(short), key, value length(short), value]*
+ */
+final class LazyAttributes {
+    private static final int VALUE_SIZE_NEGATIVE_COMPENSATE = 1 << 16;
+
+    private final byte[] data;
+    // 每个entry的key起始位置(指向key length)
+    private final int[] offsets;
+    private final int count;
+
+    LazyAttributes(final byte[] data) {
+        this.data = data;
+        int[] offsets = new int[8];
+        int count = 0;
+        int position = 0;
+        while (data.length - position >= 4) {
+            final int keySize = readShort(position);
+            final int valuePosition = position + 2 + keySize;
+            if (keySize < 0 || valuePosition + 2 > data.length) {
+                throw new IllegalArgumentException("message attributes corrupt");
+            }
+            final int valueSize = valueSize(valuePosition);
+            final int next = valuePosition + 2 + valueSize;
+            if (next > data.length) {
+                throw new IllegalArgumentException("message attributes corrupt");
+            }
+
+            if (count == offsets.length) {
+                final int[] expanded = new int[offsets.length * 2];
+                System.arraycopy(offsets, 0, expanded, 0, count);
+                offsets = expanded;
+            }
+            offsets[count++] = position;
+            position = next;
+        }
+        this.offsets = offsets;
+        this.count = count;
+    }
+
+    /**
+     * @return 属性值，不存在时返回null
+     */
+    String get(final String name) {
+        final byte[] key = CharsetUtils.toUTF8Bytes(name);
+        // 与原来HashMap的语义保持一致，相同的key以后出现的为准
+        for (int i = count - 1; i >= 0; --i) {
+            final int position = offsets[i];
+            if (keyEquals(position, key)) {
+                final int valuePosition = position + 2 + key.length;
+                return new String(data, valuePosition + 2, valueSize(valuePosition), CharsetUtils.UTF8);
+            }
+        }
+        return null;
+    }
+
+    void materialize(final Map<String, Object> attrs) {
+        // 倒序遍历，已经在attrs中的(被覆盖过或已经解码过)不再解码
+        for (int i = count - 1; i >= 0; --i) {
+            final int position = offsets[i];
+            final int keySize = readShort(position);
+            final String key = new String(data, position + 2, keySize, CharsetUtils.UTF8);
+            if (attrs.containsKey(key)) continue;
+
+            final int valuePosition = position + 2 + keySize;
+            attrs.put(key, new String(data, valuePosition + 2, valueSize(valuePosition), CharsetUtils.UTF8));
+        }
+    }
+
+    private boolean keyEquals(final int position, final byte[] key) {
+        if (readShort(position) != key.length) return false;
+        final int start = position + 2;
+        for (int i = 0; i < key.length; ++i) {
+            if (data[start + i] != key[i]) return false;
+        }
+        return true;
+    }
+
+    private int valueSize(final int valuePosition) {
+        int size = readShort(valuePosition);
+        if (size < 0) {
+            size += VALUE_SIZE_NEGATIVE_COMPENSATE;
+        }
+        return size;
+    }
+
+    private int readShort(final int position) {
+        return (short) (((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF));
+    }
+}
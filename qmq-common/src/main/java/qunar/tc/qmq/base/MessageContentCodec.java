@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.base;
+
+import com.google.common.io.BaseEncoding;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 事务消息表content字段的紧凑编码，替代Gson反射序列化。
+ * <p>
+ * 编码结果以{@link #BINARY_PREFIX}开头，后面是base64，与json(以'{'开头)可以区分，读取方需要兼容两种格式。
+ * 属性值统一按字符串保存，与消息在网络上传输时的处理一致。
+ */
+public final class MessageContentCodec {
+    public static final String BINARY_PREFIX = "#1:";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final BaseEncoding BASE64 = BaseEncoding.base64();
+
+    private static final byte FLAG_DURABLE = 1;
+    private static final byte FLAG_STORE_AT_FAILED = 1 << 1;
+
+    private MessageContentCodec() {
+    }
+
+    public static boolean isBinary(String content) {
+        return content != null && content.startsWith(BINARY_PREFIX);
+    }
+
+    public static String encode(BaseMessage message) {
+        final byte[] messageId = bytes(message.getMessageId());
+        final byte[] subject = bytes(message.getSubject());
+        final Set<String> tags = message.getTags();
+        final Map<String, Object> attrs = message.getAttrs();
+
+        final byte[][] tagBytes = new byte[tags.size()][];
+        int size = 1 + 2 + messageId.length + 2 + subject.length + 1;
+        int i = 0;
+        for (String tag : tags) {
+            tagBytes[i] = bytes(tag);
+            size += 2 + tagBytes[i].length;
+            i++;
+        }
+
+        final byte[][] attrBytes = new byte[attrs.size() * 2][];
+        size += 4;
+        i = 0;
+        for (Map.Entry<String, Object> entry : attrs.entrySet()) {
+            if (entry.getValue() == null) continue;
+            attrBytes[i] = bytes(entry.getKey());
+            attrBytes[i + 1] = bytes(entry.getValue().toString());
+            size += 2 + attrBytes[i].length + 4 + attrBytes[i + 1].length;
+            i += 2;
+        }
+        final int attrCount = i / 2;
+
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        byte flags = 0;
+        if (message.isDurable()) flags |= FLAG_DURABLE;
+        if (message.isStoreAtFailed()) flags |= FLAG_STORE_AT_FAILED;
+        buffer.put(flags);
+        putShortBytes(buffer, messageId);
+        putShortBytes(buffer, subject);
+        buffer.put((byte) tagBytes.length);
+        for (byte[] tag : tagBytes) {
+            putShortBytes(buffer, tag);
+        }
+        buffer.putInt(attrCount);
+        for (int j = 0; j < attrCount * 2; j += 2) {
+            putShortBytes(buffer, attrBytes[j]);
+            buffer.putInt(attrBytes[j + 1].length);
+            buffer.put(attrBytes[j + 1]);
+        }
+        return BINARY_PREFIX + BASE64.encode(buffer.array(), 0, buffer.position());
+    }
+
+    /**
+     * @throws IllegalArgumentException 数据不是合法的编码
+     */
+    public static BaseMessage decode(String content) {
+        if (!isBinary(content)) {
+            throw new IllegalArgumentException("not binary message content");
+        }
+
+        try {
+            final ByteBuffer buffer = ByteBuffer.wrap(BASE64.decode(content.substring(BINARY_PREFIX.length())));
+            final byte flags = buffer.get();
+            final BaseMessage message = new BaseMessage();
+            message.messageId = getShortString(buffer);
+            message.subject = getShortString(buffer);
+            message.setDurable((flags & FLAG_DURABLE) != 0);
+            message.setStoreAtFailed((flags & FLAG_STORE_AT_FAILED) != 0);
+
+            final int tagCount = buffer.get();
+            for (int i = 0; i < tagCount; i++) {
+                message.addTag(getShortString(buffer));
+            }
+
+            final int attrCount = buffer.getInt();
+            final HashMap<String, Object> attrs = new HashMap<>(attrCount * 2);
+            for (int i = 0; i < attrCount; i++) {
+                final String key = getShortString(buffer);
+                final byte[] value = new byte[buffer.getInt()];
+                buffer.get(value);
+                attrs.put(key, new String(value, UTF8));
+            }
+            message.attrs = attrs;
+            return message;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("illegal binary message content", e);
+        }
+    }
+
+    private static byte[] bytes(String s) {
+        return s == null ? new byte[0] : s.getBytes(UTF8);
+    }
+
+    private static void putShortBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getShortString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+}
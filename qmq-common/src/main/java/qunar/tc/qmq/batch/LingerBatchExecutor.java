@@ -0,0 +1,259 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.batch;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.concurrent.NamedThreadFactory;
+import qunar.tc.qmq.metrics.Metrics;
+import qunar.tc.qmq.metrics.QmqCounter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 批量执行器：每个drainer线程独占一个MPSC队列，生产者无锁入队，
+ * drainer凑够maxBatch条或者等待lingerMicros后把当前攒到的数据交给processor处理。
+ * <p>
+ * 队列满时addItem返回false，调用方据此做退避；drainer线程自身(比如processor里重试)提交的数据进入线程私有队列，不会被阻塞。
+ */
+public class LingerBatchExecutor<Item> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LingerBatchExecutor.class);
+
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_PROCESS_THREADS = 1;
+    private static final long DEFAULT_LINGER_MICROS = 0;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long OFFER_RETRY_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final String name;
+    private final int maxBatch;
+    private final Processor<Item> processor;
+    private final QmqCounter rejectCounter;
+
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+    private int threads = DEFAULT_PROCESS_THREADS;
+    private volatile long lingerNanos = TimeUnit.MICROSECONDS.toNanos(DEFAULT_LINGER_MICROS);
+
+    private final AtomicInteger roundRobin = new AtomicInteger(0);
+    private volatile Drainer[] drainers;
+    private volatile boolean running = false;
+
+    public LingerBatchExecutor(String name, int maxBatch, Processor<Item> processor) {
+        Preconditions.checkNotNull(processor);
+        Preconditions.checkArgument(maxBatch > 0, "maxBatch must be positive");
+
+        this.name = name;
+        this.maxBatch = maxBatch;
+        this.processor = processor;
+        this.rejectCounter = Metrics.counter("batch_executor_rejected", new String[]{"name"}, new String[]{name});
+    }
+
+    @PostConstruct
+    public synchronized void init() {
+        if (drainers != null) return;
+
+        running = true;
+        final int queueSizePerDrainer = Math.max(1, queueSize / threads);
+        final NamedThreadFactory threadFactory = new NamedThreadFactory("batch-" + name + "-drainer", true);
+        @SuppressWarnings("unchecked") final Drainer[] created = new LingerBatchExecutor.Drainer[threads];
+        for (int i = 0; i < threads; i++) {
+            created[i] = new Drainer(queueSizePerDrainer);
+            created[i].thread = threadFactory.newThread(created[i]);
+        }
+        drainers = created;
+        for (Drainer drainer : created) {
+            drainer.thread.start();
+        }
+    }
+
+    public boolean addItem(Item item) {
+        final Drainer self = currentDrainer();
+        if (self != null) {
+            self.local.add(item);
+            return true;
+        }
+
+        if (!running) return false;
+
+        final Drainer[] current = drainers;
+        final int start = roundRobin.getAndIncrement();
+        for (int i = 0; i < current.length; i++) {
+            if (current[((start + i) & Integer.MAX_VALUE) % current.length].offer(item)) {
+                return true;
+            }
+        }
+        rejectCounter.inc();
+        return false;
+    }
+
+    public boolean addItem(Item item, long timeout, TimeUnit unit) throws InterruptedException {
+        if (addItem(item)) return true;
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (running) {
+            final long remain = deadline - System.nanoTime();
+            if (remain <= 0) return false;
+
+            LockSupport.parkNanos(this, Math.min(remain, OFFER_RETRY_PARK_NANOS));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (addItem(item)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 还未被处理的数据量(近似值)，可以作为背压信号
+     */
+    public int pendingItems() {
+        final Drainer[] current = drainers;
+        if (current == null) return 0;
+
+        int pending = 0;
+        for (Drainer drainer : current) {
+            pending += drainer.queue.SIZE();
+        }
+        return pending;
+    }
+
+    public boolean isOverloaded() {
+        return pendingItems() >= queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * drainer线程数，只在init之前设置有效
+     */
+    public void setThreads(int threads) {
+        Preconditions.checkArgument(threads > 0, "threads must be positive");
+        this.threads = threads;
+    }
+
+    public void setLingerMicros(long lingerMicros) {
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, lingerMicros));
+    }
+
+    private Drainer currentDrainer() {
+        final Drainer[] current = drainers;
+        if (current == null) {
+            throw new IllegalStateException("batch executor " + name + " not initialized");
+        }
+
+        final Thread thread = Thread.currentThread();
+        for (Drainer drainer : current) {
+            if (drainer.thread == thread) return drainer;
+        }
+        return null;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        final Drainer[] current = drainers;
+        if (current == null) return;
+
+        for (Drainer drainer : current) {
+            LockSupport.unpark(drainer.thread);
+        }
+    }
+
+    private class Drainer implements Runnable {
+        private final MpscLinkedQueue<Item> queue;
+        // drainer线程私有
+        private final ArrayDeque<Item> local = new ArrayDeque<>();
+        private volatile Thread thread;
+        // 队列里的数据达到这个数量时生产者需要唤醒drainer
+        private volatile int wakeupThreshold = Integer.MAX_VALUE;
+
+        Drainer(int queueSize) {
+            this.queue = new MpscLinkedQueue<>(queueSize);
+        }
+
+        boolean offer(Item item) {
+            if (!queue.offer(item)) return false;
+
+            if (queue.SIZE() >= wakeupThreshold) {
+                LockSupport.unpark(thread);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            List<Item> batch = new ArrayList<>(maxBatch);
+            while (true) {
+                fill(batch);
+                if (batch.isEmpty()) {
+                    if (!running) break;
+                    await(1, IDLE_PARK_NANOS);
+                    continue;
+                }
+
+                final long linger = lingerNanos;
+                if (linger > 0 && running) {
+                    final long deadline = System.nanoTime() + linger;
+                    long remain = linger;
+                    while (batch.size() < maxBatch && remain > 0) {
+                        await(maxBatch - batch.size(), remain);
+                        fill(batch);
+                        remain = deadline - System.nanoTime();
+                    }
+                }
+
+                try {
+                    processor.process(batch);
+                } catch (Throwable e) {
+                    LOGGER.error("batch executor {} process failed. size: {}", name, batch.size(), e);
+                }
+                // processor可能会持有这个list
+                batch = new ArrayList<>(maxBatch);
+            }
+        }
+
+        private void fill(List<Item> batch) {
+            while (batch.size() < maxBatch && !local.isEmpty()) {
+                batch.add(local.poll());
+            }
+            if (batch.size() < maxBatch) {
+                queue.drainTo(batch, maxBatch - batch.size());
+            }
+        }
+
+        private void await(int threshold, long nanos) {
+            if (!local.isEmpty()) return;
+
+            wakeupThreshold = threshold;
+            if (queue.SIZE() < threshold && running) {
+                LockSupport.parkNanos(this, nanos);
+            }
+            wakeupThreshold = Integer.MAX_VALUE;
+        }
+    }
+}
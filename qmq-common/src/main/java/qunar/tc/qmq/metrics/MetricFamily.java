@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.metrics;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 同一个指标按tag值缓存已经绑定好的metric，热点路径上直接拿到handle，
+ * 不用每次构造tag数组、再走一遍registry的查找。
+ * <p>
+ * 只支持一个或两个tag(subject, subject + group)。缓存的handle不会失效，family只用于不会被remove的counter/meter/timer。
+ */
+public final class MetricFamily<T> {
+    private final String name;
+    private final String[] tags;
+    private final Factory<T> factory;
+
+    private final ConcurrentMap<String, T> single = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, T>> pairs = new ConcurrentHashMap<>();
+
+    MetricFamily(String name, String[] tags, Factory<T> factory) {
+        Preconditions.checkArgument(tags.length == 1 || tags.length == 2, "metric family only support one or two tags");
+        this.name = name;
+        this.tags = tags;
+        this.factory = factory;
+    }
+
+    public T of(String value) {
+        if (tags.length != 1) throw new IllegalStateException("metric " + name + " need " + tags.length + " tag values");
+
+        T metric = single.get(value);
+        if (metric != null) return metric;
+
+        metric = factory.create(name, tags, new String[]{value});
+        T old = single.putIfAbsent(value, metric);
+        return old == null ? metric : old;
+    }
+
+    public T of(String first, String second) {
+        if (tags.length != 2) throw new IllegalStateException("metric " + name + " need " + tags.length + " tag values");
+
+        ConcurrentMap<String, T> inner = pairs.get(first);
+        if (inner == null) {
+            inner = new ConcurrentHashMap<>();
+            ConcurrentMap<String, T> old = pairs.putIfAbsent(first, inner);
+            if (old != null) {
+                inner = old;
+            }
+        }
+
+        T metric = inner.get(second);
+        if (metric != null) return metric;
+
+        metric = factory.create(name, tags, new String[]{first, second});
+        T old = inner.putIfAbsent(second, metric);
+        return old == null ? metric : old;
+    }
+
+    interface Factory<T> {
+        T create(String name, String[] tags, String[] values);
+    }
+}
@@ -25,6 +25,27 @@ public class Metrics {
 
     private static final QmqMetricRegistry INSTANCE;
 
+    private static final MetricFamily.Factory<QmqCounter> COUNTER_FACTORY = new MetricFamily.Factory<QmqCounter>() {
+        @Override
+        public QmqCounter create(String name, String[] tags, String[] values) {
+            return counter(name, tags, values);
+        }
+    };
+
+    private static final MetricFamily.Factory<QmqMeter> METER_FACTORY = new MetricFamily.Factory<QmqMeter>() {
+        @Override
+        public QmqMeter create(String name, String[] tags, String[] values) {
+            return meter(name, tags, values);
+        }
+    };
+
+    private static final MetricFamily.Factory<QmqTimer> TIMER_FACTORY = new MetricFamily.Factory<QmqTimer>() {
+        @Override
+        public QmqTimer create(String name, String[] tags, String[] values) {
+            return timer(name, tags, values);
+        }
+    };
+
     static {
         ServiceLoader<QmqMetricRegistry> registries = ServiceLoader.load(QmqMetricRegistry.class);
         QmqMetricRegistry instance = null;
@@ -71,6 +92,18 @@ public class Metrics {
         return INSTANCE.newTimer(name, EMPTY, EMPTY);
     }
 
+    public static MetricFamily<QmqCounter> counterFamily(String name, String[] tags) {
+        return new MetricFamily<>(name, tags, COUNTER_FACTORY);
+    }
+
+    public static MetricFamily<QmqMeter> meterFamily(String name, String[] tags) {
+        return new MetricFamily<>(name, tags, METER_FACTORY);
+    }
+
+    public static MetricFamily<QmqTimer> timerFamily(String name, String[] tags) {
+        return new MetricFamily<>(name, tags, TIMER_FACTORY);
+    }
+
     public static void remove(String name, String[] tags, String[] values) {
         INSTANCE.remove(name, tags, values);
     }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 消息body压缩，只有生产者压缩、消费者解压，broker原样存储和投递
+ * <p>
+ * 压缩后的body格式: codec(byte) + 原始长度(int) + 压缩数据
+ */
+public class CompressionUtils {
+    public static final byte CODEC_DEFLATE = 1;
+
+    private static final int HEADER_SIZE = 1 + 4;
+
+    public static byte[] compress(final byte[] raw) {
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(HEADER_SIZE + raw.length / 2);
+            out.write(CODEC_DEFLATE);
+            out.write(raw.length >>> 24);
+            out.write(raw.length >>> 16);
+            out.write(raw.length >>> 8);
+            out.write(raw.length);
+            final byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                final int n = deflater.deflate(chunk);
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static byte[] decompress(final byte[] data) {
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        final byte codec = buffer.get();
+        if (codec != CODEC_DEFLATE) {
+            throw new IllegalArgumentException("unknown compression codec: " + codec);
+        }
+
+        final int rawLength = buffer.getInt();
+        final byte[] raw = new byte[rawLength];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, HEADER_SIZE, data.length - HEADER_SIZE);
+            int offset = 0;
+            while (offset < rawLength) {
+                final int n = inflater.inflate(raw, offset, rawLength - offset);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                offset += n;
+            }
+            if (offset != rawLength) {
+                throw new IllegalArgumentException("message body corrupt, expect " + rawLength + " bytes but got " + offset);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("message body corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
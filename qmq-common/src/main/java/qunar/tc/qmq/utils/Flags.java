@@ -33,6 +33,10 @@ public class Flags {
         return hasTag ? (byte) (flag | 4) : flag;
     }
 
+    public static byte setCompressed(byte flag, boolean compressed) {
+        return compressed ? (byte) (flag | 8) : flag;
+    }
+
     public static boolean isDelay(byte flag) {
         return (flag & 2) == 2;
     }
@@ -44,4 +48,8 @@ public class Flags {
     public static boolean hasTags(byte flag) {
         return (flag & 4) == 4;
     }
+
+    public static boolean isCompressed(byte flag) {
+        return (flag & 8) == 8;
+    }
 }
@@ -55,7 +55,7 @@ public class DefaultDelayLogFacade implements DelayLogFacade {
         this.scheduleLog = new ScheduleLog(config);
         this.dispatchLog = new DispatchLog(config);
         this.offsetManager = new IterateOffsetManager(config.getCheckpointStorePath(), scheduleLog::flush);
-        this.replayer = new MessageLogReplayer(this, func);
+        this.replayer = new MessageLogReplayer(this, func, config.getInMemoryScheduleThresholdMillis());
         this.logFlusher = new LogFlusher(messageLog, offsetManager, dispatchLog);
         this.cleaner = new LogCleaner(config, dispatchLog, scheduleLog, messageLog);
     }
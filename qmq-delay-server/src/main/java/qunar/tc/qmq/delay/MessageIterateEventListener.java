@@ -21,8 +21,10 @@ import org.slf4j.LoggerFactory;
 import qunar.tc.qmq.delay.base.AppendException;
 import qunar.tc.qmq.delay.store.model.AppendLogResult;
 import qunar.tc.qmq.delay.store.model.LogRecord;
+import qunar.tc.qmq.delay.store.model.MessageLogRecord;
 import qunar.tc.qmq.protocol.producer.MessageProducerCode;
 
+import java.nio.ByteBuffer;
 import java.util.function.Function;
 
 /**
@@ -34,14 +36,18 @@ public class MessageIterateEventListener implements EventListener<LogRecord> {
 
     private final DelayLogFacade facade;
     private final Function<ScheduleIndex, Boolean> iterateCallback;
+    private final long inMemoryScheduleThreshold;
 
-    MessageIterateEventListener(final DelayLogFacade facade, Function<ScheduleIndex, Boolean> iterateCallback) {
+    MessageIterateEventListener(final DelayLogFacade facade, Function<ScheduleIndex, Boolean> iterateCallback, long inMemoryScheduleThreshold) {
         this.facade = facade;
         this.iterateCallback = iterateCallback;
+        this.inMemoryScheduleThreshold = inMemoryScheduleThreshold;
     }
 
     @Override
     public void post(LogRecord event) {
+        // schedule log append会消费掉record的position，需要提前duplicate
+        ByteBuffer payload = isNearTerm(event) ? event.getRecord().duplicate() : null;
         AppendLogResult<ScheduleIndex> result = facade.appendScheduleLog(event);
         int code = result.getCode();
         if (MessageProducerCode.SUCCESS != code) {
@@ -49,6 +55,15 @@ public class MessageIterateEventListener implements EventListener<LogRecord> {
             throw new AppendException("appendScheduleLogError");
         }
 
-        iterateCallback.apply(result.getAdditional());
+        ScheduleIndex index = result.getAdditional();
+        if (payload != null) {
+            index = new PayloadScheduleIndex(index, event.getMessageId(), payload);
+        }
+        iterateCallback.apply(index);
+    }
+
+    private boolean isNearTerm(LogRecord event) {
+        if (inMemoryScheduleThreshold <= 0 || !(event instanceof MessageLogRecord)) return false;
+        return event.getScheduleTime() - System.currentTimeMillis() <= inMemoryScheduleThreshold;
     }
 }
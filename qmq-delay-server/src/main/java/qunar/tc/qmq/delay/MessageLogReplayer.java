@@ -46,9 +46,9 @@ public class MessageLogReplayer implements Switchable {
     private final EventListener<LogRecord> dispatcher;
     private volatile boolean stop = true;
 
-    MessageLogReplayer(final DelayLogFacade facade, final Function<ScheduleIndex, Boolean> func) {
+    MessageLogReplayer(final DelayLogFacade facade, final Function<ScheduleIndex, Boolean> func, final long inMemoryScheduleThreshold) {
         this.facade = facade;
-        this.dispatcher = new MessageIterateEventListener(facade, func);
+        this.dispatcher = new MessageIterateEventListener(facade, func, inMemoryScheduleThreshold);
         this.iterateFrom = new LongAdder();
         this.iterateFrom.add(facade.initialMessageIterateFrom());
         this.dispatcherThread = new Thread(new Dispatcher(iterateFrom.longValue()));
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.delay;
+
+import qunar.tc.qmq.delay.store.model.ScheduleSetRecord;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 近期到期的消息在replay时直接带上message log中的payload入轮，发送时不必再从schedule log回读
+ */
+public class PayloadScheduleIndex extends ScheduleIndex {
+
+    private final String messageId;
+    private final ByteBuffer payload;
+
+    public PayloadScheduleIndex(ScheduleIndex index, String messageId, ByteBuffer payload) {
+        super(index.getSubject(), index.getScheduleTime(), index.getOffset(), index.getSize(), index.getSequence());
+        this.messageId = messageId;
+        this.payload = payload;
+    }
+
+    /**
+     * 每次发送(包括重试)都需要一个独立的position，所以这里总是duplicate
+     */
+    public ScheduleSetRecord toRecord() {
+        return new ScheduleSetRecord(messageId, getSubject(), getScheduleTime(), getOffset(), getSize(), getSequence(), payload.duplicate());
+    }
+}
@@ -40,6 +40,7 @@ public class DefaultStoreConfiguration implements StoreConfiguration {
     private static final String LOAD_IN_ADVANCE_MIN = "load.in.advance.min";
     private static final String LOAD_BLOCKING_EXIT_SEC = "load.blocking.exit.sec";
     private static final String SEGMENT_SCALE_MIN = "segment.scale.minute";
+    private static final String IN_MEMORY_SCHEDULE_THRESHOLD_SEC = "in.memory.schedule.threshold.sec";
 
     private static final long MS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
     private static final long MS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
@@ -52,6 +53,7 @@ public class DefaultStoreConfiguration implements StoreConfiguration {
     private static final int DISPATCH_LOG_KEEP_TIMES_IN_HOUR = 3 * 24;
     private static final int SCHEDULE_CLEAN_BEFORE_DISPATCH_TIMES_IN_HOUR = 24;
     private static final int DEFAULT_SEGMENT_SCALE_IN_MIN = 60;
+    private static final int DEFAULT_IN_MEMORY_SCHEDULE_THRESHOLD_IN_SEC = 60;
 
     private volatile int segmentScale;
     private volatile long inAdvanceLoadMillis;
@@ -160,11 +162,26 @@ public class DefaultStoreConfiguration implements StoreConfiguration {
         return config.getBoolean(BrokerConstants.ENABLE_DELETE_EXPIRED_LOGS, false);
     }
 
+    @Override
+    public boolean isSegmentPreallocateEnable() {
+        return config.getBoolean(BrokerConstants.SEGMENT_PREALLOCATE_ENABLE, true);
+    }
+
+    @Override
+    public boolean isSegmentWarmupEnable() {
+        return config.getBoolean(BrokerConstants.SEGMENT_WARMUP_ENABLE, false);
+    }
+
     @Override
     public int getSegmentScale() {
         return segmentScale;
     }
 
+    @Override
+    public long getInMemoryScheduleThresholdMillis() {
+        return config.getInt(IN_MEMORY_SCHEDULE_THRESHOLD_SEC, DEFAULT_IN_MEMORY_SCHEDULE_THRESHOLD_IN_SEC) * MS_PER_SECONDS;
+    }
+
     @Override
     public int getLoadSegmentDelayMinutes() {
         return config.getInt(LOAD_SEGMENT_DELAY_MIN, SEGMENT_LOAD_DELAY_TIMES_IN_MIN);
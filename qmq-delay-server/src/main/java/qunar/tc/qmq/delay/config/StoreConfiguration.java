@@ -56,4 +56,10 @@ public interface StoreConfiguration {
     boolean isDeleteExpiredLogsEnable();
 
     int getSegmentScale();
+
+    long getInMemoryScheduleThresholdMillis();
+
+    boolean isSegmentPreallocateEnable();
+
+    boolean isSegmentWarmupEnable();
 }
@@ -16,6 +16,7 @@
 
 package qunar.tc.qmq.delay.monitor;
 
+import com.google.common.base.Supplier;
 import qunar.tc.qmq.metrics.Metrics;
 
 import java.util.concurrent.TimeUnit;
@@ -33,6 +34,7 @@ public class QMon {
     private static final String[] BROKER_ARRAY = new String[]{"broker"};
     private static final String[] LOGTYPE_ARRAY = new String[]{"logType"};
     private static final String[] BROKER_GROUP_SUBJECT_ARRAY = new String[]{"group", "subject"};
+    private static final String[] BROKER_GROUP_ARRAY = new String[]{"group"};
 
     public static void scheduleDispatch() {
         Metrics.counter("scheduleDispatch", EMPTY, EMPTY).inc();
@@ -123,4 +125,23 @@ public class QMon {
     public static void processTime(String subject, long time) {
         Metrics.timer("processTime", SUBJECT_ARRAY, new String[] {subject}).update(time, TimeUnit.MILLISECONDS);
     }
+
+    public static void senderGroupPendingGauge(String group, Supplier<Double> supplier) {
+        Metrics.gauge("delaySenderGroupPending", BROKER_GROUP_ARRAY, new String[]{group}, supplier);
+    }
+
+    public static void senderGroupDispatchRateGauge(String group, Supplier<Double> supplier) {
+        Metrics.gauge("delaySenderGroupDispatchRate", BROKER_GROUP_ARRAY, new String[]{group}, supplier);
+    }
+
+    public static void senderGroupDispatchLagGauge(String group, Supplier<Double> supplier) {
+        Metrics.gauge("delaySenderGroupDispatchLag", BROKER_GROUP_ARRAY, new String[]{group}, supplier);
+    }
+
+    public static void removeSenderGroupGauges(String group) {
+        final String[] values = {group};
+        Metrics.remove("delaySenderGroupPending", BROKER_GROUP_ARRAY, values);
+        Metrics.remove("delaySenderGroupDispatchRate", BROKER_GROUP_ARRAY, values);
+        Metrics.remove("delaySenderGroupDispatchLag", BROKER_GROUP_ARRAY, values);
+    }
 }
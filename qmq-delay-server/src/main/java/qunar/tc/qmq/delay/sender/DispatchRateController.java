@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.delay.sender;
+
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.configuration.DynamicConfig;
+
+/**
+ * 按broker group控制投递速率(AIMD)：
+ * 从最小速率起步，发送成功且延迟正常时线性加速，遇到busy/read only/超时或延迟过高时乘性减速，
+ * 避免同一时刻大量到期的延迟消息把实时broker打垮
+ */
+class DispatchRateController {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchRateController.class);
+
+    private final String groupName;
+    private final Settings settings;
+    private final RateLimiter limiter;
+
+    // 已经按哪个版本的配置调整过速率
+    private volatile int settingsVersion;
+    private volatile double rate;
+
+    DispatchRateController(final String groupName, final Settings settings) {
+        this.groupName = groupName;
+        this.settings = settings;
+        this.settingsVersion = settings.version;
+        this.rate = settings.minRate;
+        this.limiter = RateLimiter.create(rate);
+    }
+
+    void acquire(int messages) {
+        if (settingsVersion != settings.version) {
+            clamp();
+        }
+        if (!settings.enable || messages <= 0) return;
+        limiter.acquire(messages);
+    }
+
+    void onSuccess(long elapsedMillis) {
+        if (elapsedMillis > settings.slowThreshold) {
+            decrease();
+        } else {
+            increase();
+        }
+    }
+
+    void onCongestion() {
+        decrease();
+    }
+
+    double getRate() {
+        return rate;
+    }
+
+    // 配置变化后把当前速率收回到新的[min, max]区间
+    private synchronized void clamp() {
+        settingsVersion = settings.version;
+        final double next = Math.min(settings.maxRate, Math.max(settings.minRate, rate));
+        if (next == rate) return;
+        LOGGER.info("delay sender group {} dispatch rate reload {} -> {}", groupName, rate, next);
+        rate = next;
+        limiter.setRate(rate);
+    }
+
+    private synchronized void increase() {
+        final double maxRate = settings.maxRate;
+        if (rate >= maxRate) return;
+        rate = Math.min(maxRate, rate + settings.step);
+        limiter.setRate(rate);
+    }
+
+    private synchronized void decrease() {
+        final double next = Math.max(settings.minRate, rate * settings.decreaseFactor);
+        if (next == rate) return;
+        LOGGER.info("delay sender group {} dispatch rate decrease {} -> {}", groupName, rate, next);
+        rate = next;
+        limiter.setRate(rate);
+    }
+
+    /**
+     * 所有broker group共用的速率配置，只注册一次配置监听
+     */
+    static class Settings {
+        private static final double DEFAULT_MIN_RATE = 100;
+        private static final double DEFAULT_MAX_RATE = 20000;
+        private static final double DEFAULT_RATE_STEP = 200;
+        private static final double DEFAULT_DECREASE_FACTOR = 0.5;
+        private static final long DEFAULT_SLOW_THRESHOLD_MS = 500;
+
+        private volatile boolean enable;
+        private volatile double minRate;
+        private volatile double maxRate;
+        private volatile double step;
+        private volatile double decreaseFactor;
+        private volatile long slowThreshold;
+        private volatile int version;
+
+        Settings(final DynamicConfig config) {
+            reload(config);
+            config.addListener(this::reload);
+        }
+
+        private void reload(DynamicConfig config) {
+            this.enable = config.getBoolean("delay.send.rate.control.enable", true);
+            final double min = config.getDouble("delay.send.rate.min", DEFAULT_MIN_RATE);
+            this.maxRate = Math.max(min, config.getDouble("delay.send.rate.max", DEFAULT_MAX_RATE));
+            this.minRate = min;
+            this.step = config.getDouble("delay.send.rate.step", DEFAULT_RATE_STEP);
+            this.decreaseFactor = config.getDouble("delay.send.rate.decrease.factor", DEFAULT_DECREASE_FACTOR);
+            this.slowThreshold = config.getLong("delay.send.slow.threshold.ms", DEFAULT_SLOW_THRESHOLD_MS);
+            this.version++;
+        }
+    }
+}
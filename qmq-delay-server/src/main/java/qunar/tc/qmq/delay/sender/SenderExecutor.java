@@ -46,10 +46,12 @@ class SenderExecutor implements Disposable {
     private final Sender sender;
     private final DelayLogFacade store;
     private final int sendThreads;
+    private final DispatchRateController.Settings rateSettings;
 
     SenderExecutor(final Sender sender, DelayLogFacade store, DynamicConfig sendConfig) {
         this.sender = sender;
         this.store = store;
+        this.rateSettings = new DispatchRateController.Settings(sendConfig);
         this.brokerLoadBalance = PollBrokerLoadBalance.getInstance();
         this.sendThreads = sendConfig.getInt("delay.send.threads", DEFAULT_SEND_THREAD);
     }
@@ -88,9 +90,8 @@ class SenderExecutor implements Disposable {
         String groupName = groupInfo.getGroupName();
         SenderGroup senderGroup = groupSenders.get(groupName);
         if (null == senderGroup) {
-            senderGroup = new SenderGroup(groupInfo, sendThreads, store);
-            SenderGroup currentSenderGroup = groupSenders.putIfAbsent(groupName, senderGroup);
-            senderGroup = null != currentSenderGroup ? currentSenderGroup : senderGroup;
+            // sender group registers per group gauges, so it must be created only once
+            senderGroup = groupSenders.computeIfAbsent(groupName, key -> new SenderGroup(groupInfo, sendThreads, store, rateSettings));
         } else {
             senderGroup.reconfigureGroup(groupInfo);
         }
@@ -39,6 +39,7 @@ import java.util.*;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static qunar.tc.qmq.delay.monitor.QMon.delayBrokerSendMsgCount;
@@ -55,16 +56,26 @@ public class SenderGroup implements Disposable {
     private final DelayLogFacade store;
     private final ThreadPoolExecutor executorService;
     private final RateLimiter LOG_LIMITER = RateLimiter.create(2);
+    private final DispatchRateController rateController;
+    private final AtomicInteger pendingMessages = new AtomicInteger(0);
+    private volatile long dispatchLag;
 
-    SenderGroup(final BrokerGroupInfo groupInfo, int sendThreads, DelayLogFacade store) {
+    SenderGroup(final BrokerGroupInfo groupInfo, int sendThreads, DelayLogFacade store, DispatchRateController.Settings rateSettings) {
         this.groupInfo = new AtomicReference<>(groupInfo);
         this.store = store;
         this.executorService = new ThreadPoolExecutor(1, sendThreads, 1L, TimeUnit.MINUTES,
                 new LinkedBlockingQueue<>(), new ThreadFactoryBuilder()
                 .setNameFormat("delay-sender-" + groupInfo.getGroupName() + "-%d").build());
+        this.rateController = new DispatchRateController(groupInfo.getGroupName(), rateSettings);
+
+        String groupName = groupInfo.getGroupName();
+        QMon.senderGroupPendingGauge(groupName, () -> (double) pendingMessages.get());
+        QMon.senderGroupDispatchRateGauge(groupName, rateController::getRate);
+        QMon.senderGroupDispatchLagGauge(groupName, () -> (double) dispatchLag);
     }
 
     public void send(final List<ScheduleIndex> records, final Sender sender, final ResultHandler handler) {
+        pendingMessages.addAndGet(records.size());
         executorService.execute(() -> doSend(records, sender, handler));
     }
 
@@ -74,7 +85,12 @@ public class SenderGroup implements Disposable {
         List<List<ScheduleIndex>> partitions = Lists.partition(batch, MAX_SEND_BATCH_SIZE);
 
         for (List<ScheduleIndex> partition : partitions) {
-            send(sender, handler, groupInfo, groupName, partition);
+            rateController.acquire(partition.size());
+            try {
+                send(sender, handler, groupInfo, groupName, partition);
+            } finally {
+                pendingMessages.addAndGet(-partition.size());
+            }
         }
     }
 
@@ -84,10 +100,13 @@ public class SenderGroup implements Disposable {
             List<ScheduleSetRecord> records = store.recoverLogRecord(list);
             QMon.loadMsgTime(System.currentTimeMillis() - start);
 
+            long sendStart = System.currentTimeMillis();
             Datagram response = sendMessages(records, sender);
+            long elapsed = System.currentTimeMillis() - sendStart;
             release(records);
             monitor(list, groupName);
             if (response == null) {
+                rateController.onCongestion();
                 handler.fail(list);
             } else {
                 final int responseCode = response.getHeader().getCode();
@@ -97,6 +116,7 @@ public class SenderGroup implements Disposable {
                     if (responseCode == CommandCode.BROKER_REJECT || responseCode == CommandCode.BROKER_ERROR) {
                         groupInfo.markFailed();
                     }
+                    rateController.onCongestion();
 
                     monitorSendFail(list, groupInfo.getGroupName());
 
@@ -106,17 +126,26 @@ public class SenderGroup implements Disposable {
 
                 Set<String> failedMessageIds = new HashSet<>();
                 boolean brokerRefreshed = false;
+                boolean brokerBusy = false;
                 for (Map.Entry<String, SendResult> entry : resultMap.entrySet()) {
                     int resultCode = entry.getValue().getCode();
                     if (resultCode != MessageProducerCode.SUCCESS) {
                         failedMessageIds.add(entry.getKey());
                     }
+                    if (resultCode == MessageProducerCode.BROKER_BUSY || resultCode == MessageProducerCode.BROKER_READ_ONLY) {
+                        brokerBusy = true;
+                    }
                     if (!brokerRefreshed && resultCode == MessageProducerCode.BROKER_READ_ONLY) {
                         groupInfo.markFailed();
                         brokerRefreshed = true;
                     }
                 }
                 if (!brokerRefreshed) groupInfo.markSuccess();
+                if (brokerBusy) {
+                    rateController.onCongestion();
+                } else {
+                    rateController.onSuccess(elapsed);
+                }
 
                 handler.success(records, failedMessageIds);
             }
@@ -133,12 +162,15 @@ public class SenderGroup implements Disposable {
     }
 
     private void monitor(final List<ScheduleIndex> indexList, final String groupName) {
+        long maxDelay = 0;
         for (ScheduleIndex index : indexList) {
             String subject = index.getSubject();
             long delay = System.currentTimeMillis() - index.getScheduleTime();
+            maxDelay = Math.max(maxDelay, delay);
             delayBrokerSendMsgCount(groupName, subject);
             delayTime(groupName, subject, delay);
         }
+        dispatchLag = maxDelay;
         Metrics.meter("delaySendMessagesQps", new String[]{"group"}, new String[]{groupName}).mark(indexList.size());
     }
 
@@ -209,6 +241,7 @@ public class SenderGroup implements Disposable {
 
     @Override
     public void destroy() {
+        QMon.removeSenderGroupGauges(groupInfo.get().getGroupName());
         executorService.shutdown();
         try {
             executorService.awaitTermination(5, TimeUnit.SECONDS);
@@ -19,7 +19,7 @@ package qunar.tc.qmq.delay.sender;
 import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import qunar.tc.qmq.batch.BatchExecutor;
+import qunar.tc.qmq.batch.LingerBatchExecutor;
 import qunar.tc.qmq.batch.Processor;
 import qunar.tc.qmq.broker.BrokerService;
 import qunar.tc.qmq.common.ClientType;
@@ -45,13 +45,14 @@ public class SenderProcessor implements DelayProcessor, Processor<ScheduleIndex>
     private static final int DEFAULT_SEND_THREAD = 4;
     private static final int MAX_QUEUE_SIZE = 10000;
     private static final int BATCH_SIZE = 30;
+    private static final long DEFAULT_BATCH_LINGER_MICROS = 1000;
 
     private final DynamicConfig config;
     private final SenderExecutor senderExecutor;
     private final BrokerService brokerService;
     private final DelayLogFacade facade;
 
-    private BatchExecutor<ScheduleIndex> batchExecutor;
+    private LingerBatchExecutor<ScheduleIndex> batchExecutor;
 
     private long sendWaitTime = DEFAULT_SEND_WAIT_TIME;
 
@@ -64,10 +65,11 @@ public class SenderProcessor implements DelayProcessor, Processor<ScheduleIndex>
 
     @Override
     public void init() {
-        this.batchExecutor = new BatchExecutor<>("delay-sender", BATCH_SIZE, this, DEFAULT_SEND_THREAD);
+        this.batchExecutor = new LingerBatchExecutor<>("delay-sender", config.getInt("delay.send.batch.size", BATCH_SIZE), this);
         this.batchExecutor.setQueueSize(MAX_QUEUE_SIZE);
+        this.batchExecutor.setThreads(config.getInt("delay.send.batch.thread.size", DEFAULT_SEND_THREAD));
         config.addListener(conf -> {
-            this.batchExecutor.setThreads(conf.getInt("delay.send.batch.thread.size", DEFAULT_SEND_THREAD));
+            this.batchExecutor.setLingerMicros(conf.getLong("delay.send.batch.linger.micros", DEFAULT_BATCH_LINGER_MICROS));
             this.sendWaitTime = conf.getLong("delay.send.wait.time", DEFAULT_SEND_WAIT_TIME);
         });
         this.batchExecutor.init();
@@ -75,23 +77,18 @@ public class SenderProcessor implements DelayProcessor, Processor<ScheduleIndex>
 
     @Override
     public void send(ScheduleIndex index) {
-        if (!BrokerRoleManager.isDelayMaster()) {
-            return;
-        }
-
-        boolean add;
-        try {
-            long waitTime = Math.abs(sendWaitTime);
-            if (waitTime > 0) {
-                add = batchExecutor.addItem(index, waitTime, TimeUnit.MILLISECONDS);
-            } else {
-                add = batchExecutor.addItem(index);
+        // queue full: keep offering instead of recursing, so a burst can not overflow the stack
+        while (BrokerRoleManager.isDelayMaster()) {
+            try {
+                long waitTime = Math.abs(sendWaitTime);
+                if (waitTime > 0) {
+                    if (batchExecutor.addItem(index, waitTime, TimeUnit.MILLISECONDS)) return;
+                } else {
+                    if (batchExecutor.addItem(index)) return;
+                }
+            } catch (InterruptedException e) {
+                return;
             }
-        } catch (InterruptedException e) {
-            return;
-        }
-        if (!add) {
-            reject(index);
         }
     }
 
@@ -105,10 +102,6 @@ public class SenderProcessor implements DelayProcessor, Processor<ScheduleIndex>
         }
     }
 
-    private void reject(ScheduleIndex index) {
-        send(index);
-    }
-
     private void success(ScheduleSetRecord record) {
         facade.appendDispatchLog(new DispatchLogRecord(record.getSubject(), record.getMessageId(), record.getScheduleTime(), record.getSequence()));
     }
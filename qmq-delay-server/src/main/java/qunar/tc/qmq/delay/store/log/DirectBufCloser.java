@@ -32,8 +32,11 @@ public class DirectBufCloser {
         }
 
         try {
+            // slice/duplicate of a mapped buffer has no cleaner
             final Cleaner cleaner = ((DirectBuffer) buffer).cleaner();
-            cleaner.clean();
+            if (cleaner != null) {
+                cleaner.clean();
+            }
         } catch (Exception ignore) {
 
         }
@@ -31,7 +31,6 @@ import qunar.tc.qmq.store.buffer.SegmentBuffer;
 import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -58,7 +57,8 @@ public class MessageSegmentContainer implements SegmentContainer<AppendMessageRe
         this.messageAppender = new MessageSegmentContainer.DelayRawMessageAppender();
         this.logManager = new LogManager(new File(config.getMessageLogStorePath())
                 , config.getMessageLogSegmentFileSize()
-                , new MessageLogSegmentValidator());
+                , new MessageLogSegmentValidator()
+                , config.isSegmentPreallocateEnable() ? new SegmentPreallocator(config.isSegmentWarmupEnable()) : null);
         recoverSequence();
     }
 
@@ -286,14 +286,11 @@ public class MessageSegmentContainer implements SegmentContainer<AppendMessageRe
 
     private class DelayRawMessageAppender implements MessageAppender<RawMessageExtend, Long> {
         private final ReentrantLock lock = new ReentrantLock();
-        private final ByteBuffer workingBuffer = ByteBuffer.allocate(1024);
 
         @Override
         public AppendMessageResult<Long> doAppend(long baseOffset, ByteBuffer targetBuffer, int freeSpace, RawMessageExtend message) {
             lock.lock();
             try {
-                workingBuffer.clear();
-
                 final String messageId = message.getHeader().getMessageId();
                 final byte[] messageIdBytes = messageId.getBytes(StandardCharsets.UTF_8);
                 final String subject = message.getHeader().getSubject();
@@ -306,32 +303,28 @@ public class MessageSegmentContainer implements SegmentContainer<AppendMessageRe
                     return new AppendMessageResult<>(AppendMessageStatus.MESSAGE_SIZE_EXCEEDED, startWroteOffset, freeSpace, null);
                 }
                 if (recordSize != freeSpace && recordSize + MIN_RECORD_BYTES > freeSpace) {
-                    workingBuffer.limit(MIN_RECORD_BYTES);
-                    workingBuffer.putInt(MESSAGE_LOG_MAGIC_V1);
-                    workingBuffer.put(MessageLogAttrEnum.ATTR_EMPTY_RECORD.getCode());
-                    workingBuffer.putLong(System.currentTimeMillis());
-                    targetBuffer.put(workingBuffer.array(), 0, MIN_RECORD_BYTES);
+                    targetBuffer.putInt(MESSAGE_LOG_MAGIC_V1);
+                    targetBuffer.put(MessageLogAttrEnum.ATTR_EMPTY_RECORD.getCode());
+                    targetBuffer.putLong(System.currentTimeMillis());
                     int fillZeroLen = freeSpace - MIN_RECORD_BYTES;
                     if (fillZeroLen > 0) {
-                        targetBuffer.put(fillZero(fillZeroLen));
+                        AppendUtils.fillZero(targetBuffer, fillZeroLen);
                     }
                     return new AppendMessageResult<>(AppendMessageStatus.END_OF_FILE, startWroteOffset, freeSpace, null);
                 } else {
                     int headerSize = recordSize - message.getBodySize();
-                    workingBuffer.limit(headerSize);
-                    workingBuffer.putInt(MESSAGE_LOG_MAGIC_V2);
-                    workingBuffer.put(MessageLogAttrEnum.ATTR_MESSAGE_RECORD.getCode());
-                    workingBuffer.putLong(System.currentTimeMillis());
-                    workingBuffer.putLong(message.getScheduleTime());
-                    workingBuffer.putLong(sequence.incrementAndGet());
-                    workingBuffer.putInt(messageIdBytes.length);
-                    workingBuffer.put(messageIdBytes);
-                    workingBuffer.putInt(subjectBytes.length);
-                    workingBuffer.put(subjectBytes);
-                    workingBuffer.putLong(message.getHeader().getBodyCrc());
-                    workingBuffer.putInt(message.getBodySize());
-                    targetBuffer.put(workingBuffer.array(), 0, headerSize);
-                    targetBuffer.put(message.getBody().nioBuffer());
+                    targetBuffer.putInt(MESSAGE_LOG_MAGIC_V2);
+                    targetBuffer.put(MessageLogAttrEnum.ATTR_MESSAGE_RECORD.getCode());
+                    targetBuffer.putLong(System.currentTimeMillis());
+                    targetBuffer.putLong(message.getScheduleTime());
+                    targetBuffer.putLong(sequence.incrementAndGet());
+                    targetBuffer.putInt(messageIdBytes.length);
+                    targetBuffer.put(messageIdBytes);
+                    targetBuffer.putInt(subjectBytes.length);
+                    targetBuffer.put(subjectBytes);
+                    targetBuffer.putLong(message.getHeader().getBodyCrc());
+                    targetBuffer.putInt(message.getBodySize());
+                    AppendUtils.writeBody(message.getBody(), targetBuffer);
 
                     final long payloadOffset = startWroteOffset + headerSize;
                     return new AppendMessageResult<>(AppendMessageStatus.SUCCESS, startWroteOffset, recordSize, payloadOffset);
@@ -340,12 +333,6 @@ public class MessageSegmentContainer implements SegmentContainer<AppendMessageRe
                 lock.unlock();
             }
         }
-
-        private byte[] fillZero(int len) {
-            byte[] zero = new byte[len];
-            Arrays.fill(zero, (byte) 0);
-            return zero;
-        }
     }
 
     private static class MessageLogSegmentValidator implements LogSegmentValidator {
@@ -20,6 +20,7 @@ import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import qunar.tc.qmq.common.Disposable;
+import qunar.tc.qmq.delay.PayloadScheduleIndex;
 import qunar.tc.qmq.delay.ScheduleIndex;
 import qunar.tc.qmq.delay.base.LongHashSet;
 import qunar.tc.qmq.delay.config.StoreConfiguration;
@@ -107,6 +108,11 @@ public class ScheduleLog implements Log<ScheduleIndex, LogRecord>, Disposable {
     public List<ScheduleSetRecord> recoverLogRecord(List<ScheduleIndex> pureRecords) {
         List<ScheduleSetRecord> records = Lists.newArrayListWithCapacity(pureRecords.size());
         for (ScheduleIndex index : pureRecords) {
+            if (index instanceof PayloadScheduleIndex) {
+                records.add(((PayloadScheduleIndex) index).toRecord());
+                continue;
+            }
+
             ScheduleSetRecord logRecord = scheduleSet.recoverRecord(index);
             if (logRecord == null) {
                 LOGGER.error("schedule log recover null record");
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.gateway.netty;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GET /pull/{subject}?group=&batch=&timeout=
+ * POST /send/{subject}
+ */
+@ChannelHandler.Sharable
+class GatewayHttpHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+    private static final Logger LOG = LoggerFactory.getLogger(GatewayHttpHandler.class);
+
+    private static final String PULL_PATH = "/pull/";
+    private static final String SEND_PATH = "/send/";
+
+    private final PullRequestProcessor pullProcessor;
+    private final SendRequestProcessor sendProcessor;
+
+    GatewayHttpHandler(PullRequestProcessor pullProcessor, SendRequestProcessor sendProcessor) {
+        this.pullProcessor = pullProcessor;
+        this.sendProcessor = sendProcessor;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+        final boolean keepAlive = HttpHeaders.isKeepAlive(request);
+        if (!request.getDecoderResult().isSuccess()) {
+            HttpResponses.write(ctx, false, HttpResponseStatus.BAD_REQUEST, "text/plain", Unpooled.EMPTY_BUFFER);
+            return;
+        }
+
+        final QueryStringDecoder decoder = new QueryStringDecoder(request.getUri());
+        final String path = decoder.path();
+        if (path.startsWith(PULL_PATH) && request.getMethod() == HttpMethod.GET) {
+            pull(ctx, keepAlive, request, path.substring(PULL_PATH.length()), decoder.parameters());
+        } else if (path.startsWith(SEND_PATH) && request.getMethod() == HttpMethod.POST) {
+            final String subject = path.substring(SEND_PATH.length());
+            if (subject.isEmpty()) {
+                HttpResponses.writeJson(ctx, keepAlive, HttpResponseStatus.OK, "{\"status\":-1,\"error\":\"subject is required\"}");
+                return;
+            }
+            sendProcessor.process(ctx, keepAlive, subject, request.content());
+        } else {
+            HttpResponses.write(ctx, keepAlive, HttpResponseStatus.NOT_FOUND, "text/plain", Unpooled.EMPTY_BUFFER);
+        }
+    }
+
+    private void pull(ChannelHandlerContext ctx, boolean keepAlive, FullHttpRequest request, String subject, Map<String, List<String>> parameters) {
+        final String group = parameter(parameters, "group");
+        if (subject.isEmpty() || group == null || group.isEmpty()) {
+            HttpResponses.writeState(ctx, keepAlive, "-2", "data", "invalid parameter");
+            return;
+        }
+
+        final long timeout;
+        final int batch;
+        try {
+            timeout = Long.parseLong(parameter(parameters, "timeout"));
+            batch = Integer.parseInt(parameter(parameters, "batch"));
+        } catch (NumberFormatException e) {
+            HttpResponses.writeState(ctx, keepAlive, "-2", "data", "invalid parameter");
+            return;
+        }
+
+        final MessageEncoder encoder = MessageEncoder.select(request.headers().get(HttpHeaders.Names.ACCEPT));
+        pullProcessor.process(ctx, keepAlive, subject, group, batch, timeout, encoder);
+    }
+
+    private String parameter(Map<String, List<String>> parameters, String name) {
+        final List<String> values = parameters.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        LOG.error("gateway channel exception, remote: {}", ctx.channel().remoteAddress(), cause);
+        ctx.close();
+    }
+}
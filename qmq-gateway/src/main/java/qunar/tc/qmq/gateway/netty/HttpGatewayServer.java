@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.gateway.netty;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.MessageProducer;
+import qunar.tc.qmq.common.Disposable;
+import qunar.tc.qmq.concurrent.NamedThreadFactory;
+import qunar.tc.qmq.configuration.DynamicConfig;
+import qunar.tc.qmq.consumer.MessageConsumerProvider;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于netty http的网关，与servlet网关的接口兼容
+ */
+public class HttpGatewayServer implements Disposable {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpGatewayServer.class);
+
+    private final NioEventLoopGroup bossGroup;
+    private final NioEventLoopGroup workerGroup;
+    private final ThreadPoolExecutor encodeExecutor;
+    private final GatewayHttpHandler handler;
+
+    private final int port;
+    private final int maxContentLength;
+    private volatile Channel channel;
+
+    public HttpGatewayServer(DynamicConfig config, MessageConsumerProvider consumer, MessageProducer producer) {
+        this.port = config.getInt("gateway.port", 8080);
+        this.maxContentLength = config.getInt("gateway.http.max.content.length", 4 * 1024 * 1024);
+        this.bossGroup = new NioEventLoopGroup(1, new DefaultThreadFactory("gateway-netty-boss", true));
+        this.workerGroup = new NioEventLoopGroup(config.getInt("gateway.netty.worker.threads", Runtime.getRuntime().availableProcessors() * 2),
+                new DefaultThreadFactory("gateway-netty-worker", true));
+
+        final int encodeThreads = config.getInt("gateway.encode.threads", Runtime.getRuntime().availableProcessors());
+        // 队列满时由拉取回调线程自己编码，反压到拉取
+        this.encodeExecutor = new ThreadPoolExecutor(encodeThreads, encodeThreads, 1, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<Runnable>(config.getInt("gateway.encode.queue.size", 10000)),
+                new NamedThreadFactory("gateway-encode"), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        final PullRequestProcessor pullProcessor = new PullRequestProcessor(consumer, encodeExecutor, config.getInt("gateway.max.pending.pulls", 10000));
+        final SendRequestProcessor sendProcessor = new SendRequestProcessor(producer, config.getInt("gateway.send.max.batch.size", 1000));
+        this.handler = new GatewayHttpHandler(pullProcessor, sendProcessor);
+    }
+
+    public void start() {
+        final ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.option(ChannelOption.SO_REUSEADDR, true);
+        bootstrap.childOption(ChannelOption.TCP_NODELAY, true);
+        bootstrap.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+        bootstrap.group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast("codec", new HttpServerCodec());
+                        ch.pipeline().addLast("aggregator", new HttpObjectAggregator(maxContentLength));
+                        ch.pipeline().addLast("handler", handler);
+                    }
+                });
+        final ChannelFuture future = bootstrap.bind(port).awaitUninterruptibly();
+        if (!future.isSuccess()) {
+            LOG.error("gateway bind port {} failed", port, future.cause());
+            destroy();
+            throw new IllegalStateException("gateway bind port " + port + " failed", future.cause());
+        }
+        channel = future.channel();
+        LOG.info("gateway listen on port {}", port);
+    }
+
+    public void awaitTermination() throws InterruptedException {
+        if (channel != null) {
+            channel.closeFuture().await();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (channel != null && channel.isActive()) {
+            channel.close().awaitUninterruptibly();
+        }
+        bossGroup.shutdownGracefully();
+        workerGroup.shutdownGracefully();
+        encodeExecutor.shutdown();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.gateway.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
+final class HttpResponses {
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=UTF-8";
+
+    private HttpResponses() {
+    }
+
+    static void write(ChannelHandlerContext ctx, boolean keepAlive, HttpResponseStatus status, String contentType, ByteBuf content) {
+        final FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content);
+        response.headers().set(HttpHeaders.Names.CONTENT_TYPE, contentType);
+        HttpHeaders.setContentLength(response, content.readableBytes());
+        if (keepAlive) {
+            response.headers().set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
+        }
+
+        final ChannelFuture future = ctx.writeAndFlush(response);
+        if (!keepAlive) {
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    static void writeJson(ChannelHandlerContext ctx, boolean keepAlive, HttpResponseStatus status, String json) {
+        final ByteBuf content = ctx.alloc().buffer(json.length());
+        ByteBufUtil.writeUtf8(content, json);
+        write(ctx, keepAlive, status, JSON_CONTENT_TYPE, content);
+    }
+
+    static void writeState(ChannelHandlerContext ctx, boolean keepAlive, String state, String field, String message) {
+        writeJson(ctx, keepAlive, HttpResponseStatus.OK, "{\"state\":\"" + state + "\",\"" + field + "\":\"" + escape(message) + "\"}");
+    }
+
+    static String escape(String value) {
+        if (value == null) return "";
+        final StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); ++i) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
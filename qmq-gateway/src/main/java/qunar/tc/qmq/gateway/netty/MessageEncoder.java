@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.gateway.netty;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.base.BaseMessage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 把拉到的消息直接编码进(池化的)ByteBuf，不经过中间的Map和String
+ * <p>
+ * json: 与servlet网关兼容的 {"state":"0","data":[...]}，消息按servlet一样由jackson序列化
+ * ndjson: 每行一条消息，格式同json里的data元素
+ * binary: int消息数，每条消息依次为 messageId, subject, createdTime(long), times(int),
+ * tag数(byte)+tags, 属性数(int)+属性(key为short长度前缀，value为int长度前缀)，字符串均为UTF-8
+ */
+enum MessageEncoder {
+    JSON("application/json; charset=UTF-8") {
+        @Override
+        void encode(List<Message> messages, ByteBuf out) throws IOException {
+            try (JsonGenerator generator = createGenerator(out)) {
+                generator.writeStartObject();
+                generator.writeStringField("state", "0");
+                generator.writeArrayFieldStart("data");
+                for (Message message : messages) {
+                    writeJson(message, generator);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        }
+    },
+
+    NDJSON("application/x-ndjson; charset=UTF-8") {
+        @Override
+        void encode(List<Message> messages, ByteBuf out) throws IOException {
+            try (JsonGenerator generator = createGenerator(out)) {
+                for (Message message : messages) {
+                    writeJson(message, generator);
+                    generator.writeRaw('\n');
+                }
+            }
+        }
+    },
+
+    BINARY("application/octet-stream") {
+        @Override
+        void encode(List<Message> messages, ByteBuf out) {
+            out.writeInt(messages.size());
+            for (Message message : messages) {
+                writeShortString(out, message.getMessageId());
+                writeShortString(out, message.getSubject());
+                out.writeLong(message.getCreatedTime() == null ? 0 : message.getCreatedTime().getTime());
+                out.writeInt(message.times());
+
+                final Set<String> tags = message.getTags();
+                out.writeByte(tags.size());
+                for (String tag : tags) {
+                    writeShortString(out, tag);
+                }
+
+                // Message.getAttrs已废弃，拉到的消息都是BaseMessage
+                final Map<String, Object> attrs = ((BaseMessage) message).getAttrs();
+                out.writeInt(attrs.size());
+                for (Map.Entry<String, Object> entry : attrs.entrySet()) {
+                    writeShortString(out, entry.getKey());
+                    writeIntString(out, entry.getValue() == null ? "" : entry.getValue().toString());
+                }
+            }
+        }
+    };
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String contentType;
+
+    MessageEncoder(String contentType) {
+        this.contentType = contentType;
+    }
+
+    String contentType() {
+        return contentType;
+    }
+
+    abstract void encode(List<Message> messages, ByteBuf out) throws IOException;
+
+    static MessageEncoder select(String accept) {
+        if (accept == null) return JSON;
+        if (accept.contains("application/x-ndjson")) return NDJSON;
+        if (accept.contains("application/octet-stream")) return BINARY;
+        return JSON;
+    }
+
+    private static JsonGenerator createGenerator(ByteBuf out) throws IOException {
+        return MAPPER.getFactory().createGenerator((OutputStream) new ByteBufOutputStream(out), JsonEncoding.UTF8);
+    }
+
+    // 和servlet一样交给jackson按bean序列化，字段和类型与servlet网关一致，只是直接写进ByteBuf
+    private static void writeJson(Message message, JsonGenerator generator) throws IOException {
+        generator.writeObject(message);
+    }
+
+    private static void writeShortString(ByteBuf out, String value) {
+        final int lengthIndex = out.writerIndex();
+        out.writeShort(0);
+        final int length = ByteBufUtil.writeUtf8(out, value == null ? "" : value);
+        out.setShort(lengthIndex, length);
+    }
+
+    private static void writeIntString(ByteBuf out, String value) {
+        final int lengthIndex = out.writerIndex();
+        out.writeInt(0);
+        final int length = ByteBufUtil.writeUtf8(out, value);
+        out.setInt(lengthIndex, length);
+    }
+}
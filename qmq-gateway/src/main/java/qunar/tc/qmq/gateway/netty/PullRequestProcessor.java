@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.gateway.netty;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.PullConsumer;
+import qunar.tc.qmq.consumer.MessageConsumerProvider;
+import qunar.tc.qmq.metrics.MetricFamily;
+import qunar.tc.qmq.metrics.Metrics;
+import qunar.tc.qmq.metrics.MetricsConstants;
+import qunar.tc.qmq.metrics.QmqCounter;
+import qunar.tc.qmq.metrics.QmqMeter;
+import qunar.tc.qmq.metrics.QmqTimer;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 长轮询拉消息，拉取本身是异步的，不占用线程；等待中的请求数受 maxPendingPulls 限制，
+ * 编码在有界线程池中完成
+ */
+class PullRequestProcessor {
+    private static final Logger LOG = LoggerFactory.getLogger(PullRequestProcessor.class);
+
+    private static final int DEFAULT_NETWORK_TTL = 2000;
+
+    private static final MetricFamily<QmqMeter> PULL_MESSAGES = Metrics.meterFamily("pullMessages", MetricsConstants.SUBJECT_GROUP_ARRAY);
+    private static final MetricFamily<QmqCounter> PULL_ERROR = Metrics.counterFamily("pullError", MetricsConstants.SUBJECT_GROUP_ARRAY);
+    private static final MetricFamily<QmqTimer> PULL_TIME = Metrics.timerFamily("pullMessageTime", MetricsConstants.SUBJECT_GROUP_ARRAY);
+
+    private final MessageConsumerProvider consumer;
+    private final Executor encodeExecutor;
+    private final Semaphore pendingPulls;
+
+    PullRequestProcessor(MessageConsumerProvider consumer, Executor encodeExecutor, int maxPendingPulls) {
+        this.consumer = consumer;
+        this.encodeExecutor = encodeExecutor;
+        this.pendingPulls = new Semaphore(maxPendingPulls);
+    }
+
+    void process(final ChannelHandlerContext ctx, final boolean keepAlive, final String subject, final String group,
+                 final int batch, final long timeout, final MessageEncoder encoder) {
+        if (!pendingPulls.tryAcquire()) {
+            HttpResponses.writeState(ctx, keepAlive, "-4", "error", "too many pending pulls");
+            return;
+        }
+
+        final long start = System.currentTimeMillis();
+        final AtomicBoolean responded = new AtomicBoolean(false);
+        final ListenableFuture<List<Message>> future;
+        try {
+            final PullConsumer pullConsumer = consumer.getOrCreatePullConsumer(subject, group, false);
+            pullConsumer.setConsumeMostOnce(true);
+            future = (ListenableFuture<List<Message>>) pullConsumer.pullFuture(batch, timeout);
+        } catch (Exception e) {
+            pendingPulls.release();
+            LOG.error("pull message failed {}-{}", subject, group, e);
+            HttpResponses.writeState(ctx, keepAlive, "-1", "error", e.getMessage());
+            return;
+        }
+
+        final long ttl = timeout < 0 ? DEFAULT_NETWORK_TTL : timeout + DEFAULT_NETWORK_TTL;
+        final ScheduledFuture<?> timeoutTask = ctx.executor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (responded.compareAndSet(false, true)) {
+                    pendingPulls.release();
+                    HttpResponses.writeState(ctx, keepAlive, "-3", "data", "time out");
+                }
+            }
+        }, ttl, TimeUnit.MILLISECONDS);
+
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (!responded.compareAndSet(false, true)) return;
+                timeoutTask.cancel(false);
+                try {
+                    complete(ctx, keepAlive, subject, group, future, encoder);
+                } finally {
+                    pendingPulls.release();
+                    PULL_TIME.of(subject, group).update(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS);
+                }
+            }
+        }, encodeExecutor);
+    }
+
+    private void complete(ChannelHandlerContext ctx, boolean keepAlive, String subject, String group,
+                          ListenableFuture<List<Message>> future, MessageEncoder encoder) {
+        final List<Message> messages;
+        try {
+            messages = future.get();
+        } catch (Exception e) {
+            PULL_ERROR.of(subject, group).inc();
+            LOG.error("pull message failed {}-{}", subject, group, e);
+            HttpResponses.writeState(ctx, keepAlive, "-1", "error", e.getMessage());
+            return;
+        }
+
+        PULL_MESSAGES.of(subject, group).mark(messages.size());
+        if (messages.isEmpty()) {
+            HttpResponses.writeState(ctx, keepAlive, "-2", "error", "no message");
+            return;
+        }
+
+        final ByteBuf content = ctx.alloc().buffer();
+        try {
+            encoder.encode(messages, content);
+        } catch (Exception e) {
+            content.release();
+            LOG.error("write message out failed {}-{}", subject, group, e);
+            HttpResponses.writeState(ctx, keepAlive, "-1", "error", e.getMessage());
+            return;
+        }
+        HttpResponses.write(ctx, keepAlive, HttpResponseStatus.OK, encoder.contentType(), content);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.gateway.netty;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.Message;
+import qunar.tc.qmq.MessageProducer;
+import qunar.tc.qmq.MessageSendStateListener;
+import qunar.tc.qmq.gateway.util.MessageAttrs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 请求体可以是单个json对象、json数组或者ndjson，一个请求里的多条消息一起交给producer，
+ * 由producer的批量发送合并成批
+ */
+class SendRequestProcessor {
+    private static final Logger LOG = LoggerFactory.getLogger(SendRequestProcessor.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final MessageProducer producer;
+    private final int maxBatchSize;
+
+    SendRequestProcessor(MessageProducer producer, int maxBatchSize) {
+        this.producer = producer;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    void process(ChannelHandlerContext ctx, boolean keepAlive, String subject, ByteBuf body) {
+        final List<Map<String, Object>> requests;
+        final boolean batch;
+        try (JsonParser parser = MAPPER.getFactory().createParser((InputStream) new ByteBufInputStream(body))) {
+            JsonToken token = parser.nextToken();
+            batch = token == JsonToken.START_ARRAY;
+            requests = batch ? readArray(parser) : readValues(parser, token);
+        } catch (IOException e) {
+            error(ctx, keepAlive, "invalid request body: " + e.getMessage());
+            return;
+        }
+
+        if (requests.isEmpty()) {
+            error(ctx, keepAlive, "message is required");
+            return;
+        }
+        if (requests.size() > maxBatchSize) {
+            error(ctx, keepAlive, "too many messages in one request, max: " + maxBatchSize);
+            return;
+        }
+
+        final List<Message> messages = new ArrayList<>(requests.size());
+        for (Map<String, Object> data : requests) {
+            final Object appCode = data.get("appCode");
+            if (appCode == null || appCode.toString().length() == 0) {
+                error(ctx, keepAlive, "appCode is required");
+                return;
+            }
+
+            final Message message = producer.generateMessage(subject);
+            message.setProperty("client_app", appCode.toString());
+            MessageAttrs.append(data, message);
+            messages.add(message);
+        }
+
+        send(ctx, keepAlive, messages, batch || messages.size() > 1);
+    }
+
+    private List<Map<String, Object>> readArray(JsonParser parser) throws IOException {
+        final List<Map<String, Object>> result = new ArrayList<>();
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            result.add(readObject(parser));
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new IOException("expect json object in array");
+        }
+        return result;
+    }
+
+    // 单个对象或者ndjson(多个以换行分隔的对象)
+    private List<Map<String, Object>> readValues(JsonParser parser, JsonToken token) throws IOException {
+        final List<Map<String, Object>> result = new ArrayList<>(1);
+        while (token != null) {
+            if (token != JsonToken.START_OBJECT) {
+                throw new IOException("expect json object");
+            }
+            result.add(readObject(parser));
+            token = parser.nextToken();
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readObject(JsonParser parser) throws IOException {
+        return parser.readValueAs(Map.class);
+    }
+
+    private void send(final ChannelHandlerContext ctx, final boolean keepAlive, final List<Message> messages, final boolean batch) {
+        final AtomicInteger remain = new AtomicInteger(messages.size());
+        final AtomicReferenceArray<Boolean> results = new AtomicReferenceArray<>(messages.size());
+        for (int i = 0; i < messages.size(); ++i) {
+            final int index = i;
+            final Message message = messages.get(i);
+            try {
+                producer.sendMessage(message, new MessageSendStateListener() {
+                    @Override
+                    public void onSuccess(Message message) {
+                        done(index, true);
+                    }
+
+                    @Override
+                    public void onFailed(Message message) {
+                        done(index, false);
+                    }
+
+                    private void done(int index, boolean success) {
+                        results.set(index, success);
+                        if (remain.decrementAndGet() == 0) {
+                            writeResults(ctx, keepAlive, messages, results, batch);
+                        }
+                    }
+                });
+            } catch (Exception e) {
+                LOG.error("send message failed {} - {}", message.getSubject(), message.getMessageId(), e);
+                results.set(index, false);
+                if (remain.decrementAndGet() == 0) {
+                    writeResults(ctx, keepAlive, messages, results, batch);
+                }
+            }
+        }
+    }
+
+    private void writeResults(ChannelHandlerContext ctx, boolean keepAlive, List<Message> messages, AtomicReferenceArray<Boolean> results, boolean batch) {
+        final ByteBuf content = ctx.alloc().buffer();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator((OutputStream) new ByteBufOutputStream(content), JsonEncoding.UTF8)) {
+            if (batch) {
+                boolean allSuccess = true;
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("results");
+                for (int i = 0; i < messages.size(); ++i) {
+                    final boolean success = results.get(i);
+                    allSuccess &= success;
+                    writeResult(generator, messages.get(i), success);
+                }
+                generator.writeEndArray();
+                generator.writeNumberField("status", allSuccess ? 0 : -1);
+                generator.writeEndObject();
+            } else {
+                writeResult(generator, messages.get(0), results.get(0));
+            }
+        } catch (IOException e) {
+            content.release();
+            LOG.error("return message error", e);
+            error(ctx, keepAlive, e.getMessage());
+            return;
+        }
+        HttpResponses.write(ctx, keepAlive, HttpResponseStatus.OK, "application/json; charset=UTF-8", content);
+    }
+
+    // 与SendServlet的返回保持一致
+    private void writeResult(JsonGenerator generator, Message message, boolean success) throws IOException {
+        generator.writeStartObject();
+        if (success) {
+            generator.writeNumberField("status", 0);
+            generator.writeStringField("message", message.getMessageId());
+        } else {
+            generator.writeNumberField("status", -1);
+            generator.writeStringField("error", message.getMessageId());
+        }
+        generator.writeEndObject();
+    }
+
+    private void error(ChannelHandlerContext ctx, boolean keepAlive, String message) {
+        HttpResponses.writeJson(ctx, keepAlive, HttpResponseStatus.OK, "{\"status\":-1,\"error\":\"" + HttpResponses.escape(message) + "\"}");
+    }
+}
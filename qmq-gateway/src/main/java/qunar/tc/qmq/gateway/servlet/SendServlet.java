@@ -22,6 +22,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import qunar.tc.qmq.Message;
 import qunar.tc.qmq.MessageSendStateListener;
+import qunar.tc.qmq.gateway.util.MessageAttrs;
 import qunar.tc.qmq.producer.MessageProducerProvider;
 
 import javax.servlet.AsyncContext;
@@ -86,7 +87,7 @@ public class SendServlet extends HttpServlet {
     private void sendMessage(String subject, String appid, Map<String, Object> data, AsyncContext asyncContext) {
         Message message = producer.generateMessage(subject);
         message.setProperty("client_app", appid);
-        appendAttrs(data, message);
+        MessageAttrs.append(data, message);
         producer.sendMessage(message, new MessageSendStateListener() {
             @Override
             public void onSuccess(Message message) {
@@ -100,50 +101,6 @@ public class SendServlet extends HttpServlet {
         });
     }
 
-    private void appendAttrs(Map<String, Object> data, Message message) {
-        for (Map.Entry<String, Object> entry : data.entrySet()) {
-            if (entry.getKey() == null || entry.getKey().length() == 0) continue;
-            if (entry.getValue() == null) continue;
-
-            if (entry.getValue() instanceof Integer) {
-                message.setProperty(entry.getKey(), (Integer) entry.getValue());
-                continue;
-            }
-
-            if (entry.getValue() instanceof Long) {
-                message.setProperty(entry.getKey(), (Long) entry.getValue());
-                continue;
-            }
-
-            if (entry.getValue() instanceof Float) {
-                message.setProperty(entry.getKey(), (Float) entry.getValue());
-                continue;
-            }
-
-            if (entry.getValue() instanceof Double) {
-                message.setProperty(entry.getKey(), (Double) entry.getValue());
-                continue;
-            }
-
-            if (entry.getValue() instanceof Number) {
-                message.setProperty(entry.getKey(), Double.parseDouble(entry.getValue().toString()));
-                continue;
-            }
-
-            if (entry.getValue() instanceof Boolean) {
-                message.setProperty(entry.getKey(), (Boolean) entry.getValue());
-                continue;
-            }
-
-            if (entry.getValue() instanceof String) {
-                message.setProperty(entry.getKey(), (String) entry.getValue());
-                continue;
-            }
-
-            message.setProperty(entry.getKey(), entry.getValue().toString());
-        }
-    }
-
     private void error(HttpServletResponse resp, String message) {
         try {
             resp.setContentType("application/json");
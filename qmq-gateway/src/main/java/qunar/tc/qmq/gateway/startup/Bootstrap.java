@@ -20,8 +20,11 @@ import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import qunar.tc.qmq.configuration.DynamicConfig;
 import qunar.tc.qmq.configuration.DynamicConfigLoader;
+import qunar.tc.qmq.consumer.MessageConsumerProvider;
+import qunar.tc.qmq.gateway.netty.HttpGatewayServer;
 import qunar.tc.qmq.gateway.servlet.PullServlet;
 import qunar.tc.qmq.gateway.servlet.SendServlet;
+import qunar.tc.qmq.producer.MessageProducerProvider;
 
 /**
  * Created by zhaohui.yu
@@ -29,10 +32,30 @@ import qunar.tc.qmq.gateway.servlet.SendServlet;
  */
 public class Bootstrap {
     public static void main(String[] args) throws Exception {
+        DynamicConfig config = DynamicConfigLoader.load("gateway.properties");
+        if ("netty".equalsIgnoreCase(config.getString("gateway.mode", "servlet"))) {
+            startNettyGateway(config);
+        } else {
+            startServletGateway(config);
+        }
+    }
+
+    private static void startNettyGateway(DynamicConfig config) throws InterruptedException {
+        final MessageConsumerProvider consumer = new MessageConsumerProvider();
+        consumer.init();
+        final MessageProducerProvider producer = new MessageProducerProvider();
+        producer.init();
+
+        final HttpGatewayServer server = new HttpGatewayServer(config, consumer, producer);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::destroy));
+        server.awaitTermination();
+    }
+
+    private static void startServletGateway(DynamicConfig config) throws Exception {
         final ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
         context.setContextPath("/");
         context.setResourceBase(System.getProperty("java.io.tmpdir"));
-        DynamicConfig config = DynamicConfigLoader.load("gateway.properties");
 
         context.addServlet(PullServlet.class, "/pull/*");
         context.addServlet(SendServlet.class, "/send/*");
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.gateway.util;
+
+import qunar.tc.qmq.Message;
+
+import java.util.Map;
+
+/**
+ * servlet和netty网关共用：把请求里的字段按类型设置到消息属性上
+ */
+public final class MessageAttrs {
+    private MessageAttrs() {
+    }
+
+    public static void append(Map<String, Object> data, Message message) {
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            if (entry.getKey() == null || entry.getKey().length() == 0) continue;
+            if (entry.getValue() == null) continue;
+
+            if (entry.getValue() instanceof Integer) {
+                message.setProperty(entry.getKey(), (Integer) entry.getValue());
+                continue;
+            }
+
+            if (entry.getValue() instanceof Long) {
+                message.setProperty(entry.getKey(), (Long) entry.getValue());
+                continue;
+            }
+
+            if (entry.getValue() instanceof Float) {
+                message.setProperty(entry.getKey(), (Float) entry.getValue());
+                continue;
+            }
+
+            if (entry.getValue() instanceof Double) {
+                message.setProperty(entry.getKey(), (Double) entry.getValue());
+                continue;
+            }
+
+            if (entry.getValue() instanceof Number) {
+                message.setProperty(entry.getKey(), Double.parseDouble(entry.getValue().toString()));
+                continue;
+            }
+
+            if (entry.getValue() instanceof Boolean) {
+                message.setProperty(entry.getKey(), (Boolean) entry.getValue());
+                continue;
+            }
+
+            if (entry.getValue() instanceof String) {
+                message.setProperty(entry.getKey(), (String) entry.getValue());
+                continue;
+            }
+
+            message.setProperty(entry.getKey(), entry.getValue().toString());
+        }
+    }
+}
@@ -54,8 +54,24 @@ public class ResetOffsetAction implements MetaManagementAction {
             return ActionResult.error("subject and consumerGroup required");
         }
 
-        if (action != 1 && action != 2) {
-            return ActionResult.error("action must 1 or 2, LATEST=1, EARLIEST=2");
+        if (action != 1 && action != 2 && action != 3) {
+            return ActionResult.error("action must 1, 2 or 3, LATEST=1, EARLIEST=2, TIMESTAMP=3");
+        }
+
+        long timestamp = -1;
+        if (action == 3) {
+            final String time = req.getParameter("timestamp");
+            if (Strings.isNullOrEmpty(time)) {
+                return ActionResult.error("timestamp required when action is 3");
+            }
+            try {
+                timestamp = Long.parseLong(time);
+            } catch (NumberFormatException e) {
+                return ActionResult.error("timestamp must be epoch milliseconds: " + time);
+            }
+            if (timestamp < 0) {
+                return ActionResult.error("timestamp must not be negative: " + time);
+            }
         }
 
         final SubjectRoute subjectRoute = store.selectSubjectRoute(RetrySubjectUtils.getRealSubject(subject));
@@ -63,7 +79,7 @@ public class ResetOffsetAction implements MetaManagementAction {
             return ActionResult.error("find no route");
         }
 
-        Datagram datagram = buildResetOffsetDatagram(subject, consumerGroup, action);
+        Datagram datagram = buildResetOffsetDatagram(subject, consumerGroup, action, timestamp);
         for (final String brokerGroupName : subjectRoute.getBrokerGroups()) {
             try {
                 final BrokerGroup brokerGroup = store.getBrokerGroup(brokerGroupName);
@@ -77,7 +93,7 @@ public class ResetOffsetAction implements MetaManagementAction {
         return ActionResult.ok("success");
     }
 
-    private Datagram buildResetOffsetDatagram(final String subject, final String consumerGroup, int code) {
+    private Datagram buildResetOffsetDatagram(final String subject, final String consumerGroup, int code, long timestamp) {
         final Datagram datagram = new Datagram();
         final RemotingHeader header = new RemotingHeader();
         header.setCode(CommandCode.CONSUME_MANAGE);
@@ -86,6 +102,9 @@ public class ResetOffsetAction implements MetaManagementAction {
             PayloadHolderUtils.writeString(subject, out);
             PayloadHolderUtils.writeString(consumerGroup, out);
             out.writeInt(code);
+            if (code == 3) {
+                out.writeLong(timestamp);
+            }
         });
         return datagram;
     }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.netty.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单个channel上在途请求的opaque -> ResponseFuture表，int key开放寻址，避免Integer装箱
+ */
+class InFlightRequestTable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] keys;
+    private ResponseFuture[] values;
+    private int size;
+    private int mask;
+
+    InFlightRequestTable() {
+        this.keys = new int[INITIAL_CAPACITY];
+        this.values = new ResponseFuture[INITIAL_CAPACITY];
+        this.mask = INITIAL_CAPACITY - 1;
+    }
+
+    synchronized boolean putIfAbsent(int opaque, ResponseFuture future) {
+        int index = indexOf(opaque);
+        while (values[index] != null) {
+            if (keys[index] == opaque) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = opaque;
+        values[index] = future;
+        if (++size > (mask + 1) >> 1) {
+            rehash((mask + 1) << 1);
+        }
+        return true;
+    }
+
+    synchronized ResponseFuture remove(int opaque) {
+        int index = indexOf(opaque);
+        while (values[index] != null) {
+            if (keys[index] == opaque) {
+                final ResponseFuture future = values[index];
+                removeAt(index);
+                return future;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    synchronized boolean remove(int opaque, ResponseFuture future) {
+        int index = indexOf(opaque);
+        while (values[index] != null) {
+            if (keys[index] == opaque) {
+                if (values[index] != future) {
+                    return false;
+                }
+                removeAt(index);
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    synchronized List<ResponseFuture> removeAll() {
+        final List<ResponseFuture> result = new ArrayList<>(size);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                result.add(values[i]);
+                values[i] = null;
+            }
+        }
+        size = 0;
+        return result;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // 线性探测下的删除：把后面同一探测链上的元素往前挪，不使用墓碑
+    private void removeAt(int index) {
+        values[index] = null;
+        size--;
+
+        int next = (index + 1) & mask;
+        while (values[next] != null) {
+            final int ideal = indexOf(keys[next]);
+            if (((next - ideal) & mask) >= ((next - index) & mask)) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                values[next] = null;
+                index = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        final int[] oldKeys = keys;
+        final ResponseFuture[] oldValues = values;
+        keys = new int[newCapacity];
+        values = new ResponseFuture[newCapacity];
+        mask = newCapacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) continue;
+
+            int index = indexOf(oldKeys[i]);
+            while (values[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = oldKeys[i];
+            values[index] = oldValues[i];
+        }
+    }
+
+    private int indexOf(int key) {
+        final int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
@@ -20,6 +20,9 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import qunar.tc.qmq.concurrent.NamedThreadFactory;
@@ -27,11 +30,9 @@ import qunar.tc.qmq.netty.exception.ClientSendException;
 import qunar.tc.qmq.protocol.Datagram;
 import qunar.tc.qmq.util.RemoteHelper;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -41,45 +42,46 @@ import java.util.concurrent.atomic.AtomicInteger;
 class NettyClientHandler extends SimpleChannelInboundHandler<Datagram> {
     private static final Logger LOGGER = LoggerFactory.getLogger(NettyClientHandler.class);
 
-    private static final long CLEAN_RESPONSE_TABLE_PERIOD_MILLIS = 1000;
+    private static final long TIMEOUT_TICK_MILLIS = 10;
+    private static final int TIMEOUT_TICKS_PER_WHEEL = 1024;
 
     private final AtomicInteger opaque = new AtomicInteger(0);
-    private final ConcurrentMap<Channel, ConcurrentMap<Integer, ResponseFuture>> requestsInFlight = new ConcurrentHashMap<>(4);
-    private final ScheduledExecutorService timeoutTracker;
+    private final ConcurrentMap<Channel, InFlightRequestTable> requestsInFlight = new ConcurrentHashMap<>(4);
+    // 每个请求在时间轮上挂一个超时任务，收到响应时取消，不再周期扫描全部在途请求
+    private final HashedWheelTimer timeoutTracker;
 
     NettyClientHandler() {
-        timeoutTracker = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("qmq-client-clean"));
-        timeoutTracker.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                NettyClientHandler.this.processTimeouts();
-            }
-        }, 3 * CLEAN_RESPONSE_TABLE_PERIOD_MILLIS, CLEAN_RESPONSE_TABLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        timeoutTracker = new HashedWheelTimer(new NamedThreadFactory("qmq-client-clean"), TIMEOUT_TICK_MILLIS, TimeUnit.MILLISECONDS, TIMEOUT_TICKS_PER_WHEEL);
     }
 
     ResponseFuture newResponse(Channel channel, long timeout, ResponseFuture.Callback callback) throws ClientSendException {
         final int op = opaque.getAndIncrement();
         ResponseFuture future = new ResponseFuture(op, timeout, callback);
-        ConcurrentMap<Integer, ResponseFuture> channelBuffer = requestsInFlight.get(channel);
+        InFlightRequestTable channelBuffer = requestsInFlight.get(channel);
         if (channelBuffer == null) {
-            channelBuffer = new ConcurrentHashMap<>();
-            ConcurrentMap<Integer, ResponseFuture> old = requestsInFlight.putIfAbsent(channel, channelBuffer);
+            channelBuffer = new InFlightRequestTable();
+            InFlightRequestTable old = requestsInFlight.putIfAbsent(channel, channelBuffer);
             if (old != null) {
                 channelBuffer = old;
             }
         }
 
-        if (channelBuffer.putIfAbsent(op, future) != null) {
+        if (!channelBuffer.putIfAbsent(op, future)) {
             throw new ClientSendException(ClientSendException.SendErrorCode.ILLEGAL_OPAQUE);
         }
+        if (timeout >= 0) {
+            future.setTimeoutTask(timeoutTracker.newTimeout(new RequestTimeoutTask(channelBuffer, future), timeout, TimeUnit.MILLISECONDS));
+        }
         return future;
     }
 
     void removeResponse(Channel channel, ResponseFuture responseFuture) {
-        ConcurrentMap<Integer, ResponseFuture> channelBuffer = requestsInFlight.get(channel);
+        InFlightRequestTable channelBuffer = requestsInFlight.get(channel);
         if (channelBuffer == null) return;
 
-        channelBuffer.remove(responseFuture.getOpaque(), responseFuture);
+        if (channelBuffer.remove(responseFuture.getOpaque(), responseFuture)) {
+            responseFuture.cancelTimeoutTask();
+        }
     }
 
     @Override
@@ -95,11 +97,11 @@ class NettyClientHandler extends SimpleChannelInboundHandler<Datagram> {
 
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
-        ConcurrentMap<Integer, ResponseFuture> channelBuffer = requestsInFlight.remove(ctx.channel());
+        InFlightRequestTable channelBuffer = requestsInFlight.remove(ctx.channel());
         if (channelBuffer == null) return;
 
-        for (Map.Entry<Integer, ResponseFuture> entry : channelBuffer.entrySet()) {
-            ResponseFuture responseFuture = entry.getValue();
+        for (ResponseFuture responseFuture : channelBuffer.removeAll()) {
+            responseFuture.cancelTimeoutTask();
             responseFuture.completeByTimeoutClean();
             responseFuture.executeCallbackOnlyOnce();
         }
@@ -107,11 +109,12 @@ class NettyClientHandler extends SimpleChannelInboundHandler<Datagram> {
 
     private void processResponse(ChannelHandlerContext ctx, Datagram response) {
         int opaque = response.getHeader().getOpaque();
-        ConcurrentMap<Integer, ResponseFuture> channelBuffer = requestsInFlight.get(ctx.channel());
+        InFlightRequestTable channelBuffer = requestsInFlight.get(ctx.channel());
         if (channelBuffer == null) return;
 
         ResponseFuture responseFuture = channelBuffer.remove(opaque);
         if (responseFuture != null) {
+            responseFuture.cancelTimeoutTask();
             responseFuture.completeByReceiveResponse(response);
             responseFuture.executeCallbackOnlyOnce();
         } else {
@@ -119,45 +122,31 @@ class NettyClientHandler extends SimpleChannelInboundHandler<Datagram> {
         }
     }
 
-    private void processTimeouts() {
-        final List<ResponseFuture> rfList = new LinkedList<>();
-        Iterator<Map.Entry<Channel, ConcurrentMap<Integer, ResponseFuture>>> channelBuffers = this.requestsInFlight.entrySet().iterator();
-        while (channelBuffers.hasNext()) {
-            Map.Entry<Channel, ConcurrentMap<Integer, ResponseFuture>> channelBuffer = channelBuffers.next();
-            Iterator<Map.Entry<Integer, ResponseFuture>> iterator = channelBuffer.getValue().entrySet().iterator();
-            while (iterator.hasNext()) {
-                Map.Entry<Integer, ResponseFuture> next = iterator.next();
-                ResponseFuture future = next.getValue();
-
-                if (isTimeout(future)) {
-                    future.completeByTimeoutClean();
-                    iterator.remove();
+    void shutdown() {
+        timeoutTracker.stop();
+    }
 
-                    rfList.add(future);
-                    LOGGER.warn("remove timeout request, " + future);
-                }
+    private static class RequestTimeoutTask implements TimerTask {
+        private final InFlightRequestTable channelBuffer;
+        private final ResponseFuture future;
 
-            }
+        RequestTimeoutTask(InFlightRequestTable channelBuffer, ResponseFuture future) {
+            this.channelBuffer = channelBuffer;
+            this.future = future;
         }
 
-        executeCallbacks(rfList);
-    }
-
-    private boolean isTimeout(ResponseFuture future) {
-        return future.getTimeout() >= 0 && (future.getBeginTime() + future.getTimeout()) <= System.currentTimeMillis();
-    }
+        @Override
+        public void run(Timeout timeout) {
+            // 已经收到响应或者channel已关闭
+            if (!channelBuffer.remove(future.getOpaque(), future)) return;
 
-    private void executeCallbacks(List<ResponseFuture> rfList) {
-        for (ResponseFuture responseFuture : rfList) {
+            future.completeByTimeoutClean();
+            LOGGER.warn("remove timeout request, " + future);
             try {
-                responseFuture.executeCallbackOnlyOnce();
+                future.executeCallbackOnlyOnce();
             } catch (Throwable e) {
-                LOGGER.warn("scanResponseTable, operationComplete Exception", e);
+                LOGGER.warn("request timeout, operationComplete Exception", e);
             }
         }
     }
-
-    void shutdown() {
-        timeoutTracker.shutdown();
-    }
 }
@@ -16,6 +16,7 @@
 
 package qunar.tc.qmq.netty.client;
 
+import io.netty.util.Timeout;
 import qunar.tc.qmq.protocol.Datagram;
 
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -33,6 +34,7 @@ public class ResponseFuture {
     private volatile Datagram response = null;
     private volatile Throwable cause;
     private final AtomicBoolean executeCallbackOnlyOnce = new AtomicBoolean(false);
+    private volatile Timeout timeoutTask;
 
     ResponseFuture(int opaque, long timeoutMs, Callback callback) {
         this.opaque = opaque;
@@ -89,6 +91,17 @@ public class ResponseFuture {
         this.requestEndTime = System.currentTimeMillis();
     }
 
+    void setTimeoutTask(Timeout timeoutTask) {
+        this.timeoutTask = timeoutTask;
+    }
+
+    void cancelTimeoutTask() {
+        final Timeout task = this.timeoutTask;
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
     public Throwable getCause() {
         return cause;
     }
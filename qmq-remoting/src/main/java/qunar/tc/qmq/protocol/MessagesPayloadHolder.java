@@ -18,6 +18,7 @@ package qunar.tc.qmq.protocol;
 
 import io.netty.buffer.ByteBuf;
 import qunar.tc.qmq.base.BaseMessage;
+import qunar.tc.qmq.utils.CompressionUtils;
 import qunar.tc.qmq.utils.Crc32;
 import qunar.tc.qmq.utils.DelayUtil;
 import qunar.tc.qmq.utils.Flags;
@@ -34,9 +35,18 @@ import java.util.Set;
  */
 public class MessagesPayloadHolder implements PayloadHolder {
     private final List<BaseMessage> messages;
+    private final int compressThreshold;
 
     public MessagesPayloadHolder(List<BaseMessage> messages) {
+        this(messages, -1);
+    }
+
+    /**
+     * @param compressThreshold body超过该字节数时压缩，小于等于0表示不压缩
+     */
+    public MessagesPayloadHolder(List<BaseMessage> messages, int compressThreshold) {
         this.messages = messages;
+        this.compressThreshold = compressThreshold;
     }
 
     @Override
@@ -88,6 +98,9 @@ public class MessagesPayloadHolder implements PayloadHolder {
         out.writerIndex(bodyStart);
 
         serializeMap(message.getAttrs(), out);
+        if (compressBody(out, bodyStart)) {
+            out.setByte(messageStart, Flags.setCompressed(flag, true));
+        }
         final int bodyEnd = out.writerIndex();
 
         final int messageEnd = out.writerIndex();
@@ -106,6 +119,20 @@ public class MessagesPayloadHolder implements PayloadHolder {
         out.writerIndex(messageEnd);
     }
 
+    private boolean compressBody(ByteBuf out, int bodyStart) {
+        final int bodyLen = out.writerIndex() - bodyStart;
+        if (compressThreshold <= 0 || bodyLen < compressThreshold) return false;
+
+        final byte[] raw = new byte[bodyLen];
+        out.getBytes(bodyStart, raw);
+        final byte[] compressed = CompressionUtils.compress(raw);
+        if (compressed.length >= bodyLen) return false;
+
+        out.writerIndex(bodyStart);
+        out.writeBytes(compressed);
+        return true;
+    }
+
     private void writeTags(Set<String> tags, ByteBuf out) {
         if (tags.isEmpty()) return;
         out.writeByte((byte) tags.size());
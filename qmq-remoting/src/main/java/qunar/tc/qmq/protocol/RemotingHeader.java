@@ -38,6 +38,11 @@ public class RemotingHeader {
      */
     public static final short VERSION_9 = 9;
 
+    /**
+     * add pull hints in pull response
+     */
+    public static final short VERSION_10 = 10;
+
     public static final short MIN_HEADER_SIZE = 18;  // magic code(4) + code(2) + version(2) + opaque(4) + flag(4) + request code(2)
     public static final short HEADER_SIZE_LEN = 2;
     public static final short TOTAL_SIZE_LEN = 4;
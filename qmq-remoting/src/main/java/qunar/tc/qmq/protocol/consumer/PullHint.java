@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package qunar.tc.qmq.protocol.consumer;
+
+/**
+ * broker在拉取响应里给出的下一次拉取建议
+ * <p>
+ * 编码成一个long放在响应里原来固定写-1的位置：高32位是建议的batch size，低32位是建议的长轮询等待时间，
+ * 老的broker写的-1解码出来是null
+ */
+public class PullHint {
+    public static final long NONE = -1;
+
+    private final int batchSize;
+    private final int waitMillis;
+
+    public PullHint(int batchSize, int waitMillis) {
+        this.batchSize = Math.max(0, batchSize);
+        this.waitMillis = Math.max(0, waitMillis);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getWaitMillis() {
+        return waitMillis;
+    }
+
+    public long encode() {
+        return ((long) batchSize << 32) | (waitMillis & 0xFFFFFFFFL);
+    }
+
+    public static PullHint decode(long value) {
+        if (value < 0) return null;
+        return new PullHint((int) (value >>> 32), (int) value);
+    }
+
+    @Override
+    public String toString() {
+        return "PullHint{" +
+                "batchSize=" + batchSize +
+                ", waitMillis=" + waitMillis +
+                '}';
+    }
+}
@@ -24,6 +24,7 @@ public class ConsumeManageRequest {
     private int consumerFromWhere;
     private String subject;
     private String group;
+    private long timestamp;
 
     public int getConsumerFromWhere() {
         return consumerFromWhere;
@@ -49,12 +50,21 @@ public class ConsumeManageRequest {
         this.group = group;
     }
 
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
     @Override
     public String toString() {
         return "ConsumeManageRequest{" +
                 "consumerFromWhere=" + consumerFromWhere +
                 ", subject='" + subject + '\'' +
                 ", group='" + group + '\'' +
+                ", timestamp=" + timestamp +
                 '}';
     }
 }
@@ -56,6 +56,18 @@ public class BrokerConstants {
 
     public static final String LOG_DISPATCHER_PAUSE_MILLIS = "log_dispatcher.pause.millis";
 
+    // 提前创建下一个segment
+    public static final String SEGMENT_PREALLOCATE_ENABLE = "segment.preallocate.enable";
+    public static final String SEGMENT_WARMUP_ENABLE = "segment.warmup.enable";
+    public static final String CONSUMER_LOG_PREALLOCATE_ENABLE = "consumerlog.preallocate.enable";
+
+    // message log刷盘策略: periodic或者group_commit
+    public static final String MESSAGE_LOG_FLUSH_POLICY = "messagelog.flush.policy";
+    public static final String GROUP_COMMIT_FLUSH_BYTES = "messagelog.group_commit.flush.bytes";
+    public static final long DEFAULT_GROUP_COMMIT_FLUSH_BYTES = 1024 * 1024;
+    public static final String GROUP_COMMIT_FLUSH_DELAY_MICROS = "messagelog.group_commit.flush.delay.micros";
+    public static final long DEFAULT_GROUP_COMMIT_FLUSH_DELAY_MICROS = 2000;
+
     // slave
     public static final long DEFAULT_HEARTBEAT_SLEEP_TIMEOUT_MS = 1000L;
 
@@ -17,10 +17,17 @@
 package qunar.tc.qmq.monitor;
 
 import com.google.common.base.Supplier;
+import qunar.tc.qmq.metrics.MetricFamily;
 import qunar.tc.qmq.metrics.Metrics;
 import qunar.tc.qmq.metrics.MetricsConstants;
+import qunar.tc.qmq.metrics.QmqCounter;
+import qunar.tc.qmq.metrics.QmqMeter;
+import qunar.tc.qmq.metrics.QmqTimer;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 import static qunar.tc.qmq.metrics.MetricsConstants.SUBJECT_ARRAY;
 import static qunar.tc.qmq.metrics.MetricsConstants.SUBJECT_GROUP_ARRAY;
@@ -38,17 +45,54 @@ public final class QMon {
     private static final String[] ROLE = new String[]{"role"};
     private static final String[] NAME = new String[]{"name"};
 
+    // 按subject/subject+group缓存绑定好的metric，消息热点路径上不再每次分配tag数组和查registry
+    private static final ConcurrentMap<String, MetricFamily<QmqCounter>> SUBJECT_COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, MetricFamily<QmqCounter>> SUBJECT_GROUP_COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, MetricFamily<QmqTimer>> SUBJECT_TIMERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, MetricFamily<QmqTimer>> SUBJECT_GROUP_TIMERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, MetricFamily<QmqMeter>> SUBJECT_METERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, MetricFamily<QmqMeter>> SUBJECT_GROUP_METERS = new ConcurrentHashMap<>();
 
     private static void subjectCountInc(String name, String subject) {
-        countInc(name, SUBJECT_ARRAY, new String[]{subject});
+        subjectCounter(name, subject).inc();
     }
 
     private static void subjectAndGroupCountInc(String name, String subject, String consumerGroup) {
-        countInc(name, SUBJECT_GROUP_ARRAY, new String[]{subject, consumerGroup});
+        subjectAndGroupCounter(name, subject, consumerGroup).inc();
     }
 
-    private static void subjectAndGroupCountInc(String name, String[] values, long num) {
-        countInc(name, SUBJECT_GROUP_ARRAY, values, num);
+    private static void subjectAndGroupCountInc(String name, String subject, String consumerGroup, long num) {
+        subjectAndGroupCounter(name, subject, consumerGroup).inc(num);
+    }
+
+    private static <T> MetricFamily<T> family(ConcurrentMap<String, MetricFamily<T>> families, String name, Function<String, MetricFamily<T>> factory) {
+        final MetricFamily<T> family = families.get(name);
+        if (family != null) return family;
+        return families.computeIfAbsent(name, factory);
+    }
+
+    private static QmqCounter subjectCounter(String name, String subject) {
+        return family(SUBJECT_COUNTERS, name, key -> Metrics.counterFamily(key, SUBJECT_ARRAY)).of(subject);
+    }
+
+    private static QmqCounter subjectAndGroupCounter(String name, String subject, String group) {
+        return family(SUBJECT_GROUP_COUNTERS, name, key -> Metrics.counterFamily(key, SUBJECT_GROUP_ARRAY)).of(subject, group);
+    }
+
+    private static QmqTimer subjectTimer(String name, String subject) {
+        return family(SUBJECT_TIMERS, name, key -> Metrics.timerFamily(key, SUBJECT_ARRAY)).of(subject);
+    }
+
+    private static QmqTimer subjectAndGroupTimer(String name, String subject, String group) {
+        return family(SUBJECT_GROUP_TIMERS, name, key -> Metrics.timerFamily(key, SUBJECT_GROUP_ARRAY)).of(subject, group);
+    }
+
+    private static QmqMeter subjectMeter(String name, String subject) {
+        return family(SUBJECT_METERS, name, key -> Metrics.meterFamily(key, SUBJECT_ARRAY)).of(subject);
+    }
+
+    private static QmqMeter subjectAndGroupMeter(String name, String subject, String group) {
+        return family(SUBJECT_GROUP_METERS, name, key -> Metrics.meterFamily(key, SUBJECT_GROUP_ARRAY)).of(subject, group);
     }
 
     private static void countInc(String name, String[] tags, String[] values) {
@@ -60,13 +104,12 @@ public final class QMon {
     }
 
     public static void produceTime(String subject, long time) {
-        Metrics.timer("produceTime", SUBJECT_ARRAY, new String[]{subject}).update(time, TimeUnit.MILLISECONDS);
+        subjectTimer("produceTime", subject).update(time, TimeUnit.MILLISECONDS);
     }
 
     public static void receivedMessagesCountInc(String subject) {
         subjectCountInc("receivedMessagesCount", subject);
-        final String[] values = {subject};
-        Metrics.meter("receivedMessagesEx", SUBJECT_ARRAY, values).mark();
+        subjectMeter("receivedMessagesEx", subject).mark();
     }
 
     public static void receivedIllegalSubjectMessagesCountInc(String subject) {
@@ -74,9 +117,8 @@ public final class QMon {
     }
 
     public static void pulledMessagesCountInc(String subject, String group, int messageNum) {
-        final String[] values = new String[]{subject, group};
-        subjectAndGroupCountInc("pulledMessagesCount", values, messageNum);
-        Metrics.meter("pulledMessagesEx", SUBJECT_GROUP_ARRAY, values).mark(messageNum);
+        subjectAndGroupCountInc("pulledMessagesCount", subject, group, messageNum);
+        subjectAndGroupMeter("pulledMessagesEx", subject, group).mark(messageNum);
     }
 
     public static void pulledNoMessagesCountInc(String subject, String group) {
@@ -84,7 +126,7 @@ public final class QMon {
     }
 
     public static void pulledMessageBytesCountInc(String subject, String group, int bytes) {
-        subjectAndGroupCountInc("pulledMessageBytesCount", new String[]{subject, group}, bytes);
+        subjectAndGroupCountInc("pulledMessageBytesCount", subject, group, bytes);
     }
 
     public static void storeMessageErrorCountInc(String subject) {
@@ -92,7 +134,7 @@ public final class QMon {
     }
 
     public static void pullQueueTime(String subject, String group, long start) {
-        Metrics.timer("pullQueueTime", SUBJECT_GROUP_ARRAY, new String[]{subject, group}).update(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS);
+        subjectAndGroupTimer("pullQueueTime", subject, group).update(System.currentTimeMillis() - start, TimeUnit.MILLISECONDS);
     }
 
     public static void suspendRequestCountInc(String subject, String group) {
@@ -124,15 +166,15 @@ public final class QMon {
     }
 
     public static void consumerAckCountInc(String subject, String group, int size) {
-        subjectAndGroupCountInc("consumerAckCount", new String[]{subject, group}, size);
+        subjectAndGroupCountInc("consumerAckCount", subject, group, size);
     }
 
     public static void consumerLostAckCountInc(String subject, String group, int lostAckCount) {
-        subjectAndGroupCountInc("consumerLostAckCount", new String[]{subject, group}, lostAckCount);
+        subjectAndGroupCountInc("consumerLostAckCount", subject, group, lostAckCount);
     }
 
     public static void consumerDuplicateAckCountInc(String subject, String group, int duplicateAckCount) {
-        subjectAndGroupCountInc("consumerDuplicateAckCount", new String[]{subject, group}, duplicateAckCount);
+        subjectAndGroupCountInc("consumerDuplicateAckCount", subject, group, duplicateAckCount);
     }
 
     public static void consumerAckTimeoutErrorCountInc(String consumerId, int num) {
@@ -140,11 +182,11 @@ public final class QMon {
     }
 
     public static void putMessageTime(String subject, long time) {
-        Metrics.timer("putMessageTime", SUBJECT_ARRAY, new String[]{subject}).update(time, TimeUnit.MILLISECONDS);
+        subjectTimer("putMessageTime", subject).update(time, TimeUnit.MILLISECONDS);
     }
 
     public static void processTime(String subject, long time) {
-        Metrics.timer("processTime", SUBJECT_ARRAY, new String[]{subject}).update(time, TimeUnit.MILLISECONDS);
+        subjectTimer("processTime", subject).update(time, TimeUnit.MILLISECONDS);
     }
 
     public static void rejectReceivedMessageCountInc(String subject) {
@@ -160,11 +202,11 @@ public final class QMon {
     }
 
     public static void ackProcessTime(String subject, String group, long elapsed) {
-        Metrics.timer("ackProcessTime", SUBJECT_GROUP_ARRAY, new String[]{subject, group}).update(elapsed, TimeUnit.MILLISECONDS);
+        subjectAndGroupTimer("ackProcessTime", subject, group).update(elapsed, TimeUnit.MILLISECONDS);
     }
 
     public static void pullProcessTime(String subject, String group, long elapsed) {
-        Metrics.timer("pullProcessTime", SUBJECT_GROUP_ARRAY, new String[]{subject, group}).update(elapsed, TimeUnit.MILLISECONDS);
+        subjectAndGroupTimer("pullProcessTime", subject, group).update(elapsed, TimeUnit.MILLISECONDS);
     }
 
     public static void putActionFailedCountInc(String subject, String group) {
@@ -172,7 +214,7 @@ public final class QMon {
     }
 
     public static void findLostMessageCountInc(String subject, String group, int messageNum) {
-        subjectAndGroupCountInc("findLostMessageCount", new String[]{subject, group}, messageNum);
+        subjectAndGroupCountInc("findLostMessageCount", subject, group, messageNum);
     }
 
     public static void findLostMessageEmptyCountInc(String subject, String group) {
@@ -181,12 +223,12 @@ public final class QMon {
 
     public static void pullRequestCountInc(String subject, String group) {
         subjectAndGroupCountInc("pullRequestCount", subject, group);
-        Metrics.meter("pullRequestEx", SUBJECT_GROUP_ARRAY, new String[]{subject, group}).mark();
+        subjectAndGroupMeter("pullRequestEx", subject, group).mark();
     }
 
     public static void ackRequestCountInc(String subject, String group) {
         subjectAndGroupCountInc("ackRequestCount", subject, group);
-        Metrics.meter("ackRequestEx", SUBJECT_GROUP_ARRAY, new String[]{subject, group}).mark();
+        subjectAndGroupMeter("ackRequestEx", subject, group).mark();
     }
 
     public static void pullParamErrorCountInc(String subject, String group) {
@@ -206,7 +248,7 @@ public final class QMon {
     }
 
     public static void putNeedRetryMessagesCountInc(String subject, String group, int size) {
-        subjectAndGroupCountInc("putNeedRetryMessagesCount", new String[]{subject, group}, size);
+        subjectAndGroupCountInc("putNeedRetryMessagesCount", subject, group, size);
     }
 
     public static void consumerLogOffsetRangeError(String subject, String group) {
@@ -222,7 +264,7 @@ public final class QMon {
     }
 
     public static void expiredMessagesCountInc(String subject, String group, long num) {
-        subjectAndGroupCountInc("expiredMessages", new String[]{subject, group}, num);
+        subjectAndGroupCountInc("expiredMessages", subject, group, num);
     }
 
     public static void readMessageReturnNullCountInc(String subject) {
@@ -246,7 +288,7 @@ public final class QMon {
     }
 
     public static void maybeLostMessagesCountInc(String subject, String group, long num) {
-        subjectAndGroupCountInc("maybeLostMessages", new String[]{subject, group}, num);
+        subjectAndGroupCountInc("maybeLostMessages", subject, group, num);
     }
 
     public static void retryTaskExecuteCountInc(String subject, String group) {
@@ -262,15 +304,15 @@ public final class QMon {
     }
 
     public static void findNewExistMessageTime(String subject, String group, long elapsedMillis) {
-        Metrics.timer("findNewExistMessagesTime", SUBJECT_GROUP_ARRAY, new String[]{subject, group}).update(elapsedMillis, TimeUnit.MILLISECONDS);
+        subjectAndGroupTimer("findNewExistMessagesTime", subject, group).update(elapsedMillis, TimeUnit.MILLISECONDS);
     }
 
     public static void findLostMessagesTime(String subject, String group, long elapsedMillis) {
-        Metrics.timer("findLostMessagesTime", SUBJECT_GROUP_ARRAY, new String[]{subject, group}).update(elapsedMillis, TimeUnit.MILLISECONDS);
+        subjectAndGroupTimer("findLostMessagesTime", subject, group).update(elapsedMillis, TimeUnit.MILLISECONDS);
     }
 
     public static void readPullResultAsBytesElapsed(String subject, String group, long elapsedMillis) {
-        Metrics.timer("brokerPullResultReadAsBytesElapsed", SUBJECT_GROUP_ARRAY, new String[]{subject, group}).update(elapsedMillis, TimeUnit.MILLISECONDS);
+        subjectAndGroupTimer("brokerPullResultReadAsBytesElapsed", subject, group).update(elapsedMillis, TimeUnit.MILLISECONDS);
     }
 
     public static void flushPullLogCountInc() {
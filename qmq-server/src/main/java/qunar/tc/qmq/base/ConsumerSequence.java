@@ -16,6 +16,8 @@
 
 package qunar.tc.qmq.base;
 
+import qunar.tc.qmq.lag.ConsumerLagIndex;
+
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -31,17 +33,38 @@ public class ConsumerSequence {
     private final Lock pullLock = new ReentrantLock();
     private final Lock ackLock = new ReentrantLock();
 
+    private volatile ConsumerLagIndex.GroupLag lag;
+
     public ConsumerSequence(final long pullSequence, final long ackSequence) {
         this.pullSequence = new AtomicLong(pullSequence);
         this.ackSequence = new AtomicLong(ackSequence);
     }
 
+    /**
+     * 把当前未ack的数量计入消费组的堆积，之后每次sequence变化按差值更新
+     */
+    public void attachLag(final ConsumerLagIndex.GroupLag lag) {
+        this.lag = lag;
+        lag.addAckLag(pullSequence.get() - ackSequence.get());
+    }
+
+    public void detachLag() {
+        final ConsumerLagIndex.GroupLag current = lag;
+        if (current == null) return;
+        lag = null;
+        current.addAckLag(ackSequence.get() - pullSequence.get());
+    }
+
     public long getPullSequence() {
         return pullSequence.get();
     }
 
     public void setPullSequence(long pullSequence) {
-        this.pullSequence.set(pullSequence);
+        final long old = this.pullSequence.getAndSet(pullSequence);
+        final ConsumerLagIndex.GroupLag current = lag;
+        if (current != null) {
+            current.addAckLag(pullSequence - old);
+        }
     }
 
     public long getAckSequence() {
@@ -49,7 +72,11 @@ public class ConsumerSequence {
     }
 
     public void setAckSequence(long ackSequence) {
-        this.ackSequence.set(ackSequence);
+        final long old = this.ackSequence.getAndSet(ackSequence);
+        final ConsumerLagIndex.GroupLag current = lag;
+        if (current != null) {
+            current.addAckLag(old - ackSequence);
+        }
     }
 
     public void pullLock() {
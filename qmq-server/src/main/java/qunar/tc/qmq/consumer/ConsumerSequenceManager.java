@@ -25,6 +25,7 @@ import qunar.tc.qmq.base.ConsumerGroup;
 import qunar.tc.qmq.base.ConsumerSequence;
 import qunar.tc.qmq.base.RawMessage;
 import qunar.tc.qmq.base.WritePutActionResult;
+import qunar.tc.qmq.lag.ConsumerLagIndex;
 import qunar.tc.qmq.monitor.QMon;
 import qunar.tc.qmq.processor.AckMessageProcessor;
 import qunar.tc.qmq.protocol.QMQSerializer;
@@ -53,12 +54,14 @@ public class ConsumerSequenceManager {
     private static final long ACTION_LOG_ORIGIN_OFFSET = -1L;
 
     private final Storage storage;
+    private final ConsumerLagIndex lagIndex;
 
     // subject -> consumer group -> consumer id
     private final ConcurrentMap<String, ConcurrentMap<ConsumerGroup, ConsumerSequence>> sequences;
 
-    public ConsumerSequenceManager(final Storage storage) {
+    public ConsumerSequenceManager(final Storage storage, final ConsumerLagIndex lagIndex) {
         this.storage = storage;
+        this.lagIndex = lagIndex;
         this.sequences = new ConcurrentHashMap<>();
     }
 
@@ -89,7 +92,9 @@ public class ConsumerSequenceManager {
 
         final ConsumerSequence consumerSequence = new ConsumerSequence(consumer.getPull(), consumer.getAck());
         final ConsumerGroup consumerGroup = new ConsumerGroup(consumer.getSubject(), consumer.getGroup());
-        consumerSequences.putIfAbsent(consumerGroup, consumerSequence);
+        if (consumerSequences.putIfAbsent(consumerGroup, consumerSequence) == null) {
+            consumerSequence.attachLag(lagIndex.group(consumer.getSubject(), consumer.getGroup()));
+        }
 
     }
 
@@ -202,6 +207,50 @@ public class ConsumerSequenceManager {
         putNeedRetryMessages(subject, group, consumerId, needRetryMessages);
     }
 
+    /**
+     * 从firstNotAckedSequence开始读取未ack的消息，读满maxBytes或者读到lastPullSequence为止，一起放回重试主题
+     *
+     * @return 这一批覆盖的最后一个pull sequence和消息字节数
+     */
+    NeedRetryBatch putNeedRetryMessagesInBatch(String subject, String group, String consumerId, long firstNotAckedSequence, long lastPullSequence, long maxBytes) {
+        if (noPullLog(subject, group, consumerId)) {
+            return new NeedRetryBatch(lastPullSequence, 0);
+        }
+
+        final List<Buffer> needRetryMessages = new ArrayList<>();
+        long bytes = 0;
+        long sequence = firstNotAckedSequence;
+        for (; sequence <= lastPullSequence; sequence++) {
+            final long consumerLogSequence = storage.getMessageSequenceByPullLog(subject, group, consumerId, sequence);
+            if (consumerLogSequence < 0) {
+                LOG.warn("find no consumer log offset for this pull log, subject:{}, group:{}, consumerId:{}, sequence:{}, consumerLogSequence:{}", subject, group, consumerId, sequence, consumerLogSequence);
+                continue;
+            }
+
+            final GetMessageResult getMessageResult = storage.getMessage(subject, consumerLogSequence);
+            if (getMessageResult.getStatus() == GetMessageStatus.SUCCESS) {
+                for (Buffer buffer : getMessageResult.getBuffers()) {
+                    needRetryMessages.add(buffer);
+                    bytes += buffer.getSize();
+                }
+            }
+            if (bytes >= maxBytes) break;
+        }
+
+        putNeedRetryMessages(subject, group, consumerId, needRetryMessages);
+        return new NeedRetryBatch(Math.min(sequence, lastPullSequence), bytes);
+    }
+
+    static class NeedRetryBatch {
+        final long lastSequence;
+        final long bytes;
+
+        NeedRetryBatch(long lastSequence, long bytes) {
+            this.lastSequence = lastSequence;
+            this.bytes = bytes;
+        }
+    }
+
     private boolean noPullLog(String subject, String group, String consumerId) {
         Table<String, String, PullLog> pullLogs = storage.allPullLogs();
         Map<String, PullLog> subscribers = pullLogs.row(consumerId);
@@ -213,7 +262,10 @@ public class ConsumerSequenceManager {
         final ConcurrentMap<ConsumerGroup, ConsumerSequence> consumers = sequences.get(consumerId);
         if (consumers == null) return;
 
-        consumers.remove(new ConsumerGroup(subject, group));
+        final ConsumerSequence removed = consumers.remove(new ConsumerGroup(subject, group));
+        if (removed != null) {
+            removed.detachLag();
+        }
         if (consumers.isEmpty()) {
             sequences.remove(consumerId);
         }
@@ -280,7 +332,11 @@ public class ConsumerSequenceManager {
         ConsumerSequence consumerSequence = consumerSequences.get(consumerGroup);
         if (consumerSequence == null) {
             final ConsumerSequence newConsumerSequence = new ConsumerSequence(ACTION_LOG_ORIGIN_OFFSET, ACTION_LOG_ORIGIN_OFFSET);
-            consumerSequence = ObjectUtils.defaultIfNull(consumerSequences.putIfAbsent(consumerGroup, newConsumerSequence), newConsumerSequence);
+            consumerSequence = consumerSequences.putIfAbsent(consumerGroup, newConsumerSequence);
+            if (consumerSequence == null) {
+                consumerSequence = newConsumerSequence;
+                consumerSequence.attachLag(lagIndex.group(subject, group));
+            }
         }
         return consumerSequence;
     }
@@ -32,10 +32,14 @@ import qunar.tc.qmq.store.action.RangeAckAction;
 class RetryTask {
     private static final Logger LOG = LoggerFactory.getLogger(RetryTask.class);
 
+    private static final double DEFAULT_BYTES_PER_SECOND = 8 * 1024 * 1024;
+    private static final long DEFAULT_BATCH_BYTES = 1024 * 1024;
+
     private final DynamicConfig config;
     private final ConsumerSequenceManager consumerSequenceManager;
     private final Subscriber subscriber;
     private final RateLimiter limiter;
+    private final RateLimiter bytesLimiter;
 
     private volatile boolean cancel;
 
@@ -44,17 +48,21 @@ class RetryTask {
         this.consumerSequenceManager = consumerSequenceManager;
         this.subscriber = subscriber;
         this.limiter = RateLimiter.create(50);
-        this.config.addListener(conf -> updateLimitRate(conf, "put_need_retry_message.limiter"));
+        this.bytesLimiter = RateLimiter.create(DEFAULT_BYTES_PER_SECOND);
+        this.config.addListener(conf -> {
+            updateLimitRate(conf, "put_need_retry_message.limiter", limiter);
+            updateLimitRate(conf, "put_need_retry_message.bytes_limiter", bytesLimiter);
+        });
     }
 
-    private void updateLimitRate(DynamicConfig conf, final String key) {
+    private void updateLimitRate(DynamicConfig conf, final String key, final RateLimiter rateLimiter) {
         if (!conf.exist(key)) {
             return;
         }
 
         try {
             final double limit = conf.getDouble(key);
-            limiter.setRate(limit);
+            rateLimiter.setRate(limit);
         } catch (Exception e) {
             LOG.debug("update limiter rate failed", e);
         }
@@ -69,6 +77,11 @@ class RetryTask {
         }
 
         QMon.retryTaskExecuteCountInc(subscriber.getSubject(), subscriber.getGroup());
+        if (config.getBoolean("put_need_retry_message.bulk", true)) {
+            bulkRun(consumerSequence);
+            return;
+        }
+
         while (true) {
             limiter.acquire();
 
@@ -98,6 +111,45 @@ class RetryTask {
         }
     }
 
+    /**
+     * 每次把一段未ack的区间整体放回重试主题并记录一个range ack，按字节限速
+     */
+    private void bulkRun(final ConsumerSequence consumerSequence) {
+        final long batchBytes = config.getLong("put_need_retry_message.batch_bytes", DEFAULT_BATCH_BYTES);
+        while (true) {
+            final ConsumerSequenceManager.NeedRetryBatch batch;
+            final long firstNotAckedSequence;
+            if (!consumerSequence.tryLock()) return;
+            try {
+                if (cancel) return;
+
+                firstNotAckedSequence = consumerSequence.getAckSequence() + 1;
+                final long lastPulledSequence = consumerSequence.getPullSequence();
+                if (lastPulledSequence < firstNotAckedSequence) return;
+
+                subscriber.renew();
+
+                batch = consumerSequenceManager.putNeedRetryMessagesInBatch(subscriber.getSubject(), subscriber.getGroup(), subscriber.getConsumerId(),
+                        firstNotAckedSequence, lastPulledSequence, batchBytes);
+                LOG.info("put need retry messages in retry task, subject: {}, group: {}, consumerId: {}, range: [{}, {}], bytes: {}",
+                        subscriber.getSubject(), subscriber.getGroup(), subscriber.getConsumerId(), firstNotAckedSequence, batch.lastSequence, batch.bytes);
+
+                final Action action = new RangeAckAction(subscriber.getSubject(), subscriber.getGroup(), subscriber.getConsumerId(), System.currentTimeMillis(), firstNotAckedSequence, batch.lastSequence);
+                if (!consumerSequenceManager.putAction(action)) return;
+
+                consumerSequence.setAckSequence(batch.lastSequence);
+                QMon.consumerAckTimeoutErrorCountInc(subscriber.getConsumerId(), (int) (batch.lastSequence - firstNotAckedSequence + 1));
+            } finally {
+                consumerSequence.unlock();
+            }
+
+            // 先处理后付费，放锁之后再等待，不影响这个消费者重新上线
+            if (batch.bytes > 0) {
+                bytesLimiter.acquire((int) Math.min(batch.bytes, Integer.MAX_VALUE));
+            }
+        }
+    }
+
     void cancel() {
         cancel = true;
     }
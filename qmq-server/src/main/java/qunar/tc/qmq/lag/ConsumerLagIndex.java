@@ -0,0 +1,219 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.lag;
+
+import com.google.common.collect.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.base.ConsumerLag;
+import qunar.tc.qmq.common.Disposable;
+import qunar.tc.qmq.concurrent.NamedThreadFactory;
+import qunar.tc.qmq.configuration.DynamicConfig;
+import qunar.tc.qmq.store.ConsumeQueue;
+import qunar.tc.qmq.store.ConsumerGroupProgress;
+import qunar.tc.qmq.store.ConsumerLogWroteEvent;
+import qunar.tc.qmq.store.Storage;
+import qunar.tc.qmq.store.event.FixedExecOrderEventBus;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 增量维护的消费堆积索引
+ * <p>
+ * subject的最大sequence在consumer log写入事件里更新，ack堆积由ConsumerSequence在拉取和ack时按差值累加，
+ * 查询只读几个原子变量，不需要访问consumer log或者消费进度
+ */
+public class ConsumerLagIndex implements FixedExecOrderEventBus.Listener<ConsumerLogWroteEvent>, Disposable {
+    private static final Logger LOG = LoggerFactory.getLogger(ConsumerLagIndex.class);
+
+    private static final int DEFAULT_FEED_INTERVAL_MS = 1000;
+
+    private final Storage storage;
+    private final DynamicConfig config;
+    private final ConcurrentMap<String, SubjectLag> subjects = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService feedExecutor;
+
+    public ConsumerLagIndex(final Storage storage, final DynamicConfig config) {
+        this.storage = storage;
+        this.config = config;
+        this.feedExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("consumer-lag-feed"));
+    }
+
+    /**
+     * storage启动之后调用，把已有消费进度的消费组放进索引
+     */
+    public void start() {
+        final Table<String, String, ConsumerGroupProgress> progresses = storage.allConsumerGroupProgresses();
+        for (final Table.Cell<String, String, ConsumerGroupProgress> cell : progresses.cellSet()) {
+            group(cell.getRowKey(), cell.getColumnKey());
+        }
+
+        final int interval = config.getInt("lag.feed.interval.ms", DEFAULT_FEED_INTERVAL_MS);
+        feedExecutor.scheduleWithFixedDelay(this::publishChanges, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onEvent(final ConsumerLogWroteEvent event) {
+        if (!event.isSuccess()) return;
+
+        final SubjectLag subjectLag = subjects.get(event.getSubject());
+        if (subjectLag == null) return;
+
+        subjectLag.maxSequence = storage.getMaxMessageSequence(event.getSubject());
+        subjectLag.version.incrementAndGet();
+    }
+
+    public GroupLag group(final String subject, final String group) {
+        final SubjectLag subjectLag = subject(subject);
+        GroupLag groupLag = subjectLag.groups.get(group);
+        if (groupLag == null) {
+            final GroupLag newGroupLag = new GroupLag(subjectLag, group);
+            groupLag = subjectLag.groups.putIfAbsent(group, newGroupLag);
+            if (groupLag == null) {
+                groupLag = newGroupLag;
+            }
+        }
+        return groupLag;
+    }
+
+    private SubjectLag subject(final String subject) {
+        SubjectLag subjectLag = subjects.get(subject);
+        if (subjectLag == null) {
+            final SubjectLag newSubjectLag = new SubjectLag(subject, storage.getMaxMessageSequence(subject));
+            subjectLag = subjects.putIfAbsent(subject, newSubjectLag);
+            if (subjectLag == null) {
+                subjectLag = newSubjectLag;
+            }
+        }
+        return subjectLag;
+    }
+
+    public long getPullLag(final String subject, final String group) {
+        return group(subject, group).pullLag();
+    }
+
+    public Map<String, ConsumerLag> getSubjectConsumerLag(final String subject) {
+        final SubjectLag subjectLag = subjects.get(subject);
+        if (subjectLag == null) {
+            return Collections.emptyMap();
+        }
+        return subjectLag.snapshot();
+    }
+
+    /**
+     * 订阅堆积变化，每个周期内有变化的subject会推送一次全量快照
+     */
+    public void subscribe(final Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(final Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void publishChanges() {
+        if (listeners.isEmpty()) return;
+
+        for (final SubjectLag subjectLag : subjects.values()) {
+            final long version = subjectLag.version.get();
+            if (version == subjectLag.publishedVersion) continue;
+            subjectLag.publishedVersion = version;
+
+            final Map<String, ConsumerLag> lags = subjectLag.snapshot();
+            for (final Listener listener : listeners) {
+                try {
+                    listener.onLagChanged(subjectLag.subject, lags);
+                } catch (Throwable e) {
+                    LOG.error("notify consumer lag change failed. subject: {}", subjectLag.subject, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        feedExecutor.shutdown();
+    }
+
+    public interface Listener {
+        void onLagChanged(final String subject, final Map<String, ConsumerLag> lags);
+    }
+
+    private static class SubjectLag {
+        private final String subject;
+        private final ConcurrentMap<String, GroupLag> groups = new ConcurrentHashMap<>();
+        private final AtomicLong version = new AtomicLong(0);
+        private volatile long maxSequence;
+
+        // 只在推送线程里读写
+        private long publishedVersion = 0;
+
+        private SubjectLag(final String subject, final long maxSequence) {
+            this.subject = subject;
+            this.maxSequence = maxSequence;
+        }
+
+        private Map<String, ConsumerLag> snapshot() {
+            final Map<String, ConsumerLag> lags = new HashMap<>(groups.size());
+            for (final GroupLag groupLag : groups.values()) {
+                lags.put(groupLag.group, new ConsumerLag(groupLag.pullLag(), groupLag.ackLag.get()));
+            }
+            return lags;
+        }
+    }
+
+    public class GroupLag {
+        private final SubjectLag subjectLag;
+        private final String group;
+        private final AtomicLong ackLag = new AtomicLong(0);
+        private volatile ConsumeQueue consumeQueue;
+
+        private GroupLag(final SubjectLag subjectLag, final String group) {
+            this.subjectLag = subjectLag;
+            this.group = group;
+        }
+
+        /**
+         * 消费者的pull sequence或ack sequence发生变化时调用
+         */
+        public void addAckLag(final long delta) {
+            if (delta == 0) return;
+            ackLag.addAndGet(delta);
+            subjectLag.version.incrementAndGet();
+        }
+
+        long pullLag() {
+            ConsumeQueue queue = consumeQueue;
+            if (queue == null) {
+                queue = storage.locateConsumeQueue(subjectLag.subject, group);
+                consumeQueue = queue;
+            }
+            return Math.max(0, subjectLag.maxSequence - queue.getNextSequence());
+        }
+    }
+}
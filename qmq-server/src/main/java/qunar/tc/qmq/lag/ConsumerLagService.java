@@ -17,12 +17,7 @@
 package qunar.tc.qmq.lag;
 
 import qunar.tc.qmq.base.ConsumerLag;
-import qunar.tc.qmq.store.ConsumeQueue;
-import qunar.tc.qmq.store.ConsumerGroupProgress;
-import qunar.tc.qmq.store.ConsumerProgress;
-import qunar.tc.qmq.store.Storage;
 
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -30,44 +25,21 @@ import java.util.Map;
  * @since 2018/7/31
  */
 public class ConsumerLagService {
-    private final Storage storage;
+    private final ConsumerLagIndex lagIndex;
 
-    public ConsumerLagService(final Storage storage) {
-        this.storage = storage;
+    public ConsumerLagService(final ConsumerLagIndex lagIndex) {
+        this.lagIndex = lagIndex;
     }
 
     public Map<String, ConsumerLag> getSubjectConsumerLag(final String subject) {
-        final Map<String, ConsumeQueue> consumeQueues = storage.locateSubjectConsumeQueues(subject);
-        final Map<String, ConsumerLag> lags = new HashMap<>();
-        for (final Map.Entry<String, ConsumeQueue> entry : consumeQueues.entrySet()) {
-            final String group = entry.getKey();
-            final ConsumeQueue consumeQueue = entry.getValue();
-            final ConsumerGroupProgress progress = storage.getConsumerGroupProgress(subject, group);
-
-            final long pullLag = consumeQueue.getQueueCount();
-            final long ackLag = computeAckLag(progress);
-            lags.put(group, new ConsumerLag(pullLag, ackLag));
-        }
-        return lags;
+        return lagIndex.getSubjectConsumerLag(subject);
     }
 
+    public void subscribe(final ConsumerLagIndex.Listener listener) {
+        lagIndex.subscribe(listener);
+    }
 
-    private long computeAckLag(final ConsumerGroupProgress progress) {
-        if (progress == null) {
-            return 0;
-        }
-
-        final Map<String, ConsumerProgress> consumers = progress.getConsumers();
-        if (consumers == null || consumers.isEmpty()) {
-            return progress.getPull();
-        }
-
-        long totalAckLag = 0;
-        for (final ConsumerProgress consumer : consumers.values()) {
-            // TODO(keli.wang): check if pull - ack is the right lag
-            final long ackLag = consumer.getPull() - consumer.getAck();
-            totalAckLag += ackLag;
-        }
-        return totalAckLag;
+    public void unsubscribe(final ConsumerLagIndex.Listener listener) {
+        lagIndex.unsubscribe(listener);
     }
 }
@@ -24,6 +24,7 @@ import qunar.tc.qmq.base.ConsumeManageRequest;
 import qunar.tc.qmq.protocol.CommandCode;
 import qunar.tc.qmq.protocol.Datagram;
 import qunar.tc.qmq.protocol.RemotingCommand;
+import qunar.tc.qmq.store.ConsumeFromWhere;
 import qunar.tc.qmq.store.Storage;
 import qunar.tc.qmq.util.RemotingBuilder;
 import qunar.tc.qmq.utils.PayloadHolderUtils;
@@ -53,7 +54,11 @@ public class ConsumerManageProcessor extends AbstractRequestProcessor {
             ctx.writeAndFlush(datagram);
             return null;
         }
-        store.updateConsumeQueue(request.getSubject(), request.getGroup(), request.getConsumerFromWhere());
+        if (request.getConsumerFromWhere() == ConsumeFromWhere.TIMESTAMP.getCode()) {
+            store.updateConsumeQueueByTime(request.getSubject(), request.getGroup(), request.getTimestamp());
+        } else {
+            store.updateConsumeQueue(request.getSubject(), request.getGroup(), request.getConsumerFromWhere());
+        }
 
         final Datagram datagram = RemotingBuilder.buildEmptyResponseDatagram(CommandCode.SUCCESS, command.getHeader());
         datagram.getHeader().setVersion(command.getHeader().getVersion());
@@ -73,6 +78,9 @@ public class ConsumerManageProcessor extends AbstractRequestProcessor {
         request.setSubject(subject);
         request.setGroup(consumerGroup);
         request.setConsumerFromWhere(code);
+        if (code == ConsumeFromWhere.TIMESTAMP.getCode() && buf.readableBytes() >= Long.BYTES) {
+            request.setTimestamp(buf.readLong());
+        }
         return request;
     }
 }
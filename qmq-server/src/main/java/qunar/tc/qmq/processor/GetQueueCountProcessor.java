@@ -18,11 +18,11 @@ package qunar.tc.qmq.processor;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import qunar.tc.qmq.lag.ConsumerLagIndex;
 import qunar.tc.qmq.protocol.CommandCode;
 import qunar.tc.qmq.protocol.Datagram;
 import qunar.tc.qmq.protocol.PayloadHolder;
 import qunar.tc.qmq.protocol.RemotingCommand;
-import qunar.tc.qmq.store.MessageStoreWrapper;
 import qunar.tc.qmq.util.RemotingBuilder;
 import qunar.tc.qmq.utils.PayloadHolderUtils;
 
@@ -35,10 +35,10 @@ import java.util.concurrent.CompletableFuture;
  * 6/19/18
  */
 public class GetQueueCountProcessor extends AbstractRequestProcessor {
-    private final MessageStoreWrapper store;
+    private final ConsumerLagIndex lagIndex;
 
-    public GetQueueCountProcessor(MessageStoreWrapper store) {
-        this.store = store;
+    public GetQueueCountProcessor(ConsumerLagIndex lagIndex) {
+        this.lagIndex = lagIndex;
     }
 
     @Override
@@ -47,7 +47,7 @@ public class GetQueueCountProcessor extends AbstractRequestProcessor {
             List<Consumer> consumers = deserialize(request);
             List<Long> result = new ArrayList<>(consumers.size());
             for (Consumer consumer : consumers) {
-                long queueCount = store.getQueueCount(consumer.subject, consumer.group);
+                long queueCount = lagIndex.getPullLag(consumer.subject, consumer.group);
                 result.add(queueCount);
             }
             final Datagram response = RemotingBuilder.buildResponseDatagram(CommandCode.SUCCESS, request.getHeader(), new GetQueueCountPayloadHolder(result));
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.processor;
+
+import qunar.tc.qmq.configuration.DynamicConfig;
+import qunar.tc.qmq.lag.ConsumerLagIndex;
+import qunar.tc.qmq.protocol.consumer.PullHint;
+import qunar.tc.qmq.protocol.consumer.PullRequest;
+import qunar.tc.qmq.store.Storage;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 根据subject的消息到达速率和consumer group的积压给出下一次拉取的建议
+ * <p>
+ * 有积压时建议大batch、不等待；没有积压时按到达速率估算攒够一批需要的时间作为长轮询等待时间
+ */
+public class PullHintAdvisor {
+    private static final long SAMPLE_INTERVAL_MS = 1000;
+    private static final double ALPHA = 0.3;
+    // 没有积压时希望一次长轮询大约攒到的消息条数
+    private static final double EXPECTED_MESSAGES_PER_WAIT = 2;
+
+    private final DynamicConfig config;
+    private final Storage storage;
+    private final ConsumerLagIndex lagIndex;
+
+    private final ConcurrentMap<String, ArrivalRate> rates = new ConcurrentHashMap<>();
+
+    public PullHintAdvisor(final DynamicConfig config, final Storage storage, final ConsumerLagIndex lagIndex) {
+        this.config = config;
+        this.storage = storage;
+        this.lagIndex = lagIndex;
+    }
+
+    public PullHint advise(final PullRequest request) {
+        if (!config.getBoolean("pull.hint.enable", true)) return null;
+        if (request.isBroadcast()) return null;
+
+        final int maxBatch = config.getInt("pull.hint.max.batch.size", 1000);
+        final int maxWait = config.getInt("pull.hint.max.wait.ms", 30000);
+
+        final String subject = request.getSubject();
+        final double rate = rates.computeIfAbsent(subject, ArrivalRate::new).sample();
+        final long backlog = Math.max(0, lagIndex.getPullLag(subject, request.getGroup()));
+
+        final long batch = Math.max(Math.max(request.getRequestNum(), backlog), (long) Math.ceil(rate));
+        final int batchSize = (int) Math.min(maxBatch, batch);
+
+        final int timeout = (int) Math.max(0, request.getTimeoutMillis());
+        final int waitMillis;
+        if (backlog > 0) {
+            waitMillis = timeout;
+        } else if (rate <= 0) {
+            waitMillis = maxWait;
+        } else {
+            final long expected = (long) (EXPECTED_MESSAGES_PER_WAIT * 1000 / rate);
+            waitMillis = (int) Math.min(maxWait, Math.max(timeout, expected));
+        }
+        return new PullHint(batchSize, waitMillis);
+    }
+
+    private class ArrivalRate {
+        private final String subject;
+
+        private long lastSampleTime = -1;
+        private long lastSequence;
+        // 每秒到达的消息数
+        private volatile double rate = 0;
+
+        private ArrivalRate(final String subject) {
+            this.subject = subject;
+        }
+
+        synchronized double sample() {
+            final long now = System.currentTimeMillis();
+            if (lastSampleTime < 0) {
+                lastSampleTime = now;
+                lastSequence = storage.getMaxMessageSequence(subject);
+                return rate;
+            }
+
+            final long elapsed = now - lastSampleTime;
+            if (elapsed < SAMPLE_INTERVAL_MS) return rate;
+
+            final long sequence = storage.getMaxMessageSequence(subject);
+            final double current = Math.max(0, sequence - lastSequence) * 1000.0 / elapsed;
+            rate = ALPHA * current + (1 - ALPHA) * rate;
+            lastSampleTime = now;
+            lastSequence = sequence;
+            return rate;
+        }
+    }
+}
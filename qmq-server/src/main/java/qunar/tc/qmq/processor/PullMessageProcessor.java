@@ -38,6 +38,7 @@ import qunar.tc.qmq.protocol.CommandCode;
 import qunar.tc.qmq.protocol.Datagram;
 import qunar.tc.qmq.protocol.RemotingCommand;
 import qunar.tc.qmq.protocol.RemotingHeader;
+import qunar.tc.qmq.protocol.consumer.PullHint;
 import qunar.tc.qmq.protocol.consumer.PullRequest;
 import qunar.tc.qmq.protocol.consumer.PullRequestSerde;
 import qunar.tc.qmq.stats.BrokerStats;
@@ -58,6 +59,7 @@ import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
+import static qunar.tc.qmq.protocol.RemotingHeader.VERSION_10;
 import static qunar.tc.qmq.protocol.RemotingHeader.VERSION_8;
 import static qunar.tc.qmq.util.RemotingBuilder.buildResponseHeader;
 
@@ -79,14 +81,17 @@ public class PullMessageProcessor extends AbstractRequestProcessor implements Fi
     private final SubscriberStatusChecker subscriberStatusChecker;
     private final PullMessageWorker pullMessageWorker;
     private final PullRequestSerde pullRequestSerde;
+    private final PullHintAdvisor pullHintAdvisor;
 
     public PullMessageProcessor(final DynamicConfig config,
                                 final ActorSystem actorSystem,
                                 final MessageStoreWrapper messageStoreWrapper,
-                                final SubscriberStatusChecker subscriberStatusChecker) {
+                                final SubscriberStatusChecker subscriberStatusChecker,
+                                final PullHintAdvisor pullHintAdvisor) {
         this.config = config;
         this.actorSystem = actorSystem;
         this.subscriberStatusChecker = subscriberStatusChecker;
+        this.pullHintAdvisor = pullHintAdvisor;
         this.pullMessageWorker = new PullMessageWorker(messageStoreWrapper, actorSystem);
         this.pullRequestSerde = new PullRequestSerde();
         this.timer.start();
@@ -308,7 +313,17 @@ public class PullMessageProcessor extends AbstractRequestProcessor implements Fi
         void processNoMessageResult() {
             QMon.pulledNoMessagesCountInc(subject, group);
 
-            final Datagram response = RemotingBuilder.buildEmptyResponseDatagram(CommandCode.NO_MESSAGE, requestHeader);
+            final PullHint hint = hint();
+            final Datagram response;
+            if (hint == null) {
+                response = RemotingBuilder.buildEmptyResponseDatagram(CommandCode.NO_MESSAGE, requestHeader);
+            } else {
+                // 和有消息时的响应格式一致：pull log offset + hint
+                response = RemotingBuilder.buildResponseDatagram(CommandCode.NO_MESSAGE, requestHeader, out -> {
+                    out.writeLong(-1);
+                    out.writeLong(hint.encode());
+                });
+            }
             ctx.writeAndFlush(response).addListener(future -> monitorPullProcessTime());
         }
 
@@ -320,8 +335,24 @@ public class PullMessageProcessor extends AbstractRequestProcessor implements Fi
 
             QMon.pulledMessagesCountInc(subject, group, pullMessageResult.getMessageNum());
             QMon.pulledMessageBytesCountInc(subject, group, pullMessageResult.getBufferTotalSize());
-            final ByteBuf payload = toPayload(pullMessageResult, requestHeader);
-            ctx.writeAndFlush(new DataTransfer(buildResponseHeader(CommandCode.SUCCESS, requestHeader), payload)).addListener(future -> monitorPullProcessTime());
+            final RemotingHeader responseHeader = buildResponseHeader(CommandCode.SUCCESS, requestHeader);
+            if (requestHeader.getVersion() >= VERSION_8) {
+                final PullHint hint = hint();
+                final long encodedHint = hint == null ? PullHint.NONE : hint.encode();
+                ctx.writeAndFlush(PullMessageResponse.newInstance(responseHeader, pullMessageResult, encodedHint)).addListener(future -> monitorPullProcessTime());
+            } else {
+                //老客户端需要去掉tag，只能拷贝一份
+                final ByteBuf payload = toPayload(pullMessageResult, requestHeader);
+                ctx.writeAndFlush(new DataTransfer(responseHeader, payload)).addListener(future -> monitorPullProcessTime());
+            }
+        }
+
+        /**
+         * 老客户端不认识hint，不返回
+         */
+        private PullHint hint() {
+            if (requestHeader.getVersion() < VERSION_10) return null;
+            return pullHintAdvisor.advise(pullRequest);
         }
 
         private void monitorPullProcessTime() {
@@ -334,7 +365,8 @@ public class PullMessageProcessor extends AbstractRequestProcessor implements Fi
                 int payloadSize = 8 + 8 + result.getBufferTotalSize();
                 final ByteBuf output = ByteBufAllocator.DEFAULT.ioBuffer(payloadSize);
                 output.writeLong(result.getPullLogOffset());
-                output.writeLong(-1);
+                final PullHint hint = hint();
+                output.writeLong(hint == null ? PullHint.NONE : hint.encode());
 
                 final List<Buffer> buffers = result.getBuffers();
                 for (final Buffer buffer : buffers) {
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.processor;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.FileRegion;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.Recycler;
+import qunar.tc.qmq.base.PullMessageResult;
+import qunar.tc.qmq.protocol.RemotingHeader;
+import qunar.tc.qmq.store.buffer.Buffer;
+import qunar.tc.qmq.utils.HeaderSerializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * 拉取响应，直接把store里读出来的消息buffer用gathering write写到socket，不再拷贝一份payload
+ * <p>
+ * 对象和buffer数组都通过Recycler复用，store的buffer在写完(或者失败)release时才释放
+ */
+final class PullMessageResponse extends AbstractReferenceCounted implements FileRegion {
+    // pull log offset + pull hint
+    private static final int PREFIX_SIZE = 8 + 8;
+    private static final int INITIAL_BUFFERS = 64;
+
+    private static final Recycler<PullMessageResponse> RECYCLER = new Recycler<PullMessageResponse>() {
+        @Override
+        protected PullMessageResponse newObject(Handle handle) {
+            return new PullMessageResponse(handle);
+        }
+    };
+
+    private final Recycler.Handle handle;
+
+    private ByteBuffer[] nioBuffers = new ByteBuffer[INITIAL_BUFFERS];
+    private int nioBufferCount;
+    // 第一个还没有写完的buffer
+    private int cursor;
+
+    private ByteBuf header;
+    private List<Buffer> messages;
+    private long count;
+    private long transferred;
+
+    private PullMessageResponse(Recycler.Handle handle) {
+        this.handle = handle;
+    }
+
+    static PullMessageResponse newInstance(RemotingHeader responseHeader, PullMessageResult result, long hint) {
+        final PullMessageResponse response = RECYCLER.get();
+        response.setRefCnt(1);
+        response.init(responseHeader, result, hint);
+        return response;
+    }
+
+    private void init(RemotingHeader responseHeader, PullMessageResult result, long hint) {
+        messages = result.getBuffers();
+        final int size = messages.size();
+        if (nioBuffers.length < size + 1) {
+            nioBuffers = new ByteBuffer[Math.max(size + 1, nioBuffers.length * 2)];
+        }
+
+        int payloadSize = PREFIX_SIZE;
+        for (int i = 0; i < size; i++) {
+            final ByteBuffer message = messages.get(i).getBuffer();
+            nioBuffers[i + 1] = message;
+            payloadSize += message.remaining();
+        }
+
+        header = HeaderSerializer.serialize(responseHeader, payloadSize, PREFIX_SIZE);
+        header.writeLong(result.getPullLogOffset());
+        header.writeLong(hint);
+        nioBuffers[0] = header.nioBuffer();
+        nioBufferCount = size + 1;
+
+        count = header.readableBytes() + payloadSize - PREFIX_SIZE;
+        transferred = 0;
+        cursor = 0;
+    }
+
+    @Override
+    public long position() {
+        return 0;
+    }
+
+    @Override
+    public long transfered() {
+        return transferred;
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public long transferTo(WritableByteChannel target, long position) throws IOException {
+        final GatheringByteChannel channel = (GatheringByteChannel) target;
+        final long written = channel.write(nioBuffers, cursor, nioBufferCount - cursor);
+        transferred += written;
+        while (cursor < nioBufferCount && !nioBuffers[cursor].hasRemaining()) {
+            cursor++;
+        }
+        return written;
+    }
+
+    @Override
+    protected void deallocate() {
+        header.release();
+        header = null;
+        for (final Buffer message : messages) {
+            message.release();
+        }
+        messages = null;
+        for (int i = 0; i < nioBufferCount; i++) {
+            nioBuffers[i] = null;
+        }
+        nioBufferCount = 0;
+        RECYCLER.recycle(this, handle);
+    }
+}
@@ -17,11 +17,15 @@
 package qunar.tc.qmq.processor;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import com.google.common.base.Function;
+import com.google.common.base.Splitter;
 import com.google.common.eventbus.Subscribe;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -44,7 +48,9 @@ import qunar.tc.qmq.protocol.Datagram;
 import qunar.tc.qmq.protocol.PayloadHolder;
 import qunar.tc.qmq.protocol.RemotingCommand;
 import qunar.tc.qmq.protocol.producer.MessageProducerCode;
+import qunar.tc.qmq.store.MessageLogFlushedEvent;
 import qunar.tc.qmq.store.MessageStoreWrapper;
+import qunar.tc.qmq.store.event.FixedExecOrderEventBus;
 import qunar.tc.qmq.util.RemotingBuilder;
 import qunar.tc.qmq.utils.CharsetUtils;
 import qunar.tc.qmq.utils.RetrySubjectUtils;
@@ -54,19 +60,36 @@ import qunar.tc.qmq.utils.SubjectUtils;
  * @author yunfeng.yang
  * @since 2017/8/7
  */
-public class SendMessageWorker {
+public class SendMessageWorker implements FixedExecOrderEventBus.Listener<MessageLogFlushedEvent> {
     private static final Logger LOG = LoggerFactory.getLogger(SendMessageWorker.class);
 
+    private static final String DURABLE_MODE_NONE = "none";
+    private static final String DURABLE_MODE_HIGH = "high";
+    private static final String DURABLE_MODE_ALL = "all";
+
+    private static final Splitter SUBJECT_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
     private final DynamicConfig config;
     private final Invoker invoker;
     private final MessageStoreWrapper messageStore;
     private final Queue<ReceiveEntry> waitSlaveSyncQueue;
+    private final Queue<ReceiveEntry> waitFlushQueue;
+
+    private volatile String durableMode = DURABLE_MODE_NONE;
+    private volatile Set<String> durableSubjects = Collections.emptySet();
 
     public SendMessageWorker(final DynamicConfig config, final MessageStoreWrapper messageStore) {
         this.config = config;
         this.messageStore = messageStore;
         this.invoker = new ReceiveFilterChain().buildFilterChain(this::doInvoke);
         this.waitSlaveSyncQueue = new LinkedBlockingQueue<>();
+        this.waitFlushQueue = new LinkedBlockingQueue<>();
+        this.config.addListener(this::updateDurableConfig);
+    }
+
+    private void updateDurableConfig(final DynamicConfig conf) {
+        durableMode = conf.getString("flush.durable.mode", DURABLE_MODE_NONE);
+        durableSubjects = new HashSet<>(SUBJECT_SPLITTER.splitToList(conf.getString("flush.durable.subjects", "")));
     }
 
     ListenableFuture<Datagram> receive(final List<RawMessage> messages, final RemotingCommand cmd) {
@@ -110,7 +133,7 @@ public class SendMessageWorker {
             return;
         }
 
-        if (bigSlaveLag()) {
+        if (bigSlaveLag() || bigFlushLag()) {
             brokerReadOnly(message);
             return;
         }
@@ -145,6 +168,10 @@ public class SendMessageWorker {
         return shouldWaitSlave() && waitSlaveSyncQueue.size() >= config.getInt("receive.queue.size", 50000);
     }
 
+    private boolean bigFlushLag() {
+        return waitFlushQueue.size() >= config.getInt("receive.queue.size", 50000);
+    }
+
     private boolean shouldWaitSlave() {
         return config.getBoolean("wait.slave.wrote", false);
     }
@@ -161,11 +188,29 @@ public class SendMessageWorker {
     }
 
     private void offer(ReceivingMessage message, ReceiveResult result) {
-        if (!message.isHigh()) {
+        if (result.getCode() != MessageProducerCode.SUCCESS) {
             end(message, result);
             return;
         }
-        if (result.getCode() != MessageProducerCode.SUCCESS) {
+        if (shouldWaitFlush(message)) {
+            waitFlushQueue.offer(new ReceiveEntry(message, result));
+            return;
+        }
+        waitSlave(message, result);
+    }
+
+    /**
+     * 需要刷盘之后才能返回给producer
+     */
+    private boolean shouldWaitFlush(ReceivingMessage message) {
+        final String mode = durableMode;
+        if (DURABLE_MODE_ALL.equalsIgnoreCase(mode)) return true;
+        if (DURABLE_MODE_HIGH.equalsIgnoreCase(mode) && message.isHigh()) return true;
+        return durableSubjects.contains(message.getSubject());
+    }
+
+    private void waitSlave(ReceivingMessage message, ReceiveResult result) {
+        if (!message.isHigh()) {
             end(message, result);
             return;
         }
@@ -186,6 +231,18 @@ public class SendMessageWorker {
         }
     }
 
+    @Override
+    public void onEvent(MessageLogFlushedEvent event) {
+        final long flushedOffset = event.getFlushedOffset();
+        ReceiveEntry first;
+        while ((first = this.waitFlushQueue.peek()) != null) {
+            if (first.result.getEndOffsetOfMessage() > flushedOffset) break;
+
+            this.waitFlushQueue.poll();
+            waitSlave(first.message, first.result);
+        }
+    }
+
     @Subscribe
     @SuppressWarnings("unused")
     public void syncRequest(SyncRequest syncRequest) {
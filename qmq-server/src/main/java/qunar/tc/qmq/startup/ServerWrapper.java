@@ -28,6 +28,7 @@ import qunar.tc.qmq.configuration.DynamicConfig;
 import qunar.tc.qmq.consumer.ConsumerSequenceManager;
 import qunar.tc.qmq.consumer.OfflineActionHandler;
 import qunar.tc.qmq.consumer.SubscriberStatusChecker;
+import qunar.tc.qmq.lag.ConsumerLagIndex;
 import qunar.tc.qmq.meta.BrokerRegisterService;
 import qunar.tc.qmq.meta.BrokerRole;
 import qunar.tc.qmq.meta.MetaServerLocator;
@@ -64,6 +65,7 @@ public class ServerWrapper implements Disposable {
     private Storage storage;
     private SendMessageWorker sendMessageWorker;
     private ConsumerSequenceManager consumerSequenceManager;
+    private ConsumerLagIndex consumerLagIndex;
     private ExecutorService sendMessageExecutorService;
     private ExecutorService consumeManageExecutorService;
 
@@ -190,7 +192,9 @@ public class ServerWrapper implements Disposable {
     }
 
     private void initStorage() {
-        this.consumerSequenceManager = new ConsumerSequenceManager(storage);
+        this.consumerLagIndex = new ConsumerLagIndex(storage, config);
+        this.storage.registerEventListener(ConsumerLogWroteEvent.class, consumerLagIndex);
+        this.consumerSequenceManager = new ConsumerSequenceManager(storage, consumerLagIndex);
         this.subscriberStatusChecker = new SubscriberStatusChecker(config, storage, consumerSequenceManager);
         this.subscriberStatusChecker.init();
         this.messageStoreWrapper = new MessageStoreWrapper(config, storage, consumerSequenceManager);
@@ -198,6 +202,7 @@ public class ServerWrapper implements Disposable {
         this.storage.registerActionEventListener(handler);
         this.storage.start();
         // make sure init this after storage started
+        this.consumerLagIndex.start();
         this.consumerSequenceManager.init();
 
         this.sendMessageExecutorService = new ThreadPoolExecutor(1, 1,
@@ -206,6 +211,7 @@ public class ServerWrapper implements Disposable {
                 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory("consume-manage-processor"));
 
         this.sendMessageWorker = new SendMessageWorker(config, messageStoreWrapper);
+        this.storage.registerEventListener(MessageLogFlushedEvent.class, sendMessageWorker);
     }
 
     private void startServeSync() {
@@ -217,7 +223,8 @@ public class ServerWrapper implements Disposable {
     private void startServerHandlers() {
         final ActorSystem actorSystem = new ActorSystem("qmq");
 
-        final PullMessageProcessor pullMessageProcessor = new PullMessageProcessor(config, actorSystem, messageStoreWrapper, subscriberStatusChecker);
+        final PullMessageProcessor pullMessageProcessor = new PullMessageProcessor(config, actorSystem, messageStoreWrapper, subscriberStatusChecker,
+                new PullHintAdvisor(config, storage, consumerLagIndex));
         this.storage.registerEventListener(ConsumerLogWroteEvent.class, pullMessageProcessor);
         final SendMessageProcessor sendMessageProcessor = new SendMessageProcessor(sendMessageWorker);
         final AckMessageProcessor ackMessageProcessor = new AckMessageProcessor(actorSystem, consumerSequenceManager, subscriberStatusChecker);
@@ -239,6 +246,7 @@ public class ServerWrapper implements Disposable {
             this.resources.add(masterSlaveSyncManager);
         }
         this.resources.add(nettyServer);
+        this.resources.add(consumerLagIndex);
         this.resources.add(storage);
     }
 
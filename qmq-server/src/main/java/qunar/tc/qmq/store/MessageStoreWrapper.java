@@ -228,12 +228,16 @@ public class MessageStoreWrapper {
         if (list.size() == 1) return list.get(0);
 
         long pullLogOffset = list.get(0).getPullLogOffset();
-        List<Buffer> buffers = new ArrayList<>();
         int bufferTotalSize = 0;
         int messageNum = 0;
+        int bufferNum = 0;
         for (PullMessageResult result : list) {
             bufferTotalSize += result.getBufferTotalSize();
             messageNum += result.getMessageNum();
+            bufferNum += result.getBuffers().size();
+        }
+        List<Buffer> buffers = new ArrayList<>(bufferNum);
+        for (PullMessageResult result : list) {
             buffers.addAll(result.getBuffers());
         }
         return new PullMessageResult(pullLogOffset, buffers, bufferTotalSize, messageNum);
@@ -371,8 +375,4 @@ public class MessageStoreWrapper {
         if (pullRequest.isBroadcast()) return offset;
         return storage.getMessageSequenceByPullLog(pullRequest.getSubject(), pullRequest.getGroup(), pullRequest.getConsumerId(), offset);
     }
-
-    public long getQueueCount(String subject, String group) {
-        return storage.locateConsumeQueue(subject, group).getQueueCount();
-    }
 }
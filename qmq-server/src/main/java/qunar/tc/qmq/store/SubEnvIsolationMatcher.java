@@ -29,6 +29,7 @@ import qunar.tc.qmq.protocol.consumer.PullRequest;
 import qunar.tc.qmq.protocol.consumer.SubEnvIsolationPullFilter;
 import qunar.tc.qmq.store.buffer.Buffer;
 import qunar.tc.qmq.utils.CharsetUtils;
+import qunar.tc.qmq.utils.CompressionUtils;
 import qunar.tc.qmq.utils.Flags;
 
 import java.io.BufferedReader;
@@ -134,8 +135,8 @@ class SubEnvIsolationMatcher {
         final ByteBuffer message = result.getBuffer();
         message.mark();
         try {
-            skipUntilBody(message);
-            return isEnvMatch(filter, request, readBody(message));
+            final byte flag = skipUntilBody(message);
+            return isEnvMatch(filter, request, readBody(flag, message));
         } catch (Exception e) {
             LOG.error("check env match failed.", e);
             return false;
@@ -144,7 +145,7 @@ class SubEnvIsolationMatcher {
         }
     }
 
-    private void skipUntilBody(final ByteBuffer message) {
+    private byte skipUntilBody(final ByteBuffer message) {
         byte flag = message.get();
 
         skip(message, 8 + 8);
@@ -156,6 +157,7 @@ class SubEnvIsolationMatcher {
         if (Flags.hasTags(flag)) {
             skipTags(message);
         }
+        return flag;
     }
 
     private void skipTags(final ByteBuffer message) {
@@ -174,10 +176,16 @@ class SubEnvIsolationMatcher {
         message.position(message.position() + bytes);
     }
 
-    private Map<String, String> readBody(final ByteBuffer message) {
+    private Map<String, String> readBody(final byte flag, final ByteBuffer message) {
         final int bodySize = message.getInt();
-        final ByteBuffer bodyBuffer = message.slice();
+        ByteBuffer bodyBuffer = message.slice();
         bodyBuffer.limit(bodySize);
+        if (Flags.isCompressed(flag)) {
+            // 只有开启了环境隔离过滤的消费组才需要在broker上解压body
+            final byte[] data = new byte[bodySize];
+            bodyBuffer.get(data);
+            bodyBuffer = ByteBuffer.wrap(CompressionUtils.decompress(data));
+        }
 
         final Map<String, String> body = new HashMap<>();
         while (bodyBuffer.hasRemaining()) {
@@ -22,6 +22,7 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.LongSerializationPolicy;
+import org.eclipse.jetty.server.HttpOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import qunar.tc.qmq.base.RemoteMessageQuery;
@@ -29,6 +30,7 @@ import qunar.tc.qmq.concurrent.NamedThreadFactory;
 import qunar.tc.qmq.configuration.DynamicConfig;
 import qunar.tc.qmq.store.GetMessageResult;
 import qunar.tc.qmq.store.GetMessageStatus;
+import qunar.tc.qmq.store.OffsetRange;
 import qunar.tc.qmq.store.buffer.Buffer;
 import qunar.tc.qmq.store.Storage;
 import qunar.tc.qmq.utils.Bytes;
@@ -41,6 +43,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.*;
 
@@ -51,6 +54,8 @@ import java.util.concurrent.*;
 public class QueryMessageServlet extends HttpServlet {
     private static final Logger LOG = LoggerFactory.getLogger(QueryMessageServlet.class);
 
+    private static final int MAX_BATCH_MESSAGES = 128;
+
     private static final Gson serializer = new GsonBuilder().setLongSerializationPolicy(LongSerializationPolicy.STRING).create();
 
     private Storage store;
@@ -97,26 +102,18 @@ public class QueryMessageServlet extends HttpServlet {
             threadPoolExecutor.execute(() -> {
                 try {
                     final String subject = query.getSubject();
-                    final List<RemoteMessageQuery.MessageKey> keys = query.getKeys();
+                    final long[] sequences = sortedSequences(query.getKeys());
 
                     final ServletOutputStream os = response.getOutputStream();
-                    for (RemoteMessageQuery.MessageKey key : keys) {
-                        long sequence = key.getSequence();
-                        GetMessageResult result = store.getMessage(subject, sequence);
-                        if (result.getStatus() != GetMessageStatus.SUCCESS) continue;
-                        try {
-                            final byte[] sequenceBytes = Bytes.long2bytes(sequence);
-                            final List<Buffer> buffers = result.getBuffers();
-                            for (Buffer buffer : buffers) {
-                                os.write(sequenceBytes);
-                                ByteBuffer byteBuffer = buffer.getBuffer();
-                                byte[] arr = new byte[byteBuffer.remaining()];
-                                byteBuffer.get(arr);
-                                os.write(arr);
-                            }
-                        } finally {
-                            result.release();
+                    // 排序之后连续的sequence一次从consumer log里读出来
+                    int begin = 0;
+                    while (begin < sequences.length) {
+                        int end = begin + 1;
+                        while (end < sequences.length && end - begin < MAX_BATCH_MESSAGES && sequences[end] == sequences[end - 1] + 1) {
+                            end++;
                         }
+                        writeRange(os, subject, sequences[begin], end - begin);
+                        begin = end;
                     }
                     os.flush();
                     os.close();
@@ -132,6 +129,75 @@ public class QueryMessageServlet extends HttpServlet {
         return future;
     }
 
+    private static long[] sortedSequences(final List<RemoteMessageQuery.MessageKey> keys) {
+        final long[] sequences = new long[keys.size()];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = keys.get(i).getSequence();
+        }
+        Arrays.sort(sequences);
+
+        int size = 0;
+        for (int i = 0; i < sequences.length; i++) {
+            if (size == 0 || sequences[i] != sequences[size - 1]) {
+                sequences[size++] = sequences[i];
+            }
+        }
+        return Arrays.copyOf(sequences, size);
+    }
+
+    private void writeRange(final ServletOutputStream os, final String subject, final long beginSequence, final int count) throws IOException {
+        if (count > 1) {
+            final GetMessageResult result = store.pollMessages(subject, beginSequence, count);
+            try {
+                // 中间有读不到的消息时buffer和sequence对不上，退回到逐条读
+                if (isExactly(result, beginSequence, count)) {
+                    final List<Buffer> buffers = result.getBuffers();
+                    for (int i = 0; i < buffers.size(); i++) {
+                        writeMessage(os, beginSequence + i, buffers.get(i));
+                    }
+                    return;
+                }
+            } finally {
+                result.release();
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            final long sequence = beginSequence + i;
+            final GetMessageResult result = store.getMessage(subject, sequence);
+            if (result.getStatus() != GetMessageStatus.SUCCESS) continue;
+            try {
+                for (Buffer buffer : result.getBuffers()) {
+                    writeMessage(os, sequence, buffer);
+                }
+            } finally {
+                result.release();
+            }
+        }
+    }
+
+    private static boolean isExactly(final GetMessageResult result, final long beginSequence, final int count) {
+        if (result.getStatus() != GetMessageStatus.SUCCESS) return false;
+        final OffsetRange range = result.getConsumerLogRange();
+        return range != null
+                && range.getBegin() == beginSequence
+                && range.getEnd() == beginSequence + count - 1
+                && result.getMessageNum() == count;
+    }
+
+    private static void writeMessage(final ServletOutputStream os, final long sequence, final Buffer buffer) throws IOException {
+        os.write(Bytes.long2bytes(sequence));
+        final ByteBuffer byteBuffer = buffer.getBuffer();
+        if (os instanceof HttpOutput) {
+            // 直接从segment的buffer写出去，不再拷贝一份byte[]
+            ((HttpOutput) os).write(byteBuffer);
+            return;
+        }
+        byte[] arr = new byte[byteBuffer.remaining()];
+        byteBuffer.get(arr);
+        os.write(arr);
+    }
+
     @Override
     public void destroy() {
         super.destroy();
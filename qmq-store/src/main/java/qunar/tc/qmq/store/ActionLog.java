@@ -46,7 +46,8 @@ public class ActionLog implements Visitable<ActionEvent> {
 
     public ActionLog(final StorageConfig config) {
         this.config = config;
-        this.logManager = new LogManager(new File(config.getActionLogStorePath()), PER_SEGMENT_FILE_SIZE, new ActionLogSegmentValidator());
+        this.logManager = new LogManager(new File(config.getActionLogStorePath()), PER_SEGMENT_FILE_SIZE, new ActionLogSegmentValidator(),
+                config.isSegmentPreallocateEnable() ? new SegmentPreallocator(config.isSegmentWarmupEnable()) : null);
     }
 
     public synchronized PutMessageResult addAction(final Action action) {
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.store;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.ByteBuffer;
+
+/**
+ * appender直接往mmap的segment里写数据用的工具方法，不经过堆上的临时数组
+ */
+public final class AppendUtils {
+    private static final ByteBuffer ZEROS = ByteBuffer.allocateDirect(4096).asReadOnlyBuffer();
+
+    private AppendUtils() {
+    }
+
+    /**
+     * 把body的可读部分整体拷贝到target，不移动body的readerIndex
+     * <p>
+     * ByteBuf.getBytes(int, ByteBuffer)会一直写到target的limit，所以先把limit收到body的长度；
+     * composite的body也是按component逐段拷贝，不会像nioBuffer()那样先合并成一个新buffer
+     */
+    public static void writeBody(final ByteBuf body, final ByteBuffer target) {
+        final int limit = target.limit();
+        target.limit(target.position() + body.readableBytes());
+        try {
+            body.getBytes(body.readerIndex(), target);
+        } finally {
+            target.limit(limit);
+        }
+    }
+
+    /**
+     * 往target写len个0，segment尾部的空白可能有几十M，不再为它分配一个同样大小的数组
+     */
+    public static void fillZero(final ByteBuffer target, int len) {
+        while (len > 0) {
+            final ByteBuffer zeros = ZEROS.duplicate();
+            zeros.limit(Math.min(len, zeros.capacity()));
+            len -= zeros.remaining();
+            target.put(zeros);
+        }
+    }
+}
@@ -27,6 +27,7 @@ import qunar.tc.qmq.monitor.QMon;
 import qunar.tc.qmq.store.action.PullAction;
 import qunar.tc.qmq.store.action.RangeAckAction;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
@@ -324,17 +325,18 @@ public class CheckpointManager implements AutoCloseable {
         }
     }
 
-    void updateMessageReplayState(final MessageLogRecord meta) {
+    /**
+     * 一批consumer log写完之后更新一次
+     *
+     * @param subjectLastRecords 本批每个subject的最后一条消息
+     * @param meta               本批在message log中的最后一条消息，checkpoint的offset停在它之后
+     */
+    void updateMessageReplayState(final Collection<MessageLogRecord> subjectLastRecords, final MessageLogRecord meta) {
         messageCheckpointGuard.lock();
         try {
-            final String subject = meta.getSubject();
-            final long sequence = meta.getSequence();
-
             final Map<String, Long> sequences = messageCheckpoint.getMaxSequences();
-            if (sequences.containsKey(subject)) {
-                sequences.merge(subject, sequence, Math::max);
-            } else {
-                sequences.put(subject, sequence);
+            for (final MessageLogRecord record : subjectLastRecords) {
+                sequences.merge(record.getSubject(), record.getSequence(), Math::max);
             }
 
             final long offset = meta.getWroteOffset() + meta.getWroteBytes();
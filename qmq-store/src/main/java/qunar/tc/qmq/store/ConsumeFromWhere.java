@@ -21,7 +21,7 @@ package qunar.tc.qmq.store;
  * @since 2017/11/22
  */
 public enum ConsumeFromWhere {
-    UNKNOWN(0), LATEST(1), EARLIEST(2);
+    UNKNOWN(0), LATEST(1), EARLIEST(2), TIMESTAMP(3);
 
     private int code;
 
@@ -51,6 +51,10 @@ public class ConsumeQueue {
         this.nextSequence.set(nextSequence);
     }
 
+    public long getNextSequence() {
+        return nextSequence.get();
+    }
+
     public long getQueueCount() {
         return storage.getMaxMessageSequence(subject) - nextSequence.get();
     }
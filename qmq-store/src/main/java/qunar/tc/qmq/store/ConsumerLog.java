@@ -23,6 +23,7 @@ import qunar.tc.qmq.store.buffer.SegmentBuffer;
 
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -52,7 +53,9 @@ public class ConsumerLog {
     private final MessageAppender<MessageLogIndex, Void> messageLogIndexAppender;
     private final MessageAppender<MessageLogIndex, Void> messageLogIndexV2Appender;
     private final MessageAppender<SMTIndex, Void> smtIndexAppender;
+    private final MessageAppender<MessageLogIndexBatch, Integer> messageLogIndexBatchAppender;
     private final ReentrantLock writeGuard = new ReentrantLock();
+    private final ConsumerLogTimeIndex timeIndex = new ConsumerLogTimeIndex();
 
     private volatile long minSequence;
 
@@ -72,11 +75,13 @@ public class ConsumerLog {
         this.segmentBytes = unitBytes * SEGMENT_TOTAL_UNIT;
         this.logManager = new LogManager(new File(config.getConsumerLogStorePath(), subject),
                 segmentBytes,
-                new MaxSequenceLogSegmentValidator(maxSequence, unitBytes));
+                new MaxSequenceLogSegmentValidator(maxSequence, unitBytes),
+                config.isConsumerLogPreallocateEnable() ? new SegmentPreallocator(false) : null);
 
         this.messageLogIndexAppender = new MessageLogIndexAppender();
         this.messageLogIndexV2Appender = new MessageLogIndexV2Appender();
         this.smtIndexAppender = new SMTIndexAppender();
+        this.messageLogIndexBatchAppender = new MessageLogIndexBatchAppender(consumerLogV2Enable);
     }
 
     public int getUnitBytes() {
@@ -86,17 +91,65 @@ public class ConsumerLog {
     public boolean writeMessageLogIndex(final long sequence, final long wroteOffset, final int wroteBytes, final short headerSize) {
         final MessageLogIndex index = new MessageLogIndex(System.currentTimeMillis(), wroteOffset, wroteBytes, headerSize);
         if (consumerLogV2Enable) {
-            return writeUnit(sequence, index, messageLogIndexV2Appender);
+            return writeUnit(sequence, index.getTimestamp(), index, messageLogIndexV2Appender);
         } else {
-            return writeUnit(sequence, index, messageLogIndexAppender);
+            return writeUnit(sequence, index.getTimestamp(), index, messageLogIndexAppender);
+        }
+    }
+
+    /**
+     * 批量写入同一个subject的索引，一次加锁，连续的sequence按segment整段写入
+     *
+     * @param records 按sequence递增排列的message log记录
+     */
+    public boolean writeMessageLogIndexes(final List<MessageLogRecord> records) {
+        writeGuard.lock();
+        try {
+            final long timestamp = System.currentTimeMillis();
+            int from = 0;
+            while (from < records.size()) {
+                final long sequence = records.get(from).getSequence();
+                if (sequence < nextSequence()) {
+                    from++;
+                    continue;
+                }
+
+                final long expectedOffset = sequence * unitBytes;
+                LogSegment segment = logManager.locateSegment(expectedOffset);
+                if (segment == null) {
+                    segment = logManager.allocOrResetSegments(expectedOffset);
+                }
+                fillPreBlank(segment, expectedOffset);
+
+                int to = from + 1;
+                while (to < records.size() && records.get(to).getSequence() == records.get(to - 1).getSequence() + 1) {
+                    to++;
+                }
+
+                final AppendMessageResult<Integer> result = segment.append(new MessageLogIndexBatch(timestamp, records, from, to), messageLogIndexBatchAppender);
+                switch (result.getStatus()) {
+                    case SUCCESS:
+                        timeIndex.onWrite(sequence, timestamp);
+                        from += result.getAdditional();
+                        break;
+                    case END_OF_FILE:
+                        logManager.allocNextSegment();
+                        break;
+                    default:
+                        return false;
+                }
+            }
+            return true;
+        } finally {
+            writeGuard.unlock();
         }
     }
 
     public boolean writeSMTIndex(final long sequence, final long timestamp, final long tabletId, final int position, final int size) {
-        return writeUnit(sequence, new SMTIndex(timestamp, tabletId, position, size), smtIndexAppender);
+        return writeUnit(sequence, timestamp, new SMTIndex(timestamp, tabletId, position, size), smtIndexAppender);
     }
 
-    private <T> boolean writeUnit(final long sequence, final T unit, final MessageAppender<T, Void> appender) {
+    private <T> boolean writeUnit(final long sequence, final long timestamp, final T unit, final MessageAppender<T, Void> appender) {
         writeGuard.lock();
         try {
             if (sequence < nextSequence()) {
@@ -113,10 +166,11 @@ public class ConsumerLog {
             final AppendMessageResult result = segment.append(unit, appender);
             switch (result.getStatus()) {
                 case SUCCESS:
+                    timeIndex.onWrite(sequence, timestamp);
                     return true;
                 case END_OF_FILE:
                     logManager.allocNextSegment();
-                    return writeUnit(sequence, unit, appender);
+                    return writeUnit(sequence, timestamp, unit, appender);
                 default:
                     return false;
             }
@@ -181,6 +235,44 @@ public class ConsumerLog {
         }
     }
 
+    /**
+     * 查找第一条写入时间不早于timestamp的消息
+     *
+     * @return 对应的sequence，所有消息都早于timestamp时返回nextSequence
+     */
+    public long locateSequenceByTime(final long timestamp) {
+        final OffsetBound bound = getOffsetBound();
+        final long[] range = timeIndex.narrow(timestamp, bound.getMinOffset(), bound.getMaxOffset());
+
+        long low = range[0];
+        long high = range[1];
+        while (low < high) {
+            final long mid = (low + high) >>> 1;
+            if (readTimestamp(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // 读不到(segment已删除)的当做足够早的消息
+    private long readTimestamp(final long sequence) {
+        final long offset = sequence * unitBytes;
+        final LogSegment segment = logManager.locateSegment(offset);
+        if (segment == null) return Long.MIN_VALUE;
+
+        final SegmentBuffer buffer = segment.selectSegmentBuffer((int) (offset % segmentBytes), unitBytes);
+        if (buffer == null || !buffer.retain()) return Long.MIN_VALUE;
+        try {
+            // v2的unit前面有2字节magic和2字节type
+            return buffer.getBuffer().getLong(consumerLogV2Enable ? 4 : 0);
+        } finally {
+            buffer.release();
+        }
+    }
+
     public void setMinSequence(long sequence) {
         long computedMinSequence = getMinOffset();
         if (computedMinSequence < sequence) {
@@ -220,6 +312,7 @@ public class ConsumerLog {
 
     public void clean() {
         logManager.deleteExpiredSegments(config.getConsumerLogRetentionMs());
+        timeIndex.truncate(getMinOffset());
     }
 
     public enum PayloadType {
@@ -309,6 +402,59 @@ public class ConsumerLog {
         }
     }
 
+    private static final class MessageLogIndexBatch {
+        private final long timestamp;
+        private final List<MessageLogRecord> records;
+        private final int from;
+        private final int to;
+
+        private MessageLogIndexBatch(final long timestamp, final List<MessageLogRecord> records, final int from, final int to) {
+            this.timestamp = timestamp;
+            this.records = records;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * 直接写入目标buffer，不经过working buffer中转，写满当前segment为止，返回实际写入的条数
+     */
+    private static final class MessageLogIndexBatchAppender implements MessageAppender<MessageLogIndexBatch, Integer> {
+        private final boolean v2;
+        private final int unitBytes;
+
+        private MessageLogIndexBatchAppender(final boolean v2) {
+            this.v2 = v2;
+            this.unitBytes = v2 ? CONSUMER_LOG_V2_UNIT_BYTES : CONSUMER_LOG_UNIT_BYTES;
+        }
+
+        @Override
+        public AppendMessageResult<Integer> doAppend(final long baseOffset, final ByteBuffer targetBuffer, final int freeSpace, final MessageLogIndexBatch batch) {
+            final int count = Math.min(batch.to - batch.from, freeSpace / unitBytes);
+            if (count <= 0) {
+                return new AppendMessageResult<>(AppendMessageStatus.END_OF_FILE);
+            }
+
+            final long wroteOffset = baseOffset + targetBuffer.position();
+            for (int i = batch.from; i < batch.from + count; i++) {
+                final MessageLogRecord record = batch.records.get(i);
+                if (v2) {
+                    targetBuffer.putShort(MagicCode.CONSUMER_LOG_MAGIC_V2);
+                    targetBuffer.putShort(PayloadType.MESSAGE_LOG_INDEX.getCode());
+                }
+                targetBuffer.putLong(batch.timestamp);
+                targetBuffer.putLong(record.getWroteOffset());
+                targetBuffer.putInt(record.getWroteBytes());
+                targetBuffer.putShort(record.getHeaderSize());
+                if (v2) {
+                    targetBuffer.putShort((short) 0);
+                    targetBuffer.putInt(0);
+                }
+            }
+            return new AppendMessageResult<>(AppendMessageStatus.SUCCESS, wroteOffset, count * unitBytes, count);
+        }
+    }
+
     public static final class SMTIndex {
         private final long timestamp;
         private final long tabletId;
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.store;
+
+import java.util.Arrays;
+
+/**
+ * consumer log的稀疏时间索引，每隔SEQUENCE_INTERVAL条或者TIME_INTERVAL_MS记录一个(timestamp, sequence)
+ * <p>
+ * 只在内存里维护，查询时先用索引缩小范围，再在consumer log里二分，重启之前写入的部分直接二分整个consumer log
+ */
+class ConsumerLogTimeIndex {
+    private static final long SEQUENCE_INTERVAL = 4096;
+    private static final long TIME_INTERVAL_MS = 10_000;
+
+    private long[] timestamps = new long[64];
+    private long[] sequences = new long[64];
+    private int size = 0;
+
+    // 只在写consumer log的线程里访问
+    private long lastSequence = -1;
+    private long lastTimestamp = -1;
+
+    void onWrite(final long sequence, final long timestamp) {
+        if (lastSequence >= 0 && sequence - lastSequence < SEQUENCE_INTERVAL && timestamp - lastTimestamp < TIME_INTERVAL_MS) {
+            return;
+        }
+
+        lastSequence = sequence;
+        lastTimestamp = timestamp;
+        add(sequence, timestamp);
+    }
+
+    private synchronized void add(final long sequence, final long timestamp) {
+        if (size == sequences.length) {
+            sequences = Arrays.copyOf(sequences, size * 2);
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+        }
+        sequences[size] = sequence;
+        timestamps[size] = timestamp;
+        size++;
+    }
+
+    /**
+     * 删除minSequence之前的索引项
+     */
+    synchronized void truncate(final long minSequence) {
+        int from = 0;
+        while (from < size && sequences[from] < minSequence) {
+            from++;
+        }
+        if (from == 0) return;
+
+        System.arraycopy(sequences, from, sequences, 0, size - from);
+        System.arraycopy(timestamps, from, timestamps, 0, size - from);
+        size -= from;
+    }
+
+    /**
+     * 把[begin, end)缩小到包含第一个时间戳不早于timestamp的sequence的区间
+     *
+     * @return {begin, end}
+     */
+    synchronized long[] narrow(final long timestamp, long begin, long end) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        // low是第一个时间戳不早于timestamp的索引项
+        if (low > 0) {
+            begin = Math.max(begin, sequences[low - 1] + 1);
+        }
+        if (low < size) {
+            end = Math.min(end, sequences[low] + 1);
+        }
+        return new long[]{begin, Math.max(begin, end)};
+    }
+}
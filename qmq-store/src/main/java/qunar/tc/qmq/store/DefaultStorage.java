@@ -32,8 +32,10 @@ import qunar.tc.qmq.store.result.Result;
 
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
@@ -50,6 +52,9 @@ public class DefaultStorage implements Storage {
 
     private static final int DEFAULT_FLUSH_INTERVAL = 500; // ms
 
+    public static final String FLUSH_POLICY_PERIODIC = "periodic";
+    public static final String FLUSH_POLICY_GROUP_COMMIT = "group_commit";
+
     private final StorageConfig config;
     private final CheckpointManager checkpointManager;
 
@@ -72,7 +77,9 @@ public class DefaultStorage implements Storage {
 
     private final ScheduledExecutorService logCleanerExecutor;
 
-    private final PeriodicFlushService messageLogFlushService;
+    private final FlushService messageLogFlushService;
+    // 只有group commit刷盘策略才有，写入之后唤醒刷盘线程
+    private final GroupCommitFlushService groupCommitFlushService;
     private final PeriodicFlushService actionLogFlushService;
 
     public DefaultStorage(final BrokerRole role, final StorageConfig config, final CheckpointLoader loader) {
@@ -105,14 +112,23 @@ public class DefaultStorage implements Storage {
             this.messageEventBus.subscribe(MessageLogRecord.class, new BuildMessageMemTableEventListener(config, memTableManager, sortedMessagesTable));
             this.messageEventBus.subscribe(MessageLogRecord.class, event -> messageEventBus.post(new ConsumerLogWroteEvent(event.getSubject(), true)));
         } else {
-            this.messageEventBus.subscribe(MessageLogRecord.class, new BuildConsumerLogEventListener(consumerLogManager));
+            final BuildConsumerLogEventListener buildConsumerLogEventListener = new BuildConsumerLogEventListener(consumerLogManager);
+            this.messageEventBus.subscribe(MessageLogRecord.class, buildConsumerLogEventListener);
+            this.messageEventBus.subscribe(LogIterateBatchEndEvent.class, event -> buildConsumerLogEventListener.flush());
             this.messageEventBus.subscribe(MessageLogRecord.class, consumerLogFlusher);
         }
         this.messageLogIterateService = new LogIterateService<>("ReplayMessageLog", config, messageLog, checkpointManager.getMessageCheckpointOffset(), messageEventBus);
 
         this.logCleanerExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("log-cleaner-%d").build());
 
-        this.messageLogFlushService = new PeriodicFlushService(new MessageLogFlushProvider());
+        if (FLUSH_POLICY_GROUP_COMMIT.equalsIgnoreCase(config.getMessageLogFlushPolicy())) {
+            this.groupCommitFlushService = new GroupCommitFlushService(new MessageLogFlushProvider(),
+                    config.getGroupCommitFlushBytes(), config.getGroupCommitFlushDelayMicros(), DEFAULT_FLUSH_INTERVAL);
+            this.messageLogFlushService = groupCommitFlushService;
+        } else {
+            this.groupCommitFlushService = null;
+            this.messageLogFlushService = new PeriodicFlushService(new MessageLogFlushProvider());
+        }
         this.actionLogFlushService = new PeriodicFlushService(new ActionLogFlushProvider());
     }
 
@@ -184,7 +200,12 @@ public class DefaultStorage implements Storage {
 
     @Override
     public synchronized PutMessageResult appendMessage(RawMessage message) {
-        return messageLog.putMessage(message);
+        final PutMessageResult result = messageLog.putMessage(message);
+        if (groupCommitFlushService != null && result.getStatus() == PutMessageStatus.SUCCESS) {
+            final AppendMessageResult<MessageSequence> appended = result.getResult();
+            groupCommitFlushService.onAppended(appended.getWroteOffset() + appended.getWroteBytes());
+        }
+        return result;
     }
 
     @Override
@@ -473,7 +494,30 @@ public class DefaultStorage implements Storage {
             case LATEST:
                 consumeQueueManager.update(subject, group, bound.getMaxOffset());
                 break;
+            case TIMESTAMP:
+                LOG.warn("reset to timestamp requires a timestamp, subject:{}, group:{}", subject, group);
+                break;
+        }
+    }
+
+    @Override
+    public void updateConsumeQueueByTime(String subject, String group, long timestamp) {
+        final long sequence = locateSequenceByTime(subject, timestamp);
+        if (sequence < 0) {
+            LOG.warn("没有对应的consumerLog, subject:{}", subject);
+            return;
+        }
+        LOG.info("reset consume queue by time, subject:{}, group:{}, timestamp:{}, sequence:{}", subject, group, timestamp, sequence);
+        consumeQueueManager.update(subject, group, sequence);
+    }
+
+    @Override
+    public long locateSequenceByTime(String subject, long timestamp) {
+        final ConsumerLog consumerLog = consumerLogManager.getConsumerLog(subject);
+        if (consumerLog == null) {
+            return -1;
         }
+        return consumerLog.locateSequenceByTime(timestamp);
     }
 
     @Override
@@ -534,18 +578,27 @@ public class DefaultStorage implements Storage {
     }
 
     private class BuildConsumerLogEventListener implements FixedExecOrderEventBus.Listener<MessageLogRecord> {
+        private static final int MAX_PENDING_RECORDS = 4096;
+
         private final ConsumerLogManager consumerLogManager;
         private final Map<String, Long> offsets;
 
+        // 按subject攒批，在一轮遍历结束、攒够条数或者切换message log segment时批量写入consumer log
+        private final Map<String, List<MessageLogRecord>> pendingRecords;
+        private int pendingCount;
+        private MessageLogRecord lastRecord;
+
         private BuildConsumerLogEventListener(final ConsumerLogManager consumerLogManager) {
             this.consumerLogManager = consumerLogManager;
             // TODO(keli.wang): is load offset from consumer log enough?
             this.offsets = new HashMap<>(consumerLogManager.currentConsumerLogOffset());
+            this.pendingRecords = new LinkedHashMap<>();
         }
 
         @Override
         public void onEvent(final MessageLogRecord event) {
             if (isFirstEventOfLogSegment(event)) {
+                flush();
                 LOG.info("first event of log segment. event: {}", event);
                 // TODO(keli.wang): need catch all exception here?
                 consumerLogManager.createOffsetFileFor(event.getBaseOffset(), offsets);
@@ -553,14 +606,39 @@ public class DefaultStorage implements Storage {
 
             updateOffset(event);
 
-            final ConsumerLog consumerLog = consumerLogManager.getOrCreateConsumerLog(event.getSubject());
-            if (consumerLog.nextSequence() != event.getSequence()) {
-                LOG.error("next sequence not equals to max sequence. subject: {}, received seq: {}, received offset: {}, diff: {}",
-                        event.getSubject(), event.getSequence(), event.getWroteOffset(), event.getSequence() - consumerLog.nextSequence());
+            pendingRecords.computeIfAbsent(event.getSubject(), subject -> new ArrayList<>()).add(event);
+            lastRecord = event;
+            if (++pendingCount >= MAX_PENDING_RECORDS) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (pendingCount == 0) {
+                return;
             }
-            final boolean success = consumerLog.writeMessageLogIndex(event.getSequence(), event.getWroteOffset(), event.getWroteBytes(), event.getHeaderSize());
-            checkpointManager.updateMessageReplayState(event);
-            messageEventBus.post(new ConsumerLogWroteEvent(event.getSubject(), success));
+
+            final List<MessageLogRecord> subjectLastRecords = new ArrayList<>(pendingRecords.size());
+            for (final Map.Entry<String, List<MessageLogRecord>> entry : pendingRecords.entrySet()) {
+                final String subject = entry.getKey();
+                final List<MessageLogRecord> records = entry.getValue();
+                final MessageLogRecord first = records.get(0);
+                subjectLastRecords.add(records.get(records.size() - 1));
+
+                final ConsumerLog consumerLog = consumerLogManager.getOrCreateConsumerLog(subject);
+                if (consumerLog.nextSequence() != first.getSequence()) {
+                    LOG.error("next sequence not equals to max sequence. subject: {}, received seq: {}, received offset: {}, diff: {}",
+                            subject, first.getSequence(), first.getWroteOffset(), first.getSequence() - consumerLog.nextSequence());
+                }
+                final boolean success = consumerLog.writeMessageLogIndexes(records);
+                messageEventBus.post(new ConsumerLogWroteEvent(subject, success));
+            }
+            // 所有subject都写完之后只推进一次，按subject更新会让offset来回跳，甚至越过还没写入的消息
+            checkpointManager.updateMessageReplayState(subjectLastRecords, lastRecord);
+
+            pendingRecords.clear();
+            pendingCount = 0;
+            lastRecord = null;
         }
 
         private boolean isFirstEventOfLogSegment(final MessageLogRecord event) {
@@ -578,15 +656,33 @@ public class DefaultStorage implements Storage {
         }
     }
 
-    private class MessageLogFlushProvider implements PeriodicFlushService.FlushProvider {
+    private class MessageLogFlushProvider implements PeriodicFlushService.FlushProvider, GroupCommitFlushService.FlushProvider {
         @Override
         public int getInterval() {
             return DEFAULT_FLUSH_INTERVAL;
         }
 
+        @Override
+        public long getMaxOffset() {
+            return messageLog.getMaxOffset();
+        }
+
+        @Override
+        public long getFlushedOffset() {
+            return messageLog.getFlushedOffset();
+        }
+
         @Override
         public void flush() {
             messageLog.flush();
+            if (groupCommitFlushService == null) {
+                afterFlush(messageLog.getFlushedOffset());
+            }
+        }
+
+        @Override
+        public void afterFlush(long flushedOffset) {
+            messageEventBus.post(new MessageLogFlushedEvent(flushedOffset));
         }
     }
 
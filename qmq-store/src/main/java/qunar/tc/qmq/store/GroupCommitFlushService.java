@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.concurrent.NamedThreadFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 按负载合并刷盘：有数据写入后，攒够flushBytes或者等了flushDelayMicros就刷一次，一次fsync覆盖这段时间里的所有写入
+ * <p>
+ * 没有写入的时候退化成每隔maxIntervalMillis刷一次
+ */
+public class GroupCommitFlushService implements FlushService {
+    private static final Logger LOG = LoggerFactory.getLogger(GroupCommitFlushService.class);
+
+    private final String name;
+    private final FlushProvider flushProvider;
+    private final long flushBytes;
+    private final long flushDelayNanos;
+    private final long maxIntervalNanos;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+    // 刷盘线程在没有数据可刷时睡眠，写入方需要唤醒它
+    private volatile boolean idle = false;
+    // 刷盘线程在攒数据，攒够flushBytes时写入方提前唤醒它
+    private volatile boolean gathering = false;
+
+    public GroupCommitFlushService(final FlushProvider flushProvider, final long flushBytes, final long flushDelayMicros, final long maxIntervalMillis) {
+        this.name = flushProvider.getClass().getSimpleName();
+        this.flushProvider = flushProvider;
+        this.flushBytes = flushBytes;
+        this.flushDelayNanos = TimeUnit.MICROSECONDS.toNanos(flushDelayMicros);
+        this.maxIntervalNanos = TimeUnit.MILLISECONDS.toNanos(maxIntervalMillis);
+        this.thread = new NamedThreadFactory(name).newThread(this::run);
+    }
+
+    @Override
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * 写入方每次写完调用
+     *
+     * @param endOffset 写入数据的结束位置
+     */
+    public void onAppended(final long endOffset) {
+        if (idle) {
+            idle = false;
+            LockSupport.unpark(thread);
+        } else if (gathering && endOffset - flushProvider.getFlushedOffset() >= flushBytes) {
+            gathering = false;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (pending() <= 0) {
+                    idle = true;
+                    // 唤醒之前再检查一次，避免错过idle置位之前的写入
+                    if (pending() <= 0) {
+                        LockSupport.parkNanos(this, maxIntervalNanos);
+                    }
+                    idle = false;
+                }
+
+                final long pending = pending();
+                if (pending > 0 && pending < flushBytes) {
+                    gathering = true;
+                    LockSupport.parkNanos(this, flushDelayNanos);
+                    gathering = false;
+                }
+
+                flush();
+            } catch (Throwable e) {
+                LOG.error("flushProvider {} flush failed.", name, e);
+                // 刷盘失败时数据还在，不退避的话会立刻重试把磁盘打满，日志也会刷屏
+                if (running) {
+                    LockSupport.parkNanos(this, maxIntervalNanos);
+                }
+            }
+        }
+    }
+
+    private long pending() {
+        return flushProvider.getMaxOffset() - flushProvider.getFlushedOffset();
+    }
+
+    /**
+     * 一次flush只刷一个segment，跨segment时要多刷几次才能覆盖到当前写入的位置
+     */
+    private void flush() {
+        final long target = flushProvider.getMaxOffset();
+        long flushed = flushProvider.getFlushedOffset();
+        while (flushed < target) {
+            flushProvider.flush();
+            final long current = flushProvider.getFlushedOffset();
+            if (current == flushed) break;
+            flushed = current;
+        }
+        flushProvider.afterFlush(flushed);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+            LOG.info("will flush one more time for {} before shutdown flush service.", name);
+            flush();
+        } catch (Exception e) {
+            LOG.error("shutdown flush service for {} failed.", name, e);
+        }
+    }
+
+    public interface FlushProvider {
+        long getMaxOffset();
+
+        long getFlushedOffset();
+
+        void flush();
+
+        void afterFlush(long flushedOffset);
+    }
+}
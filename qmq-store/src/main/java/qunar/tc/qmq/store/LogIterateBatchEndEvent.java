@@ -0,0 +1,27 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.store;
+
+/**
+ * 每轮日志遍历结束后投递，监听者可以在此时将攒批的数据刷出
+ */
+public final class LogIterateBatchEndEvent {
+    public static final LogIterateBatchEndEvent INSTANCE = new LogIterateBatchEndEvent();
+
+    private LogIterateBatchEndEvent() {
+    }
+}
@@ -127,6 +127,7 @@ public class LogIterateService<T> implements AutoCloseable {
                         dispatcher.post(record.getData());
                     }
                 }
+                dispatcher.post(LogIterateBatchEndEvent.INSTANCE);
                 iterateFrom.add(visitor.visitedBufferSize());
             }
 
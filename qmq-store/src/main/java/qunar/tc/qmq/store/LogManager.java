@@ -41,15 +41,27 @@ public class LogManager {
     private final LogSegmentValidator segmentValidator;
     private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
 
-    private long flushedOffset = 0;
+    private final SegmentPreallocator preallocator;
+    // 预分配的下一个segment，不放在segments里，切换的时候才加进去
+    private SegmentPreallocator.Pending preallocated;
+
+    private volatile long flushedOffset = 0;
 
     public LogManager(final File dir, final int fileSize, final LogSegmentValidator segmentValidator) {
+        this(dir, fileSize, segmentValidator, null);
+    }
+
+    public LogManager(final File dir, final int fileSize, final LogSegmentValidator segmentValidator, final SegmentPreallocator preallocator) {
         this.logDir = dir;
         this.fileSize = fileSize;
         this.segmentValidator = segmentValidator;
+        this.preallocator = preallocator;
         createAndValidateLogDir();
         loadLogs();
         recover();
+        if (!segments.isEmpty()) {
+            preallocate(nextSegmentBaseOffset());
+        }
     }
 
     // ensure dir ok
@@ -177,18 +189,55 @@ public class LogManager {
     }
 
     private LogSegment allocSegment(final long baseOffset) {
+        LogSegment segment = takePreallocated(baseOffset);
+        if (segment == null) {
+            segment = createSegment(baseOffset);
+            if (segment == null) return null;
+        }
+
+        segments.put(baseOffset, segment);
+        LOG.info("alloc new segment file {}", segment);
+        preallocate(baseOffset + fileSize);
+        return segment;
+    }
+
+    private LogSegment createSegment(final long baseOffset) {
         final File nextSegmentFile = new File(logDir, StoreUtils.offset2FileName(baseOffset));
         try {
-            final LogSegment segment = new LogSegment(nextSegmentFile, fileSize);
-            segments.put(baseOffset, segment);
-            LOG.info("alloc new segment file {}", segment);
-            return segment;
+            return new LogSegment(nextSegmentFile, fileSize);
         } catch (IOException e) {
             LOG.error("Failed create new segment file. file: {}", nextSegmentFile.getAbsolutePath());
         }
         return null;
     }
 
+    private synchronized void preallocate(final long baseOffset) {
+        if (preallocator == null) return;
+
+        abandonPreallocated();
+        preallocated = preallocator.preallocate(new File(logDir, StoreUtils.offset2FileName(baseOffset)), fileSize);
+    }
+
+    private synchronized LogSegment takePreallocated(final long baseOffset) {
+        if (preallocated == null) return null;
+
+        if (preallocated.getBaseOffset() != baseOffset) {
+            abandonPreallocated();
+            return null;
+        }
+
+        final LogSegment segment = preallocated.take();
+        preallocated = null;
+        return segment;
+    }
+
+    private synchronized void abandonPreallocated() {
+        if (preallocated == null) return;
+
+        preallocated.abandon();
+        preallocated = null;
+    }
+
     public Optional<LogSegment> getOrAllocSegment(final long baseOffset) {
         if (!isBaseOffset(baseOffset)) {
             return Optional.empty();
@@ -246,6 +295,10 @@ public class LogManager {
         return segment.getBaseOffset() + segment.getWrotePosition();
     }
 
+    public long getFlushedOffset() {
+        return flushedOffset;
+    }
+
     public boolean flush() {
         boolean result = true;
         final LogSegment segment = locateSegment(flushedOffset);
@@ -259,6 +312,7 @@ public class LogManager {
     }
 
     public void close() {
+        abandonPreallocated();
         for (final LogSegment segment : segments.values()) {
             segment.close();
         }
@@ -323,6 +377,7 @@ public class LogManager {
     }
 
     public void destroy() {
+        abandonPreallocated();
         deleteAllSegments();
         logDir.delete();
     }
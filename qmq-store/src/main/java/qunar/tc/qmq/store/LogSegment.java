@@ -178,6 +178,17 @@ public class LogSegment extends ReferenceObject {
         return new SegmentBuffer(getBaseOffset() + pos, bufferNew, size, this);
     }
 
+    /**
+     * 每个page写一个0，把page提前fault进来，最后force一次，后面第一次flush不用再把整个文件刷一遍
+     */
+    void warmup(final int pageSize) {
+        final ByteBuffer buffer = mappedByteBuffer.slice();
+        for (int i = 0; i < fileSize; i += pageSize) {
+            buffer.put(i, (byte) 0);
+        }
+        mappedByteBuffer.force();
+    }
+
     public int flush() {
         final int value = wrotePosition.get();
         try {
@@ -26,7 +26,6 @@ import qunar.tc.qmq.utils.Crc32;
 import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
 
 /**
  * @author keli.wang
@@ -52,7 +51,8 @@ public class MessageLog implements AutoCloseable, Visitable<MessageLogRecord> {
     public MessageLog(final StorageConfig config, final ConsumerLogManager consumerLogManager) {
         this.config = config;
         this.consumerLogManager = consumerLogManager;
-        this.logManager = new LogManager(new File(config.getMessageLogStorePath()), PER_SEGMENT_FILE_SIZE, new MessageLogSegmentValidator());
+        this.logManager = new LogManager(new File(config.getMessageLogStorePath()), PER_SEGMENT_FILE_SIZE, new MessageLogSegmentValidator(),
+                config.isSegmentPreallocateEnable() ? new SegmentPreallocator(config.isSegmentWarmupEnable()) : null);
         consumerLogManager.adjustConsumerLogMinOffset(logManager.firstSegment());
     }
 
@@ -146,6 +146,10 @@ public class MessageLog implements AutoCloseable, Visitable<MessageLogRecord> {
         segment.fillPreBlank(buffer, untilWhere);
     }
 
+    public long getFlushedOffset() {
+        return logManager.getFlushedOffset();
+    }
+
     public void flush() {
         final long start = System.currentTimeMillis();
         try {
@@ -238,18 +242,15 @@ public class MessageLog implements AutoCloseable, Visitable<MessageLogRecord> {
         }
     }
 
+    /**
+     * header直接写到mmap的segment里，body从netty的buffer一次拷贝过去
+     */
     private class RawMessageAppender implements MessageAppender<RawMessage, MessageSequence> {
-        private static final int MAX_BYTES = 1024;
-
         private static final byte ATTR_EMPTY_RECORD = 1;
         private static final byte ATTR_MESSAGE_RECORD = 0;
 
-        private final ByteBuffer workingBuffer = ByteBuffer.allocate(MAX_BYTES);
-
         @Override
         public AppendMessageResult<MessageSequence> doAppend(long baseOffset, ByteBuffer targetBuffer, int freeSpace, RawMessage message) {
-            workingBuffer.clear();
-
             final String subject = message.getHeader().getSubject();
             final byte[] subjectBytes = subject.getBytes(StandardCharsets.UTF_8);
 
@@ -257,31 +258,27 @@ public class MessageLog implements AutoCloseable, Visitable<MessageLogRecord> {
             final int recordSize = recordSize(subjectBytes.length, message.getBodySize());
 
             if (recordSize != freeSpace && recordSize + MIN_RECORD_BYTES > freeSpace) {
-                workingBuffer.limit(MIN_RECORD_BYTES);
-                workingBuffer.putInt(MagicCode.MESSAGE_LOG_MAGIC_V3);
-                workingBuffer.put(ATTR_EMPTY_RECORD);
-                workingBuffer.putLong(System.currentTimeMillis());
-                targetBuffer.put(workingBuffer.array(), 0, MIN_RECORD_BYTES);
+                targetBuffer.putInt(MagicCode.MESSAGE_LOG_MAGIC_V3);
+                targetBuffer.put(ATTR_EMPTY_RECORD);
+                targetBuffer.putLong(System.currentTimeMillis());
                 int fillZeroLen = freeSpace - MIN_RECORD_BYTES;
                 if (fillZeroLen > 0) {
-                    targetBuffer.put(fillZero(fillZeroLen));
+                    AppendUtils.fillZero(targetBuffer, fillZeroLen);
                 }
                 return new AppendMessageResult<>(AppendMessageStatus.END_OF_FILE, wroteOffset, freeSpace, null);
             } else {
                 final long sequence = consumerLogManager.getOffsetOrDefault(subject, 0);
 
                 int headerSize = recordSize - message.getBodySize();
-                workingBuffer.limit(headerSize);
-                workingBuffer.putInt(MagicCode.MESSAGE_LOG_MAGIC_V3);
-                workingBuffer.put(ATTR_MESSAGE_RECORD);
-                workingBuffer.putLong(System.currentTimeMillis());
-                workingBuffer.putLong(sequence);
-                workingBuffer.putShort((short) subjectBytes.length);
-                workingBuffer.put(subjectBytes);
-                workingBuffer.putLong(message.getHeader().getBodyCrc());
-                workingBuffer.putInt(message.getBodySize());
-                targetBuffer.put(workingBuffer.array(), 0, headerSize);
-                targetBuffer.put(message.getBody().nioBuffer());
+                targetBuffer.putInt(MagicCode.MESSAGE_LOG_MAGIC_V3);
+                targetBuffer.put(ATTR_MESSAGE_RECORD);
+                targetBuffer.putLong(System.currentTimeMillis());
+                targetBuffer.putLong(sequence);
+                targetBuffer.putShort((short) subjectBytes.length);
+                targetBuffer.put(subjectBytes);
+                targetBuffer.putLong(message.getHeader().getBodyCrc());
+                targetBuffer.putInt(message.getBodySize());
+                AppendUtils.writeBody(message.getBody(), targetBuffer);
 
                 consumerLogManager.incOffset(subject);
 
@@ -289,11 +286,5 @@ public class MessageLog implements AutoCloseable, Visitable<MessageLogRecord> {
                 return new AppendMessageResult<>(AppendMessageStatus.SUCCESS, wroteOffset, recordSize, new MessageSequence(sequence, payloadOffset));
             }
         }
-
-        private byte[] fillZero(int len) {
-            byte[] zero = new byte[len];
-            Arrays.fill(zero, (byte) 0);
-            return zero;
-        }
     }
 }
@@ -29,7 +29,7 @@ import java.util.concurrent.TimeUnit;
  * @author keli.wang
  * @since 2017/7/7
  */
-public class PeriodicFlushService implements AutoCloseable {
+public class PeriodicFlushService implements FlushService {
     private static final Logger LOG = LoggerFactory.getLogger(PeriodicFlushService.class);
 
     private final String name;
@@ -43,6 +43,7 @@ public class PeriodicFlushService implements AutoCloseable {
         this.scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(name));
     }
 
+    @Override
     public void start() {
         future = scheduler.scheduleWithFixedDelay(
                 new FlushRunnable(),
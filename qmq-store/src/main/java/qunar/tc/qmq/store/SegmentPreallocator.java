@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import qunar.tc.qmq.concurrent.NamedThreadFactory;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 在后台线程提前创建并mmap下一个segment，写满切换的时候直接拿来用，不用在写线程上建文件
+ * <p>
+ * 所有的log共用一个后台线程；warmup打开时每个page先写一次，最后force一次，写消息时不会再一个个page fault
+ */
+public class SegmentPreallocator {
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentPreallocator.class);
+
+    private static final int OS_PAGE_SIZE = 4096;
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(new NamedThreadFactory("segment-preallocator", true));
+
+    private final boolean warmup;
+
+    public SegmentPreallocator(final boolean warmup) {
+        this.warmup = warmup;
+    }
+
+    Pending preallocate(final File file, final int fileSize) {
+        final Pending pending = new Pending(file, fileSize);
+        EXECUTOR.execute(pending);
+        return pending;
+    }
+
+    class Pending implements Runnable {
+        private final File file;
+        private final int fileSize;
+
+        private boolean started = false;
+        private boolean done = false;
+        private boolean abandoned = false;
+        private LogSegment segment;
+
+        private Pending(final File file, final int fileSize) {
+            this.file = file;
+            this.fileSize = fileSize;
+        }
+
+        long getBaseOffset() {
+            return Long.parseLong(file.getName());
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (abandoned) return;
+                started = true;
+            }
+
+            LogSegment created = null;
+            try {
+                final long start = System.currentTimeMillis();
+                created = new LogSegment(file, fileSize);
+                if (warmup) {
+                    created.warmup(OS_PAGE_SIZE);
+                }
+                LOG.info("preallocate segment {} done, warmup: {}, elapsed: {}ms", created, warmup, System.currentTimeMillis() - start);
+            } catch (Throwable e) {
+                LOG.error("preallocate segment failed. file: {}", file.getAbsolutePath(), e);
+            }
+
+            synchronized (this) {
+                segment = created;
+                done = true;
+                if (abandoned && segment != null) {
+                    segment.destroy();
+                    segment = null;
+                }
+                notifyAll();
+            }
+        }
+
+        /**
+         * 后台还没开始就放弃，由调用方自己创建；已经开始了就等它完成
+         *
+         * @return 预分配好的segment，拿不到返回null
+         */
+        synchronized LogSegment take() {
+            if (!started) {
+                abandoned = true;
+                return null;
+            }
+
+            boolean interrupted = false;
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return segment;
+        }
+
+        /**
+         * 不再需要这个segment，删掉预分配的文件
+         */
+        synchronized void abandon() {
+            abandoned = true;
+            if (done && segment != null) {
+                segment.destroy();
+                segment = null;
+            }
+        }
+    }
+}
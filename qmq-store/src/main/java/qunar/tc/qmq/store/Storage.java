@@ -73,6 +73,16 @@ public interface Storage extends Disposable {
 
     void updateConsumeQueue(String subject, String group, int consumeFromWhereCode);
 
+    /**
+     * 将消费进度重置到第一条写入时间不早于timestamp的消息
+     */
+    void updateConsumeQueueByTime(String subject, String group, long timestamp);
+
+    /**
+     * @return 第一条写入时间不早于timestamp的消息的sequence，subject不存在时返回-1
+     */
+    long locateSequenceByTime(String subject, long timestamp);
+
     ConsumeQueue locateConsumeQueue(final String subject, final String group);
 
     Map<String, ConsumeQueue> locateSubjectConsumeQueues(final String subject);
@@ -64,4 +64,16 @@ public interface StorageConfig {
     boolean isSMTEnable();
 
     long getLogDispatcherPauseMillis();
+
+    boolean isSegmentPreallocateEnable();
+
+    boolean isSegmentWarmupEnable();
+
+    boolean isConsumerLogPreallocateEnable();
+
+    String getMessageLogFlushPolicy();
+
+    long getGroupCommitFlushBytes();
+
+    long getGroupCommitFlushDelayMicros();
 }
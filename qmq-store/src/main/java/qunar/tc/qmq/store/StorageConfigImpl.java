@@ -166,4 +166,34 @@ public class StorageConfigImpl implements StorageConfig {
     public long getLogDispatcherPauseMillis() {
         return config.getLong(BrokerConstants.LOG_DISPATCHER_PAUSE_MILLIS, 5);
     }
+
+    @Override
+    public boolean isSegmentPreallocateEnable() {
+        return config.getBoolean(BrokerConstants.SEGMENT_PREALLOCATE_ENABLE, true);
+    }
+
+    @Override
+    public boolean isSegmentWarmupEnable() {
+        return config.getBoolean(BrokerConstants.SEGMENT_WARMUP_ENABLE, false);
+    }
+
+    @Override
+    public boolean isConsumerLogPreallocateEnable() {
+        return config.getBoolean(BrokerConstants.CONSUMER_LOG_PREALLOCATE_ENABLE, false);
+    }
+
+    @Override
+    public String getMessageLogFlushPolicy() {
+        return config.getString(BrokerConstants.MESSAGE_LOG_FLUSH_POLICY, DefaultStorage.FLUSH_POLICY_PERIODIC);
+    }
+
+    @Override
+    public long getGroupCommitFlushBytes() {
+        return config.getLong(BrokerConstants.GROUP_COMMIT_FLUSH_BYTES, BrokerConstants.DEFAULT_GROUP_COMMIT_FLUSH_BYTES);
+    }
+
+    @Override
+    public long getGroupCommitFlushDelayMicros() {
+        return config.getLong(BrokerConstants.GROUP_COMMIT_FLUSH_DELAY_MICROS, BrokerConstants.DEFAULT_GROUP_COMMIT_FLUSH_DELAY_MICROS);
+    }
 }
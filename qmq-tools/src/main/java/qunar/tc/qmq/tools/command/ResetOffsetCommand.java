@@ -42,9 +42,12 @@ public class ResetOffsetCommand implements Runnable {
     @Option(names = {"--group"}, required = true)
     private String group;
 
-    @Option(names = {"--action"}, required = true, defaultValue = "LATEST=1, EARLIEST=2")
+    @Option(names = {"--action"}, required = true, defaultValue = "LATEST=1, EARLIEST=2, TIMESTAMP=3")
     private int action;
 
+    @Option(names = {"--timestamp"}, description = {"reset to the first message written at or after this time (millis), required when action is 3"})
+    private long timestamp = -1;
+
     public ResetOffsetCommand(final MetaManagementService service) {
         this.service = service;
     }
@@ -56,6 +59,9 @@ public class ResetOffsetCommand implements Runnable {
         params.put("subject", subject);
         params.put("group", group);
         params.put("code", Integer.toString(action));
+        if (timestamp >= 0) {
+            params.put("timestamp", Long.toString(timestamp));
+        }
 
         System.out.println(service.post(metaserver, apiToken, params));
     }
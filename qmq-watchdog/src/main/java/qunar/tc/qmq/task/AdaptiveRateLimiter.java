@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Qunar, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package qunar.tc.qmq.task;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * 根据broker的反馈调整补偿发送速率: 全部成功时按当前速率的10%(至少1)增长，失败比例超过阈值时减半
+ */
+class AdaptiveRateLimiter {
+    private static final double INCREASE_FACTOR = 0.1;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double FAILURE_THRESHOLD = 0.05;
+
+    private final RateLimiter limiter;
+    private final double minRate;
+    private final double maxRate;
+
+    AdaptiveRateLimiter(double initRate, double minRate, double maxRate) {
+        this.minRate = minRate;
+        this.maxRate = Math.max(minRate, maxRate);
+        this.limiter = RateLimiter.create(clamp(initRate));
+    }
+
+    void acquire() {
+        limiter.acquire();
+    }
+
+    double getRate() {
+        return limiter.getRate();
+    }
+
+    void adjust(int success, int failed) {
+        final int total = success + failed;
+        if (total == 0) return;
+
+        final double rate = limiter.getRate();
+        final double next;
+        if (failed > total * FAILURE_THRESHOLD) {
+            next = clamp(rate * DECREASE_FACTOR);
+        } else if (failed == 0) {
+            next = clamp(rate + Math.max(1, rate * INCREASE_FACTOR));
+        } else {
+            return;
+        }
+
+        if (next != rate) {
+            limiter.setRate(next);
+        }
+    }
+
+    private double clamp(double rate) {
+        return Math.min(maxRate, Math.max(minRate, rate));
+    }
+}
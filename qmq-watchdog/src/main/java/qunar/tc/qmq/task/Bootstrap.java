@@ -42,7 +42,7 @@ public class Bootstrap {
         JdbcTemplate jdbcTemplate = JdbcTemplateHolder.getOrCreate();
         IDataSourceConfigStore dataSourceConfigStore = new DataSourceConfigStoreImpl(jdbcTemplate);
         TaskManager taskManager = new TaskManager(sendMessageTaskExecuteTimeout, refreshInterval, checkInterval, namespace,
-                cachedMessageClientStore, dataSourceConfigStore, initDriverMapping(), createMessageProducer(config));
+                cachedMessageClientStore, dataSourceConfigStore, initDriverMapping(), createMessageProducer(config), config);
         Tasks tasks = new Tasks(namespace, taskManager, new LeaderElectionDaoImpl(jdbcTemplate));
         Runtime.getRuntime().addShutdownHook(new Thread(() -> tasks.destroy()));
         tasks.start();
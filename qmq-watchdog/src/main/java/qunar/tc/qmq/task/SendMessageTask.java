@@ -18,7 +18,7 @@ package qunar.tc.qmq.task;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
-import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 import org.apache.commons.lang.time.DateUtils;
 import org.slf4j.Logger;
@@ -27,6 +27,8 @@ import qunar.tc.qmq.Message;
 import qunar.tc.qmq.MessageProducer;
 import qunar.tc.qmq.MessageSendStateListener;
 import qunar.tc.qmq.base.BaseMessage;
+import qunar.tc.qmq.base.MessageContentCodec;
+import qunar.tc.qmq.configuration.DynamicConfig;
 import qunar.tc.qmq.task.database.DatabaseDriverMapping;
 import qunar.tc.qmq.task.database.DatasourceWrapper;
 import qunar.tc.qmq.task.database.IDatabaseDriver;
@@ -39,8 +41,12 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by IntelliJ IDEA. User: liuzz Date: 12-12-21 Time: 上午11:15
@@ -56,11 +62,21 @@ class SendMessageTask implements Callable<Void> {
     private static final int MAX_RETRIES = 1000;
     private static final int DEFAULT_TIME_INTEL = 60;
 
+    private static final int DELETE_BATCH_SIZE = 200;
+    private static final long SEND_WAIT_MINUTES = 1;
+
     private final IDatabaseDriver driver;
     private final CachedMessageClientStore messageClientStore;
     private final Gson serializer;
     private final long timeout;
-    private final RateLimiter limiter;
+    private final AdaptiveRateLimiter limiter;
+    private final int pageSize;
+    private final Semaphore inflight;
+
+    // 本轮已扫描出但尚未发送成功的消息数
+    private final AtomicLong backlog = new AtomicLong();
+    // 发送成功待删除的消息id，等待超时之后才回来的成功回调留到下一批再删
+    private final ConcurrentLinkedQueue<Long> successes = new ConcurrentLinkedQueue<>();
 
     private final DatasourceWrapper dataSource;
 
@@ -69,7 +85,7 @@ class SendMessageTask implements Callable<Void> {
     private final MessageProducer messageProducer;
 
     SendMessageTask(DataSourceInfoModel datasourceInfo, DatabaseDriverMapping mapping, CachedMessageClientStore messageClientStore,
-                    Gson serializer, long timeout, MessageProducer messageProducer) {
+                    Gson serializer, long timeout, MessageProducer messageProducer, DynamicConfig config) {
         this.messageProducer = messageProducer;
         Preconditions.checkNotNull(datasourceInfo);
         Preconditions.checkNotNull(mapping);
@@ -82,32 +98,51 @@ class SendMessageTask implements Callable<Void> {
         this.messageClientStore = messageClientStore;
         this.serializer = serializer;
         this.timeout = timeout;
-        this.limiter = RateLimiter.create(50);
+        this.pageSize = config.getInt("sendMessageTaskPageSize", 500);
+        this.inflight = new Semaphore(config.getInt("sendMessageTaskMaxInflight", 200));
+        this.limiter = new AdaptiveRateLimiter(
+                config.getInt("sendMessageTaskInitRate", 50),
+                config.getInt("sendMessageTaskMinRate", 10),
+                config.getInt("sendMessageTaskMaxRate", 2000));
+
+        final String url = dataSourceInfo.getUrl();
+        Qmon.compensateBacklogGauge(url, () -> (double) backlog.get());
+        Qmon.compensateRateGauge(url, limiter::getRate);
     }
 
     @Override
     public Void call() {
         LOG.info("{} start...", dataSourceInfo.getUrl());
         stop = false;
+        // 先删掉上一轮超时之后才发送成功的消息，免得这一轮再扫出来重发
+        deleteAllSuccessMessages();
+        backlog.set(0);
         String name = Thread.currentThread().getName();
         try {
             Thread.currentThread().setName(dataSourceInfo.getUrl());
             long begin = System.currentTimeMillis();
+            Date since = DateUtils.addSeconds(new Date(), -DEFAULT_TIME_INTEL);
+            // 按id游标翻页，发送失败的消息留到下一轮，避免同一轮反复扫到
+            long cursor = 0;
             while ((!isStop() && !timeout(begin))) {
-                Date since = DateUtils.addSeconds(new Date(), -DEFAULT_TIME_INTEL);
-                List<MsgQueue> errorMessages = messageClientStore.findErrorMsg(this.dataSource, since);
+                List<MsgQueue> errorMessages = messageClientStore.findErrorMsg(this.dataSource, since, cursor, pageSize);
                 if (errorMessages == null || errorMessages.isEmpty()) {
                     break;
                 }
+                cursor = errorMessages.get(errorMessages.size() - 1).id;
+                backlog.addAndGet(errorMessages.size());
                 logRemainMsg(errorMessages);
-                processErrorMessages(errorMessages, since);
+                processErrorMessages(errorMessages);
+                if (errorMessages.size() < pageSize) {
+                    break;
+                }
             }
         } catch (Exception e) {
             throw new RuntimeException("process message error, url: " + dataSourceInfo.getUrl(), e);
         } finally {
             stop = true;
             Thread.currentThread().setName(name);
-            LOG.info("{} finish", dataSourceInfo.getUrl());
+            LOG.info("{} finish, remain: {}, rate: {}", dataSourceInfo.getUrl(), backlog.get(), limiter.getRate());
         }
         return null;
     }
@@ -120,16 +155,10 @@ class SendMessageTask implements Callable<Void> {
         return isTimeout;
     }
 
-    private void processErrorMessages(List<MsgQueue> errorMessages, Date since) {
+    private void processErrorMessages(List<MsgQueue> errorMessages) {
         BaseMessage message = null;
         List<BaseMessage> validMessages = new ArrayList<>();
         for (MsgQueue errorMessage : errorMessages) {
-            limiter.acquire();
-            if (errorMessage.updateTime.after(since)) {
-                stop = true;
-                break;
-            }
-
             if (errorMessage.error >= MAX_RETRIES) {
                 LOG.error("retry too many times: {}", errorMessage.id);
                 error(errorMessage.id, VALID_ERROR);
@@ -146,7 +175,9 @@ class SendMessageTask implements Callable<Void> {
                 }
 
                 try {
-                    message = serializer.fromJson(content, BaseMessage.class);
+                    message = MessageContentCodec.isBinary(content)
+                            ? MessageContentCodec.decode(content)
+                            : serializer.fromJson(content, BaseMessage.class);
                 } catch (Exception e) {
                     error(messageId, VALID_ERROR);
                     LOG.warn("message deSerialize fail:messageId={},content={}", messageId, content, e);
@@ -178,41 +209,82 @@ class SendMessageTask implements Callable<Void> {
     }
 
     private void sendMessages(List<BaseMessage> newQmqMessages) throws InterruptedException {
-        List<Long> successes = new ArrayList<>(newQmqMessages.size());
-        CountDownLatch latch = new CountDownLatch(newQmqMessages.size());
-        for (BaseMessage message : newQmqMessages) {
+        final AtomicInteger successCount = new AtomicInteger();
+        final AtomicInteger failedCount = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(newQmqMessages.size());
+        for (int i = 0; i < newQmqMessages.size(); ++i) {
+            final BaseMessage message = newQmqMessages.get(i);
+            if (!inflight.tryAcquire(SEND_WAIT_MINUTES, TimeUnit.MINUTES)) {
+                LOG.error("wait in-flight messages timeout, datasource: {}", dataSourceInfo.getUrl());
+                for (int j = i; j < newQmqMessages.size(); ++j) {
+                    latch.countDown();
+                }
+                break;
+            }
+            limiter.acquire();
             try {
                 messageProducer.sendMessage(message, new MessageSendStateListener() {
                     @Override
                     public void onSuccess(Message message) {
                         successes.add(message.getLongProperty("qmq_sequence"));
+                        successCount.incrementAndGet();
                         Qmon.sendMesssagesSuccessCountInc(message.getSubject(), dataSourceInfo.getUrl());
+                        inflight.release();
                         latch.countDown();
                     }
 
                     @Override
                     public void onFailed(Message message) {
                         LOG.warn("send message failed {}", message.getMessageId());
+                        failedCount.incrementAndGet();
                         Qmon.sendNewqmqMesssagesFailedCountInc(message.getSubject(), dataSourceInfo.getUrl());
+                        inflight.release();
                         latch.countDown();
                     }
                 });
             } catch (Exception e) {
                 LOG.error("send message failed", e);
+                failedCount.incrementAndGet();
+                inflight.release();
+                latch.countDown();
                 Qmon.sendNewqmqMesssagesFailedCountInc(message.getSubject(), dataSourceInfo.getUrl());
                 error(message.getLongProperty("qmq_sequence"), BROKER_BUSY);
             }
+
+            if (successes.size() >= DELETE_BATCH_SIZE) {
+                deleteAllSuccessMessages();
+            }
         }
-        latch.await(1, TimeUnit.MINUTES);
-        deleteAllSuccessMessages(successes);
+        latch.await(SEND_WAIT_MINUTES, TimeUnit.MINUTES);
+        deleteAllSuccessMessages();
+
+        // 超时未返回的也当作失败，让速率降下来
+        final int success = successCount.get();
+        limiter.adjust(success, newQmqMessages.size() - success);
+        Qmon.compensateThroughputMark(dataSourceInfo.getUrl(), success);
     }
 
-    private void deleteAllSuccessMessages(List<Long> successes) {
-        for (Long messageId : successes) {
+    private void deleteAllSuccessMessages() {
+        List<Long> messageIds = new ArrayList<>(successes.size());
+        Long messageId;
+        while ((messageId = successes.poll()) != null) {
+            messageIds.add(messageId);
+        }
+
+        for (List<Long> partition : Lists.partition(messageIds, DELETE_BATCH_SIZE)) {
             try {
-                messageClientStore.deleteByMessageId(dataSource, messageId);
-            } catch (Exception ignore) {
+                messageClientStore.deleteByMessageIds(dataSource, partition);
+                backlog.addAndGet(-partition.size());
+            } catch (Exception e) {
+                LOG.warn("batch delete messages failed, fallback to delete one by one. datasource: {}", dataSourceInfo.getUrl(), e);
+                for (Long id : partition) {
+                    try {
+                        messageClientStore.deleteByMessageId(dataSource, id);
+                        backlog.decrementAndGet();
+                    } catch (Exception ignore) {
 
+                    }
+                }
             }
         }
     }
@@ -226,6 +298,7 @@ class SendMessageTask implements Callable<Void> {
 
     private void error(long messageId, int state) {
         if (state == VALID_ERROR) {
+            backlog.decrementAndGet();
             Qmon.invalidMsgCountInc(dataSourceInfo.getUrl());
             LOG.error("invalid message, db: {}", dataSourceInfo.getUrl());
         }
@@ -241,6 +314,7 @@ class SendMessageTask implements Callable<Void> {
         stop = true;
         messageClientStore.invalidate(this.dataSource);
         driver.close(this.dataSource);
+        Qmon.removeCompensateMetrics(dataSourceInfo.getUrl());
     }
 
     DataSourceInfoModel getDataSourceInfo() {
@@ -24,6 +24,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import qunar.tc.qmq.MessageProducer;
 import qunar.tc.qmq.concurrent.NamedThreadFactory;
+import qunar.tc.qmq.configuration.DynamicConfig;
 import qunar.tc.qmq.task.database.DatabaseDriverMapping;
 import qunar.tc.qmq.task.model.DataSourceInfo;
 import qunar.tc.qmq.task.model.DataSourceInfoModel;
@@ -53,6 +54,7 @@ class TaskManager {
     private final IDataSourceConfigStore dataSourceConfigStore;
     private final DatabaseDriverMapping databaseDriverMapping;
     private final MessageProducer producer;
+    private final DynamicConfig config;
 
     private final Gson serializer;
 
@@ -60,7 +62,8 @@ class TaskManager {
                        CachedMessageClientStore messageClientStore,
                        IDataSourceConfigStore dataSourceConfigStore,
                        DatabaseDriverMapping databaseDriverMapping,
-                       MessageProducer producer) {
+                       MessageProducer producer,
+                       DynamicConfig config) {
         this.sendMessageTaskExecuteTimeout = sendMessageTaskExecuteTimeout;
         this.refreshInterval = refreshInterval;
         this.checkInterval = checkInterval;
@@ -69,6 +72,7 @@ class TaskManager {
         this.dataSourceConfigStore = dataSourceConfigStore;
         this.databaseDriverMapping = databaseDriverMapping;
         this.producer = producer;
+        this.config = config;
         this.serializer = new Gson();
     }
 
@@ -128,7 +132,7 @@ class TaskManager {
             sendMessageTasks.get(key).setDataSourceInfo(dataSource);
         } else {
             try {
-                final SendMessageTask task = new SendMessageTask(dataSource, databaseDriverMapping, messageClientStore, serializer, sendMessageTaskExecuteTimeout, producer);
+                final SendMessageTask task = new SendMessageTask(dataSource, databaseDriverMapping, messageClientStore, serializer, sendMessageTaskExecuteTimeout, producer, config);
                 sendMessageTasks.put(key, task);
             } catch (Exception e) {
                 LOG.error("create task failed", e);
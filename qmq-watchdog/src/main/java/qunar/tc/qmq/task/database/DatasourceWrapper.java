@@ -25,9 +25,14 @@ import javax.sql.DataSource;
 public interface DatasourceWrapper {
     DataSource datasource();
 
-    String select_sql();
+    /**
+     * 按id游标分页: update_time < ? AND id > ? ORDER BY id LIMIT ?
+     */
+    String select_page_sql();
 
     String delete_sql();
 
+    String batch_delete_sql(int size);
+
     String error_sql();
 }
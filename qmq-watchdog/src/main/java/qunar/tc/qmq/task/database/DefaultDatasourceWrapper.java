@@ -24,8 +24,9 @@ import javax.sql.DataSource;
  */
 public class DefaultDatasourceWrapper implements DatasourceWrapper {
 
-    private static final String SELECT_SQL = "SELECT id,content,error,update_time FROM qmq_produce.qmq_msg_queue WHERE status=0 AND update_time<? ORDER BY id ASC LIMIT 50";
+    private static final String SELECT_PAGE_SQL = "SELECT id,content,error,update_time FROM qmq_produce.qmq_msg_queue WHERE status=0 AND update_time<? AND id>? ORDER BY id ASC LIMIT ?";
     private static final String DELETE_SQL = "DELETE FROM qmq_produce.qmq_msg_queue WHERE id=?";
+    private static final String BATCH_DELETE_SQL = "DELETE FROM qmq_produce.qmq_msg_queue WHERE id IN ";
     private static final String ERROR_SQL = "UPDATE qmq_produce.qmq_msg_queue SET status=?,error=error+1,update_time=? WHERE id=?";
 
     private final DataSource dataSource;
@@ -40,8 +41,8 @@ public class DefaultDatasourceWrapper implements DatasourceWrapper {
     }
 
     @Override
-    public String select_sql() {
-        return SELECT_SQL;
+    public String select_page_sql() {
+        return SELECT_PAGE_SQL;
     }
 
     @Override
@@ -49,6 +50,17 @@ public class DefaultDatasourceWrapper implements DatasourceWrapper {
         return DELETE_SQL;
     }
 
+    @Override
+    public String batch_delete_sql(int size) {
+        StringBuilder sql = new StringBuilder(BATCH_DELETE_SQL.length() + size * 2 + 1);
+        sql.append(BATCH_DELETE_SQL).append('(');
+        for (int i = 0; i < size; ++i) {
+            if (i > 0) sql.append(',');
+            sql.append('?');
+        }
+        return sql.append(')').toString();
+    }
+
     @Override
     public String error_sql() {
         return ERROR_SQL;
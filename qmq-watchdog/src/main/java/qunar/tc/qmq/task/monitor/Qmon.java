@@ -16,6 +16,7 @@
 
 package qunar.tc.qmq.task.monitor;
 
+import com.google.common.base.Supplier;
 import qunar.tc.qmq.metrics.Metrics;
 
 /**
@@ -70,4 +71,22 @@ public class Qmon {
     public static void invalidMsgCountInc(String jdbcUrl) {
         Metrics.counter("invalidMsgCount", new String[]{"jdbcUrl"}, new String[]{jdbcUrl}).inc();
     }
+
+    public static void compensateBacklogGauge(String jdbcUrl, Supplier<Double> supplier) {
+        Metrics.gauge("compensateBacklog", new String[]{"jdbcUrl"}, new String[]{jdbcUrl}, supplier);
+    }
+
+    public static void compensateRateGauge(String jdbcUrl, Supplier<Double> supplier) {
+        Metrics.gauge("compensateSendRate", new String[]{"jdbcUrl"}, new String[]{jdbcUrl}, supplier);
+    }
+
+    public static void compensateThroughputMark(String jdbcUrl, int n) {
+        Metrics.meter("compensateSendThroughput", new String[]{"jdbcUrl"}, new String[]{jdbcUrl}).mark(n);
+    }
+
+    public static void removeCompensateMetrics(String jdbcUrl) {
+        Metrics.remove("compensateBacklog", new String[]{"jdbcUrl"}, new String[]{jdbcUrl});
+        Metrics.remove("compensateSendRate", new String[]{"jdbcUrl"}, new String[]{jdbcUrl});
+        Metrics.remove("compensateSendThroughput", new String[]{"jdbcUrl"}, new String[]{jdbcUrl});
+    }
 }
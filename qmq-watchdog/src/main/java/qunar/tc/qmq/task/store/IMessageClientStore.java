@@ -26,10 +26,12 @@ import java.util.List;
  * Created by IntelliJ IDEA. User: liuzz Date: 12-12-21 Time: 下午3:27
  */
 public interface IMessageClientStore {
-    List<MsgQueue> findErrorMsg(DatasourceWrapper dataSource, Date since);
+    List<MsgQueue> findErrorMsg(DatasourceWrapper dataSource, Date since, long fromId, int limit);
 
     void deleteByMessageId(DatasourceWrapper dataSource, long messageId);
 
+    void deleteByMessageIds(DatasourceWrapper dataSource, List<Long> messageIds);
+
     void updateError(DatasourceWrapper dataSource, long messageId, int state);
 
 }
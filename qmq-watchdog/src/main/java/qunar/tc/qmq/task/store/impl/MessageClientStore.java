@@ -41,8 +41,14 @@ public class MessageClientStore implements IMessageClientStore {
     }
 
     @Override
-    public List<MsgQueue> findErrorMsg(DatasourceWrapper dataSource, Date since) {
-        return create(dataSource).query(dataSource.select_sql(), MessageClientStore::toMsgQueue, since);
+    public List<MsgQueue> findErrorMsg(DatasourceWrapper dataSource, Date since, long fromId, int limit) {
+        return create(dataSource).query(dataSource.select_page_sql(), MessageClientStore::toMsgQueue, since, fromId, limit);
+    }
+
+    @Override
+    public void deleteByMessageIds(DatasourceWrapper dataSource, List<Long> messageIds) {
+        if (messageIds.isEmpty()) return;
+        create(dataSource).update(dataSource.batch_delete_sql(messageIds.size()), messageIds.toArray());
     }
 
     @Override